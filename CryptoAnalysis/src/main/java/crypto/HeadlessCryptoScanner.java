@@ -1,7 +1,9 @@
 package crypto;
 
 import java.io.File;
+import java.time.Duration;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
@@ -14,20 +16,31 @@ import org.apache.commons.cli.ParseException;
 
 import com.google.common.base.Stopwatch;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 
 import boomerang.WeightedBoomerang;
 import boomerang.debugger.Debugger;
 import boomerang.debugger.IDEVizDebugger;
 import boomerang.preanalysis.BoomerangPretransformer;
+import crypto.analysis.AnalysisSeedWithSpecification;
+import crypto.analysis.ClassSpecification;
 import crypto.analysis.CrySLAnalysisListener;
 import crypto.analysis.CrySLResultsReporter;
 import crypto.analysis.CryptoScanner;
 import crypto.analysis.IAnalysisSeed;
+import crypto.analysis.errors.AbstractError;
+import crypto.boomerang.CogniCryptBoomerangOptions;
+import crypto.callgraph.CallGraphCache;
+import crypto.impact.ChangeImpact;
 import crypto.preanalysis.SeedFactory;
 import crypto.reporting.CSVReporter;
 import crypto.reporting.CommandLineReporter;
 import crypto.rules.CryptSLRule;
 import crypto.rules.CryptSLRuleReader;
+import crypto.rules.StateMachineGraph;
+import crypto.scheduling.SchedulingPolicy;
+import crypto.sharding.Shard;
+import crypto.sharding.ShardResultWriter;
 import ideal.IDEALSeedSolver;
 import soot.Body;
 import soot.BodyTransformer;
@@ -46,10 +59,12 @@ import soot.options.Options;
 import typestate.TransitionFunction;
 
 public abstract class HeadlessCryptoScanner {
-	private boolean hasSeeds;
+	private SeedFactory preAnalysis;
+	private Stopwatch execWatch;
 	private static Stopwatch callGraphWatch;
 	private static CommandLine options;
 	private static boolean PRE_ANALYSIS = false;
+	private static final Map<String, CryptSLRule> RULE_CACHE = Maps.newHashMap();
 
 	public static enum CG {
 		CHA, SPARK_LIBRARY, SPARK
@@ -82,6 +97,55 @@ public abstract class HeadlessCryptoScanner {
 		} else {
 			callGraphAlogrithm = CG.CHA;
 		}
+		final int analysisThreads;
+		if (options.hasOption("threads")) {
+			analysisThreads = parsePositiveInt(options, "threads");
+		} else {
+			analysisThreads = 1;
+		}
+		final SchedulingPolicy schedulingPolicy;
+		if (options.hasOption("scheduler")) {
+			String val = options.getOptionValue("scheduler");
+			schedulingPolicy = SchedulingPolicy.fromOptionName(val);
+			if (schedulingPolicy == null) {
+				List<String> optionNames = Lists.newArrayList();
+				for (SchedulingPolicy policy : SchedulingPolicy.values())
+					optionNames.add(policy.getOptionName());
+				throw new ParseException("Unknown scheduler " + val + ", expected one of " + optionNames);
+			}
+		} else {
+			schedulingPolicy = SchedulingPolicy.FIFO;
+		}
+		final int seedTimeoutMS;
+		if (options.hasOption("seedTimeout")) {
+			seedTimeoutMS = parsePositiveInt(options, "seedTimeout");
+		} else {
+			seedTimeoutMS = CogniCryptBoomerangOptions.DEFAULT_ANALYSIS_TIMEOUT_MS;
+		}
+		final int timeoutRetries;
+		if (options.hasOption("timeoutRetries")) {
+			timeoutRetries = parseNonNegativeInt(options, "timeoutRetries");
+		} else {
+			timeoutRetries = 0;
+		}
+		final Duration maxAnalysisTime;
+		if (options.hasOption("maxAnalysisTime")) {
+			maxAnalysisTime = Duration.ofSeconds(parsePositiveInt(options, "maxAnalysisTime"));
+		} else {
+			maxAnalysisTime = null;
+		}
+		final Shard shard;
+		if (options.hasOption("shard")) {
+			try {
+				shard = Shard.parse(options.getOptionValue("shard"));
+			} catch (IllegalArgumentException e) {
+				throw new ParseException(e.getMessage());
+			}
+			if (!options.hasOption("shardResult"))
+				throw new ParseException("The option --shard requires the option --shardResult");
+		} else {
+			shard = null;
+		}
 		HeadlessCryptoScanner sourceCryptoScanner = new HeadlessCryptoScanner() {
 
 			@Override
@@ -123,9 +187,81 @@ public abstract class HeadlessCryptoScanner {
 			protected boolean enableVisualization(){
 				return options.hasOption("visualization");
 			}
+
+			@Override
+			protected String getCallGraphCacheDirectory() {
+				return options.getOptionValue("callGraphCache");
+			}
+
+			@Override
+			protected String getIncrementalStateFile() {
+				return options.getOptionValue("incrementalState");
+			}
+
+			@Override
+			protected String getChangedMethodsFile() {
+				return options.getOptionValue("changedMethods");
+			}
+
+			@Override
+			protected Shard getShard() {
+				return shard;
+			}
+
+			@Override
+			protected String getShardResultFile() {
+				return options.getOptionValue("shardResult");
+			}
+
+			@Override
+			protected int analysisThreads() {
+				return analysisThreads;
+			}
+
+			@Override
+			protected SchedulingPolicy schedulingPolicy() {
+				return schedulingPolicy;
+			}
+
+			@Override
+			protected Duration maxAnalysisTime() {
+				return maxAnalysisTime;
+			}
+
+			@Override
+			protected int seedTimeoutMS() {
+				return seedTimeoutMS;
+			}
+
+			@Override
+			protected int timeoutRetries() {
+				return timeoutRetries;
+			}
 		};
 		return sourceCryptoScanner;
 	}
+
+	private static int parsePositiveInt(CommandLine options, String option) throws ParseException {
+		String val = options.getOptionValue(option);
+		try {
+			int parsed = Integer.parseInt(val);
+			if (parsed > 0)
+				return parsed;
+		} catch (NumberFormatException e) {
+		}
+		throw new ParseException("The option --" + option + " expects a positive number, but was " + val);
+	}
+
+	private static int parseNonNegativeInt(CommandLine options, String option) throws ParseException {
+		String val = options.getOptionValue(option);
+		try {
+			int parsed = Integer.parseInt(val);
+			if (parsed >= 0)
+				return parsed;
+		} catch (NumberFormatException e) {
+		}
+		throw new ParseException("The option --" + option + " expects a number of at least 0, but was " + val);
+	}
 	
 
 	protected String getCSVOutputFile(){
@@ -135,7 +271,8 @@ public abstract class HeadlessCryptoScanner {
 
 	public void exec() {
 		Stopwatch stopwatch = Stopwatch.createStarted();
-		if(PRE_ANALYSIS){
+		execWatch = stopwatch;
+		if(usePreAnalysis()){
 			initializeSootWithEntryPointAllReachable(false);
 			long elapsed = stopwatch.elapsed(TimeUnit.SECONDS);
 			System.out.println("Pre-analysis soot setup done after " + elapsed +" seconds");
@@ -143,7 +280,7 @@ public abstract class HeadlessCryptoScanner {
 			elapsed = stopwatch.elapsed(TimeUnit.SECONDS);
 			System.out.println("Pre-analysis finished after " + elapsed +" seconds");
 		}
-		if (!PRE_ANALYSIS || hasSeeds()) {
+		if (!usePreAnalysis() || hasSeeds()) {
 			System.out.println("Using call graph algorithm " + callGraphAlogrithm());
 			initializeSootWithEntryPointAllReachable(true);
 			long elapsed = stopwatch.elapsed(TimeUnit.SECONDS);
@@ -155,7 +292,7 @@ public abstract class HeadlessCryptoScanner {
 	}
 
 	public boolean hasSeeds(){
-		return hasSeeds;
+		return preAnalysis != null && preAnalysis.hasSeeds();
 	}
 	private void checkIfUsesObject() {
 		final SeedFactory seedFactory = new SeedFactory(getRules());
@@ -171,16 +308,42 @@ public abstract class HeadlessCryptoScanner {
 		}));
 		PhaseOptions.v().setPhaseOption("jap.npc", "on");
 		PackManager.v().runPacks();
-		hasSeeds = seedFactory.hasSeeds();
+		preAnalysis = seedFactory;
 	}
 
 	private void analyse() {
 		Transform transform = new Transform("wjtp.ifds", createAnalysisTransformer());
 		PackManager.v().getPack("wjtp").add(transform);
 		callGraphWatch = Stopwatch.createStarted();        
-		PackManager.v().getPack("cg").apply();
+		CallGraphCache cache = createCallGraphCache();
+		if (cache != null && cache.load()) {
+			System.out.println("Loaded call graph from " + cache.getCacheFile());
+		} else {
+			PackManager.v().getPack("cg").apply();
+			if (cache != null)
+				cache.store();
+		}
         PackManager.v().getPack("wjtp").apply();
 	}
+
+	private CallGraphCache createCallGraphCache() {
+		if (getCallGraphCacheDirectory() == null)
+			return null;
+		List<String> classPath = Lists.newArrayList();
+		classPath.addAll(Arrays.asList(sootClassPath().split(File.pathSeparator)));
+		classPath.addAll(Arrays.asList(applicationClassPath().split(File.pathSeparator)));
+		classPath.add(pathToJCE());
+		List<String> settings = Lists.newArrayList();
+		settings.add(callGraphAlogrithm().toString());
+		settings.addAll(getIncludeList());
+		settings.addAll(getExcludeList());
+		if (preAnalysis != null) {
+			List<String> relevantClasses = Lists.newArrayList(preAnalysis.getRelevantClasses());
+			Collections.sort(relevantClasses);
+			settings.addAll(relevantClasses);
+		}
+		return new CallGraphCache(new File(getCallGraphCacheDirectory()), classPath, settings);
+	}
 	
 	public String toString() {
 		String s = "HeadllessCryptoScanner: \n";
@@ -202,7 +365,8 @@ public abstract class HeadlessCryptoScanner {
 				List<CryptSLRule> rules = HeadlessCryptoScanner.this.getRules();
 				CommandLineReporter fileReporter = new CommandLineReporter(getOutputFolder(), rules);
 
-				final CrySLResultsReporter reporter = new CrySLResultsReporter();
+				final ChangeImpact changeImpact = createChangeImpact(rules);
+				final CrySLResultsReporter reporter = createReporter(changeImpact);
 				if(getAdditionalListener() != null)
 					reporter.addReportListener(getAdditionalListener());
 				if(enableVisualization()) {
@@ -238,17 +402,97 @@ public abstract class HeadlessCryptoScanner {
 						return true;
 					}
 
+					@Override
+					public int analysisThreads() {
+						return HeadlessCryptoScanner.this.analysisThreads();
+					}
+
+					@Override
+					public SchedulingPolicy schedulingPolicy() {
+						return HeadlessCryptoScanner.this.schedulingPolicy();
+					}
+
+					@Override
+					public Duration maxAnalysisTime() {
+						Duration maxAnalysisTime = HeadlessCryptoScanner.this.maxAnalysisTime();
+						if (maxAnalysisTime == null)
+							return null;
+						// The time budget includes the Soot setup and call graph construction.
+						Duration remaining = maxAnalysisTime.minus(execWatch.elapsed());
+						return remaining.isNegative() ? Duration.ZERO : remaining;
+					}
+
+					@Override
+					public int seedTimeoutMS() {
+						return HeadlessCryptoScanner.this.seedTimeoutMS();
+					}
+
+					@Override
+					public int timeoutRetries() {
+						return HeadlessCryptoScanner.this.timeoutRetries();
+					}
+
+					@Override
+					public File incrementalStateFile() {
+						String stateFile = getIncrementalStateFile();
+						// The results of a change impact analysis or of a shard are partial and must not be reused by later analyses.
+						return stateFile == null || changeImpact != null || getShard() != null ? null : new File(stateFile);
+					}
+
+					@Override
+					public boolean mayHaveSeeds(ClassSpecification spec) {
+						return preAnalysis == null || preAnalysis.hasSeeds(spec.getRule().getClassName());
+					}
+
+					@Override
+					public boolean mayHaveSeeds(ClassSpecification spec, SootMethod method) {
+						String rule = spec.getRule().getClassName();
+						if (changeImpact != null && !changeImpact.mayHaveSeeds(rule, method))
+							return false;
+						return preAnalysis == null || preAnalysis.hasSeeds(rule, method.getSignature());
+					}
+
+					@Override
+					public boolean analyzeInitialSeed(AnalysisSeedWithSpecification seed) {
+						return getShard() == null || getShard().contains(seed);
+					}
+
 				};
 				reporter.addReportListener(fileReporter);
 				String csvOutputFile = getCSVOutputFile();
 				if(csvOutputFile != null){
 					reporter.addReportListener(new CSVReporter(csvOutputFile,softwareIdentifier(),rules,callGraphWatch.elapsed(TimeUnit.MILLISECONDS)));
 				}
+				if (getShard() != null) {
+					reporter.addReportListener(new ShardResultWriter(new File(getShardResultFile()), getShard(),
+							softwareIdentifier(), rules, callGraphWatch.elapsed(TimeUnit.MILLISECONDS)));
+				}
 				scanner.scan();
 			}
 		};
 	}
 
+	private ChangeImpact createChangeImpact(List<CryptSLRule> rules) {
+		if (getChangedMethodsFile() == null)
+			return null;
+		return new ChangeImpact(ChangeImpact.readSignatures(new File(getChangedMethodsFile())), rules);
+	}
+
+	/**
+	 * @return a reporter that only reports the errors located in the impacted methods, if a change impact is given.
+	 */
+	private static CrySLResultsReporter createReporter(final ChangeImpact changeImpact) {
+		if (changeImpact == null)
+			return new CrySLResultsReporter();
+		return new CrySLResultsReporter() {
+			@Override
+			public synchronized void reportError(AbstractError err) {
+				if (changeImpact.isImpacted(err))
+					super.reportError(err);
+			}
+		};
+	}
+
 	protected CrySLAnalysisListener getAdditionalListener() {
 		return null;
 	}
@@ -261,7 +505,7 @@ public abstract class HeadlessCryptoScanner {
 		File[] listFiles = new File(getRulesDirectory()).listFiles();
 		for (File file : listFiles) {
 			if (file != null && file.getName().endsWith(".cryptslbin")) {
-				rules.add(CryptSLRuleReader.readFromFile(file));
+				rules.add(readRule(file));
 			}
 		}
 		if (rules.isEmpty())
@@ -271,24 +515,49 @@ public abstract class HeadlessCryptoScanner {
 		return rules;
 	}
 
+	/**
+	 * Reads the rule from the file, unless the same file was read before and did not change since. The rules are only
+	 * read once per run, and once per daemon for all scans of a {@link HeadlessCryptoScannerDaemon}.
+	 */
+	private static CryptSLRule readRule(File file) {
+		String key = file.getAbsolutePath() + File.pathSeparator + file.lastModified() + File.pathSeparator + file.length();
+		CryptSLRule rule = RULE_CACHE.get(key);
+		if (rule == null) {
+			rule = CryptSLRuleReader.readFromFile(file);
+			if (rule != null) {
+				StateMachineGraph usagePattern = rule.getUsagePattern();
+				int states = usagePattern.getNodes().size();
+				int transitions = usagePattern.getEdges().size();
+				rule.minimizeUsagePattern();
+				System.out.println(String.format("Usage pattern of %s: %s states and %s transitions, minimized to %s states and %s transitions",
+						rule.getClassName(), states, transitions, usagePattern.getNodes().size(), usagePattern.getEdges().size()));
+				RULE_CACHE.put(key, rule);
+			}
+		}
+		return rule;
+	}
+
 	protected abstract String getRulesDirectory();
 	
 	private void initializeSootWithEntryPointAllReachable(boolean wholeProgram) {
 		G.v().reset();
 		Options.v().set_whole_program(wholeProgram);
+		// After a pre-analysis, only the methods of the classes it found relevant and of their callers are entry points.
+		boolean scopeEntryPoints = wholeProgram && preAnalysis != null;
+		String allReachable = "all-reachable:" + !scopeEntryPoints;
 
 		switch (callGraphAlogrithm()) {
 		case CHA:
 			Options.v().setPhaseOption("cg.cha", "on");
-			Options.v().setPhaseOption("cg", "all-reachable:true");
+			Options.v().setPhaseOption("cg", allReachable);
 			break;
 		case SPARK_LIBRARY:
 			Options.v().setPhaseOption("cg.spark", "on");
-			Options.v().setPhaseOption("cg", "all-reachable:true,library:any-subtype");
+			Options.v().setPhaseOption("cg", allReachable + ",library:any-subtype");
 			break;
 		case SPARK:
 			Options.v().setPhaseOption("cg.spark", "on");
-			Options.v().setPhaseOption("cg", "all-reachable:true");
+			Options.v().setPhaseOption("cg", allReachable);
 			break;
 		default:
 			throw new RuntimeException("No call graph option selected!");
@@ -304,9 +573,26 @@ public abstract class HeadlessCryptoScanner {
 		Options.v().set_exclude(getExcludeList());
 		Options.v().set_full_resolver(true);
 		Scene.v().loadNecessaryClasses();
+		if (scopeEntryPoints)
+			Scene.v().setEntryPoints(getPreAnalysisEntryPoints());
 		System.out.println("Finished initializing soot");
 	}
 
+	private List<SootMethod> getPreAnalysisEntryPoints() {
+		List<SootMethod> entryPoints = Lists.newArrayList();
+		for (String className : preAnalysis.getRelevantClasses()) {
+			if (!Scene.v().containsClass(className))
+				continue;
+			for (SootMethod m : Scene.v().getSootClass(className).getMethods()) {
+				if (m.isConcrete())
+					entryPoints.add(m);
+			}
+		}
+		System.out.println("Pre-analysis restricted the entry points to " + entryPoints.size() + " methods of "
+				+ preAnalysis.getRelevantClasses().size() + " classes");
+		return entryPoints;
+	}
+
 	private List<String> getExcludeList() {
 		List<String> exList = new LinkedList<String>();
 		List<CryptSLRule> rules = getRules();
@@ -354,6 +640,73 @@ public abstract class HeadlessCryptoScanner {
 	protected boolean enableVisualization(){
 		return false;
 	};
+
+	/**
+	 * @return whether a pre-analysis finds the classes containing seeds before the main analysis, which then only starts
+	 *         from these classes and their callers.
+	 */
+	protected boolean usePreAnalysis() {
+		return PRE_ANALYSIS;
+	}
+
+	/**
+	 * @return the directory the call graphs are cached in, or null if the call graph is always constructed.
+	 */
+	protected String getCallGraphCacheDirectory() {
+		return null;
+	}
+
+	/**
+	 * @return a file listing the signatures of the changed methods, or null to analyze the whole program.
+	 */
+	protected String getChangedMethodsFile() {
+		return null;
+	}
+
+	/**
+	 * @return the file the per-seed results are stored in between analyses, or null if all seeds are always analyzed.
+	 */
+	protected String getIncrementalStateFile() {
+		return null;
+	}
+
+	/**
+	 * @return the shard of the initial seeds this process analyzes, or null if all seeds are analyzed.
+	 */
+	protected Shard getShard() {
+		return null;
+	}
+
+	/**
+	 * @return the file the partial result of the shard is written to.
+	 */
+	protected String getShardResultFile() {
+		return null;
+	}
+
+	protected int analysisThreads() {
+		return 1;
+	}
+
+	protected SchedulingPolicy schedulingPolicy() {
+		return SchedulingPolicy.FIFO;
+	}
+
+	/**
+	 * @return the wall-clock time after which the analysis stops to analyze further objects and reports partial
+	 *         results, or null if the time is unlimited.
+	 */
+	protected Duration maxAnalysisTime() {
+		return null;
+	}
+
+	protected int seedTimeoutMS() {
+		return CogniCryptBoomerangOptions.DEFAULT_ANALYSIS_TIMEOUT_MS;
+	}
+
+	protected int timeoutRetries() {
+		return 0;
+	}
 	
 	private static String pathToJCE() {
 		// When whole program mode is disabled, the classpath misses jce.jar
@@ -0,0 +1,117 @@
+package crypto;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.cli.ParseException;
+
+import com.google.common.base.Stopwatch;
+import com.google.common.collect.Lists;
+
+/**
+ * Scans several applications sequentially within one JVM. The applications are listed in a manifest file, one per
+ * line, with the tab-separated columns softwareIdentifier, applicationCp and, optionally, sootCp. Empty lines and lines
+ * starting with {@code #} are ignored.
+ *
+ * Usage: {@code HeadlessCryptoScannerBatch <manifest> <options>}, where the options are the ones of the
+ * {@link HeadlessCryptoScanner} shared by all applications, e.g. --rulesDir and --csvReportFile. With --csvReportFile,
+ * one row per application is appended to the file. With --reportDir, the report of each application is written to a
+ * sub-folder named after its identifier. With --incrementalState, the state of each application is stored in a file
+ * named after the given file and its identifier, e.g. {@code state-app1.bin} for {@code state.bin}.
+ *
+ * The rules are deserialized once and the JIT-compiled analysis is reused for all applications. Soot is reset for each
+ * application, as its Scene cannot be shared between class paths.
+ */
+public class HeadlessCryptoScannerBatch {
+
+	public static void main(String... args) throws ParseException {
+		if (args.length < 1)
+			throw new ParseException("Usage: HeadlessCryptoScannerBatch <manifest> <options>");
+		List<String[]> applications = readManifest(new File(args[0]));
+		List<String> sharedArgs = Lists.newArrayList(Arrays.asList(args).subList(1, args.length));
+		String reportDir = removeOption(sharedArgs, "reportDir");
+		String incrementalState = removeOption(sharedArgs, "incrementalState");
+		List<String> failed = Lists.newArrayList();
+		Stopwatch batchWatch = Stopwatch.createStarted();
+		for (int i = 0; i < applications.size(); i++) {
+			String[] application = applications.get(i);
+			String identifier = application[0];
+			System.out.println("Scanning " + identifier + " (" + (i + 1) + " of " + applications.size() + ")");
+			List<String> scanArgs = Lists.newArrayList(sharedArgs);
+			scanArgs.addAll(Arrays.asList("--softwareIdentifier", identifier, "--applicationCp", application[1]));
+			if (application.length > 2 && !application[2].isEmpty())
+				scanArgs.addAll(Arrays.asList("--sootCp", application[2]));
+			if (reportDir != null)
+				scanArgs.addAll(Arrays.asList("--reportDir", new File(reportDir, identifier).getPath()));
+			if (incrementalState != null)
+				scanArgs.addAll(Arrays.asList("--incrementalState", applicationFile(new File(incrementalState), identifier).getPath()));
+			Stopwatch watch = Stopwatch.createStarted();
+			try {
+				HeadlessCryptoScanner.createFromOptions(scanArgs.toArray(new String[0])).exec();
+			} catch (Throwable e) {
+				// A failing application, e.g. a StackOverflowError in Soot, must not prevent the scans of the others.
+				e.printStackTrace();
+				failed.add(identifier);
+			}
+			System.out.println("Scanned " + identifier + " in " + watch.elapsed(TimeUnit.SECONDS) + " seconds");
+		}
+		System.out.println("Scanned " + applications.size() + " applications in "
+				+ batchWatch.elapsed(TimeUnit.SECONDS) + " seconds");
+		if (!failed.isEmpty()) {
+			System.err.println("The scans of " + failed.size() + " applications failed: " + failed);
+			System.exit(1);
+		}
+	}
+
+	private static List<String[]> readManifest(File manifest) throws ParseException {
+		List<String[]> applications = Lists.newArrayList();
+		List<String> lines;
+		try {
+			lines = Files.readAllLines(manifest.toPath(), StandardCharsets.UTF_8);
+		} catch (IOException e) {
+			throw new ParseException("Failed to read the manifest " + manifest + ": " + e.getMessage());
+		}
+		for (String line : lines) {
+			if (line.trim().isEmpty() || line.trim().startsWith("#"))
+				continue;
+			String[] columns = line.split("\t");
+			if (columns.length < 2 || columns[0].trim().isEmpty() || columns[1].trim().isEmpty())
+				throw new ParseException("Expected softwareIdentifier, applicationCp and optionally sootCp separated by tabs, but was: " + line);
+			for (int i = 0; i < columns.length; i++)
+				columns[i] = columns[i].trim();
+			applications.add(columns);
+		}
+		return applications;
+	}
+
+	/**
+	 * @return the file with the identifier of the application appended to its name, before the extension.
+	 */
+	private static File applicationFile(File file, String identifier) {
+		String name = file.getName();
+		int extension = name.lastIndexOf('.');
+		String applicationName = extension < 0 ? name + "-" + identifier
+				: name.substring(0, extension) + "-" + identifier + name.substring(extension);
+		return new File(file.getParentFile(), applicationName);
+	}
+
+	/**
+	 * Removes the option and its value from the arguments.
+	 *
+	 * @return the value of the option, or null if it is not present.
+	 */
+	private static String removeOption(List<String> args, String option) throws ParseException {
+		int index = args.indexOf("--" + option);
+		if (index < 0)
+			return null;
+		if (index + 1 >= args.size())
+			throw new ParseException("Missing value for --" + option);
+		args.remove(index);
+		return args.remove(index);
+	}
+}
@@ -0,0 +1,199 @@
+package crypto;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.cli.ParseException;
+
+import com.google.common.base.Stopwatch;
+import com.google.common.collect.Lists;
+
+/**
+ * Runs scans of the {@link HeadlessCryptoScanner} for requests read from standard input, one per line, within the same
+ * JVM. This way, the JIT-compiled analysis, the deserialized CrySL rules and the JDK files in the OS cache are reused
+ * between scans, e.g. for scans from an IDE or a pre-commit hook.
+ *
+ * A request is a JSON array of the command line arguments of the scan, e.g.
+ * {@code ["--rulesDir", "rules", "--applicationCp", "app.jar"]}. For every request, one JSON object is written to
+ * standard output: {@code {"request": 1, "status": "ok", "millis": 5230, "warm": false}}, or the status "error" with a
+ * "message". All other output of the analysis is written to standard error. The daemon stops at the end of the input.
+ *
+ * Soot cannot unload classes, so each scan still loads the Scene from scratch. Together with the options
+ * --callGraphCache and --incrementalState, a scan of a program that only changed in a few classes reuses the call graph
+ * if no class path entry changed, and otherwise only re-analyzes the objects affected by the changes.
+ */
+public class HeadlessCryptoScannerDaemon {
+
+	private final PrintStream responses;
+	private int requests;
+	private long firstRequestMillis;
+	private long warmRequestMillis;
+
+	public HeadlessCryptoScannerDaemon(PrintStream responses) {
+		this.responses = responses;
+	}
+
+	public static void main(String... args) throws IOException {
+		PrintStream responses = System.out;
+		System.setOut(System.err);
+		HeadlessCryptoScannerDaemon daemon = new HeadlessCryptoScannerDaemon(responses);
+		BufferedReader in = new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8));
+		String line;
+		while ((line = in.readLine()) != null) {
+			if (!line.trim().isEmpty())
+				daemon.handle(line);
+		}
+		daemon.printLatencies();
+	}
+
+	/**
+	 * Runs the scan of a single request and writes the response. A scan that fails, e.g. because the analysis runs out
+	 * of stack or memory, is reported as an error of its request, so the daemon keeps serving the following requests.
+	 */
+	public void handle(String request) {
+		requests++;
+		boolean warm = requests > 1;
+		Stopwatch watch = Stopwatch.createStarted();
+		String error = null;
+		try {
+			scan(parseArguments(request));
+		} catch (ParseException | IllegalArgumentException e) {
+			error = e.getMessage() == null ? e.toString() : e.getMessage();
+		} catch (Throwable e) {
+			e.printStackTrace();
+			error = e.toString();
+		}
+		long millis = watch.elapsed(TimeUnit.MILLISECONDS);
+		if (warm)
+			warmRequestMillis += millis;
+		else
+			firstRequestMillis = millis;
+		StringBuilder response = new StringBuilder();
+		response.append("{\"request\": ").append(requests);
+		response.append(", \"status\": ").append(error == null ? "\"ok\"" : "\"error\"");
+		if (error != null)
+			response.append(", \"message\": ").append(quote(error));
+		response.append(", \"millis\": ").append(millis);
+		response.append(", \"warm\": ").append(warm).append("}");
+		responses.println(response);
+		responses.flush();
+	}
+
+	protected void scan(List<String> args) throws ParseException {
+		HeadlessCryptoScanner.createFromOptions(args.toArray(new String[0])).exec();
+	}
+
+	/**
+	 * Prints the latency of the first scan, which includes loading the analysis and the rules, separately from the
+	 * average latency of the following scans.
+	 */
+	public void printLatencies() {
+		if (requests == 0)
+			return;
+		System.err.println("First request: " + firstRequestMillis + " ms");
+		if (requests > 1)
+			System.err.println("Steady state: " + warmRequestMillis / (requests - 1) + " ms on average over "
+					+ (requests - 1) + " requests");
+	}
+
+	/**
+	 * Parses a JSON array of strings.
+	 */
+	static List<String> parseArguments(String json) {
+		List<String> args = Lists.newArrayList();
+		int i = skipWhitespace(json, 0);
+		if (i >= json.length() || json.charAt(i) != '[')
+			throw new IllegalArgumentException("Expected a JSON array of arguments, but was " + json);
+		i = skipWhitespace(json, i + 1);
+		if (i < json.length() && json.charAt(i) == ']')
+			return checkEnd(json, i + 1, args);
+		while (true) {
+			if (i >= json.length() || json.charAt(i) != '"')
+				throw new IllegalArgumentException("Expected a string at position " + i + " of " + json);
+			StringBuilder arg = new StringBuilder();
+			i++;
+			while (i < json.length() && json.charAt(i) != '"') {
+				char c = json.charAt(i++);
+				if (c != '\\') {
+					arg.append(c);
+					continue;
+				}
+				if (i >= json.length())
+					break;
+				char escaped = json.charAt(i++);
+				switch (escaped) {
+				case 'n':
+					arg.append('\n');
+					break;
+				case 't':
+					arg.append('\t');
+					break;
+				case 'r':
+					arg.append('\r');
+					break;
+				case 'b':
+					arg.append('\b');
+					break;
+				case 'f':
+					arg.append('\f');
+					break;
+				case 'u':
+					if (i + 4 > json.length())
+						throw new IllegalArgumentException("Incomplete escape sequence in " + json);
+					int code = 0;
+					for (int end = i + 4; i < end; i++) {
+						int digit = Character.digit(json.charAt(i), 16);
+						if (digit < 0)
+							throw new IllegalArgumentException("Invalid escape sequence at position " + i + " of " + json);
+						code = code * 16 + digit;
+					}
+					arg.append((char) code);
+					break;
+				default:
+					arg.append(escaped);
+				}
+			}
+			if (i >= json.length())
+				throw new IllegalArgumentException("Unterminated string in " + json);
+			args.add(arg.toString());
+			i = skipWhitespace(json, i + 1);
+			if (i < json.length() && json.charAt(i) == ']')
+				return checkEnd(json, i + 1, args);
+			if (i >= json.length() || json.charAt(i) != ',')
+				throw new IllegalArgumentException("Expected ',' or ']' at position " + i + " of " + json);
+			i = skipWhitespace(json, i + 1);
+		}
+	}
+
+	private static List<String> checkEnd(String json, int i, List<String> args) {
+		if (skipWhitespace(json, i) != json.length())
+			throw new IllegalArgumentException("Unexpected content after the arguments in " + json);
+		return args;
+	}
+
+	private static int skipWhitespace(String json, int i) {
+		while (i < json.length() && Character.isWhitespace(json.charAt(i)))
+			i++;
+		return i;
+	}
+
+	private static String quote(String s) {
+		StringBuilder quoted = new StringBuilder("\"");
+		for (char c : s.toCharArray()) {
+			if (c == '"' || c == '\\')
+				quoted.append('\\').append(c);
+			else if (c == '\n')
+				quoted.append("\\n");
+			else if (c < 0x20)
+				quoted.append(String.format("\\u%04x", (int) c));
+			else
+				quoted.append(c);
+		}
+		return quoted.append('"').toString();
+	}
+}
@@ -37,10 +37,39 @@ public class HeadlessCryptoScannerOptions extends Options {
 		Option csvReportFile = Option.builder().longOpt("csvReportFile").hasArg().desc("Generates a summary of the finding as a CSV file.")
 				.build();
 		addOption(csvReportFile);
-		Option preanalysisOpt = Option.builder().longOpt("preanalysis").hasArg(false).desc("Enables an intra-procedural pre-analysis.").build();
+		Option preanalysisOpt = Option.builder().longOpt("preanalysis").hasArg(false).desc("Enables an intra-procedural pre-analysis. The analysis only starts from the classes containing objects of the rules or calls to forbidden methods, and only analyzes the objects found by the pre-analysis.").build();
 		addOption(preanalysisOpt);
 		Option visualization = Option.builder().longOpt("visualization").hasArg(false).desc("Enables the visualization. This option requires that --reportFolder is also set. A folder /viz/ is created containing Json files that can be visualized by the visualization of WPDS.").build();
 		addOption(visualization);
+		Option threads = Option.builder().longOpt("threads").hasArg().desc("The number of threads used to discover and analyze the seeds concurrently. (Default: 1)").build();
+		addOption(threads);
+
+		Option scheduler = Option.builder().longOpt("scheduler").hasArg().desc("The order in which the seeds are analyzed: fifo, cheapest-first, expensive-first or dependency. cheapest-first and expensive-first order the seeds by their estimated analysis cost, dependency analyzes the seeds of rules ensuring predicates before the seeds of rules requiring them. (Default: fifo)").build();
+		addOption(scheduler);
+
+		Option maxAnalysisTime = Option.builder().longOpt("maxAnalysisTime").hasArg().desc("The maximum time in seconds the analysis may take. When it expires, no further objects are analyzed and partial results are reported.").build();
+		addOption(maxAnalysisTime);
+
+		Option seedTimeout = Option.builder().longOpt("seedTimeout").hasArg().desc("The time in milliseconds after which the analysis of a single object is aborted. (Default: 5000)").build();
+		addOption(seedTimeout);
+
+		Option timeoutRetries = Option.builder().longOpt("timeoutRetries").hasArg().desc("How often objects whose analysis timed out are analyzed again, each time with a four times larger timeout. The retries start once all other objects are analyzed. 0 disables retries. (Default: 0)").build();
+		addOption(timeoutRetries);
+
+		Option callGraphCache = Option.builder().longOpt("callGraphCache").hasArg().desc("A directory in which the call graph is cached. A later analysis of unchanged class path entries with the same settings loads the call graph instead of constructing it.").build();
+		addOption(callGraphCache);
+
+		Option incrementalState = Option.builder().longOpt("incrementalState").hasArg().desc("A file in which the results of the analyzed objects are stored. A later analysis only re-analyzes the objects whose code, rules or incoming predicates changed and reports the stored results for the others.").build();
+		addOption(incrementalState);
+
+		Option changedMethods = Option.builder().longOpt("changedMethods").hasArg().desc("A file listing the Soot signatures of changed methods, one per line. Only the objects in methods calling or called by the changed methods are analyzed, and only errors in these methods are reported. Objects ensuring predicates are also analyzed in all application methods these methods call.").build();
+		addOption(changedMethods);
+
+		Option shard = Option.builder().longOpt("shard").hasArg().desc("Analyzes only a part of the objects, e.g. 2/4 for the second of four parts, and writes the partial result to the file given by --shardResult. The partial results of all parts are combined with crypto.sharding.ShardResultMerger.").build();
+		addOption(shard);
+
+		Option shardResult = Option.builder().longOpt("shardResult").hasArg().desc("The file the partial result of the option --shard is written to.").build();
+		addOption(shardResult);
 	}
 
 }
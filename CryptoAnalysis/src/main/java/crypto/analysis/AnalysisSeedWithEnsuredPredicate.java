@@ -1,5 +1,6 @@
 package crypto.analysis;
 
+import java.util.Collection;
 import java.util.Set;
 
 import com.beust.jcommander.internal.Lists;
@@ -37,12 +38,19 @@ public class AnalysisSeedWithEnsuredPredicate extends IAnalysisSeed{
 	public void execute() {
 		cryptoScanner.getAnalysisListener().seedStarted(this);
 		ExtendedIDEALAnaylsis solver = getOrCreateAnalysis();
-		solver.run(this);
-		analysisResults = solver.getResults();
-		for(EnsuredCryptSLPredicate pred : ensuredPredicates)
-			ensurePredicates(pred);
-		cryptoScanner.getAnalysisListener().onSeedFinished(this, analysisResults);
-		analyzed = true;
+		ForwardBoomerangResults<TransitionFunction> results = solver.run(this);
+		if (results == null) {
+			//Timeout occured. The predicates added so far are ensured once a retry of the seed succeeds.
+			cryptoScanner.seedTimedOut(this);
+			return;
+		}
+		synchronized (cryptoScanner.analysisLock) {
+			analysisResults = results;
+			for(EnsuredCryptSLPredicate pred : ensuredPredicates)
+				ensurePredicates(pred);
+			cryptoScanner.getAnalysisListener().onSeedFinished(this, analysisResults);
+			analyzed = true;
+		}
 	}
 
 	protected void ensurePredicates(EnsuredCryptSLPredicate pred) {
@@ -62,7 +70,7 @@ public class AnalysisSeedWithEnsuredPredicate extends IAnalysisSeed{
 			protected BiDiInterproceduralCFG<Unit, SootMethod> icfg() {
 				return cryptoScanner.icfg();
 			}
-			
+
 			@Override
 			public SootBasedStateMachineGraph getStateMachine() {
 				StateMachineGraph m = new StateMachineGraph();
@@ -97,6 +105,18 @@ public class AnalysisSeedWithEnsuredPredicate extends IAnalysisSeed{
 	}
 
 
+	@Override
+	public Collection<SootMethod> getTouchedMethods() {
+		Set<SootMethod> methods = Sets.newHashSet();
+		if (analysisResults == null)
+			return methods;
+		methods.add(getMethod());
+		methods.addAll(analysisResults.getStats().getCallVisitedMethods());
+		for (Statement s : analysisResults.asStatementValWeightTable().rowKeySet())
+			methods.add(s.getMethod());
+		return methods;
+	}
+
 	@Override
 	public String toString() {
 		return "AnalysisSeedWithEnsuredPredicate:"+this.asNode() +" " + ensuredPredicates; 
@@ -17,7 +17,6 @@ import com.google.common.collect.Sets;
 import com.google.common.collect.Table;
 import com.google.common.collect.Table.Cell;
 
-import boomerang.debugger.Debugger;
 import boomerang.jimple.AllocVal;
 import boomerang.jimple.Statement;
 import boomerang.jimple.Val;
@@ -36,13 +35,9 @@ import crypto.rules.CryptSLMethod;
 import crypto.rules.CryptSLObject;
 import crypto.rules.CryptSLPredicate;
 import crypto.rules.StateNode;
-import crypto.rules.TransitionEdge;
 import crypto.typestate.CryptSLMethodToSootMethod;
 import crypto.typestate.ErrorStateNode;
-import crypto.typestate.ExtendedIDEALAnaylsis;
-import crypto.typestate.SootBasedStateMachineGraph;
 import crypto.typestate.WrappedState;
-import ideal.IDEALSeedSolver;
 import soot.IntType;
 import soot.Local;
 import soot.RefType;
@@ -58,7 +53,6 @@ import soot.jimple.InvokeExpr;
 import soot.jimple.Stmt;
 import soot.jimple.StringConstant;
 import soot.jimple.ThrowStmt;
-import soot.jimple.toolkits.ide.icfg.BiDiInterproceduralCFG;
 import sync.pds.solver.nodes.Node;
 import typestate.TransitionFunction;
 import typestate.finiteautomata.ITransition;
@@ -67,8 +61,8 @@ import typestate.finiteautomata.State;
 public class AnalysisSeedWithSpecification extends IAnalysisSeed {
 
 	private final ClassSpecification spec;
-	private ExtendedIDEALAnaylsis analysis;
 	private ForwardBoomerangResults<TransitionFunction> results;
+	private TypestateResultIndex resultIndex;
 	private Collection<EnsuredCryptSLPredicate> ensuredPredicates = Sets.newHashSet();
 	private Multimap<Statement, State> typeStateChange = HashMultimap.create();
 	private Collection<EnsuredCryptSLPredicate> indirectlyEnsuredPredicates = Sets.newHashSet();
@@ -82,28 +76,6 @@ public class AnalysisSeedWithSpecification extends IAnalysisSeed {
 			ClassSpecification spec) {
 		super(cryptoScanner, stmt, val, spec.getFSM().getInitialWeight(stmt));
 		this.spec = spec;
-		this.analysis = new ExtendedIDEALAnaylsis() {
-
-			@Override
-			public SootBasedStateMachineGraph getStateMachine() {
-				return spec.getFSM();
-			}
-
-			@Override
-			protected BiDiInterproceduralCFG<Unit, SootMethod> icfg() {
-				return cryptoScanner.icfg();
-			}
-
-			@Override
-			protected Debugger<TransitionFunction> debugger(IDEALSeedSolver<TransitionFunction> solver) {
-				return cryptoScanner.debugger(solver, AnalysisSeedWithSpecification.this);
-			}
-
-			@Override
-			public CrySLResultsReporter analysisListener() {
-				return cryptoScanner.getAnalysisListener();
-			}
-		};
 	}
 
 	@Override
@@ -113,21 +85,31 @@ public class AnalysisSeedWithSpecification extends IAnalysisSeed {
 
 	public void execute() {
 		cryptoScanner.getAnalysisListener().seedStarted(this);
-		runTypestateAnalysis();
-		if(results == null)
+		ForwardBoomerangResults<TransitionFunction> typestateResults = runTypestateAnalysis();
+		if(typestateResults == null) {
 			//Timeout occured.
+			cryptoScanner.seedTimedOut(this);
 			return;
-		allCallsOnObject = results.getInvokedMethodOnInstance();
+		}
+		allCallsOnObject = typestateResults.getInvokedMethodOnInstance();
 		runExtractParameterAnalysis();
 		checkInternalConstraints();
+		TypestateResultIndex typestateResultIndex = new TypestateResultIndex(typestateResults);
+
+		synchronized (cryptoScanner.analysisLock) {
+			//Other seeds only see the results once this seed propagates its predicates.
+			results = typestateResults;
+			resultIndex = typestateResultIndex;
+			propagateResults();
+		}
+	}
 
-		Multimap<Statement, State> unitToStates = HashMultimap.create();
-		for (Cell<Statement, Val, TransitionFunction> c : results.asStatementValWeightTable().cellSet()) {
-			unitToStates.putAll(c.getRowKey(), getTargetStates(c.getValue()));
+	private void propagateResults() {
+		for (Node<Statement, Val> node : resultIndex.getNodes()) {
 			for (EnsuredCryptSLPredicate pred : indirectlyEnsuredPredicates) {
 				// TODO only maintain indirectly ensured predicate as long as they are not
 				// killed by the rule
-				predicateHandler.addNewPred(this, c.getRowKey(), c.getColumnKey(), pred);
+				predicateHandler.addNewPred(this, node.stmt(), node.fact(), pred);
 			}
 		}
 
@@ -147,28 +129,21 @@ public class AnalysisSeedWithSpecification extends IAnalysisSeed {
 		cryptoScanner.getAnalysisListener().afterConstraintCheck(this);
 	}
 
-	private void runTypestateAnalysis() {
-		analysis.run(this);
-		results = analysis.getResults();
+	private ForwardBoomerangResults<TransitionFunction> runTypestateAnalysis() {
+		return spec.getTypestateAnalysis().run(this);
 	}
 
 	private void runExtractParameterAnalysis() {
-		this.parameterAnalysis = new ExtractParameterAnalysis(this.cryptoScanner, allCallsOnObject, spec.getFSM());
+		this.parameterAnalysis = new ExtractParameterAnalysis(this.cryptoScanner, this, allCallsOnObject, spec.getFSM());
 		this.parameterAnalysis .run();
 	}
 	
 	private void computeTypestateErrorUnits() {
-		Set<Statement> allTypestateChangeStatements = Sets.newHashSet();
-		for (Cell<Statement, Val, TransitionFunction> c : results.asStatementValWeightTable().cellSet()) {
-			allTypestateChangeStatements.addAll(c.getValue().getLastStateChangeStatements());
-		}
-		for (Cell<Statement, Val, TransitionFunction> c : results.asStatementValWeightTable().cellSet()) {
-			Statement curr = c.getRowKey();
+		for (Statement curr : resultIndex.getStatements()) {
 			for (Unit pred : cryptoScanner.icfg().getPredsOf(curr.getUnit().get())) {
-				Statement typeStateChangeStatement = new Statement((Stmt) pred, curr.getMethod());
-				if(allTypestateChangeStatements.contains(typeStateChangeStatement)) {
-					Collection<? extends State> targetStates = getTargetStates(c.getValue());
-					for (State newStateAtCurr : targetStates) {
+				Statement typeStateChangeStatement = resultIndex.getStateChangeStatement(pred);
+				if(typeStateChangeStatement != null) {
+					for (State newStateAtCurr : resultIndex.getTargetStates(curr)) {
 						typeStateChangeAtStatement(typeStateChangeStatement, newStateAtCurr);
 					}
 				}
@@ -185,16 +160,8 @@ public class AnalysisSeedWithSpecification extends IAnalysisSeed {
 			for (ITransition n : c.getValue().values()) {
 				if (n.to() == null)
 					continue;
-				if (!n.to().isAccepting()) {
-					if (n.to() instanceof WrappedState) {
-						WrappedState wrappedState = (WrappedState) n.to();
-						for (TransitionEdge t : spec.getRule().getUsagePattern().getAllTransitions()) {
-							if (t.getLeft().equals(wrappedState.delegate())) {
-								Collection<SootMethod> converted = CryptSLMethodToSootMethod.v().convert(t.getLabel());
-								expectedMethodsToBeCalled.addAll(converted);
-							}
-						}
-					}
+				if (!n.to().isAccepting() && n.to() instanceof WrappedState) {
+					expectedMethodsToBeCalled.addAll(spec.getExpectedCalls(((WrappedState) n.to()).delegate()));
 				}
 			}
 			if (!expectedMethodsToBeCalled.isEmpty()) {
@@ -316,13 +283,14 @@ public class AnalysisSeedWithSpecification extends IAnalysisSeed {
 	}
 
 	private void addEnsuredPredicateFromOtherRule(EnsuredCryptSLPredicate ensuredCryptSLPredicate) {
-		indirectlyEnsuredPredicates.add(ensuredCryptSLPredicate);
-		if (results == null)
+		if (!indirectlyEnsuredPredicates.add(ensuredCryptSLPredicate))
 			return;
-		for (Cell<Statement, Val, TransitionFunction> c : results.asStatementValWeightTable().cellSet()) {
-			for (EnsuredCryptSLPredicate pred : indirectlyEnsuredPredicates) {
-				predicateHandler.addNewPred(this, c.getRowKey(), c.getColumnKey(), pred);
-			}
+		cryptoScanner.predicateArrived(this, resultIndex != null);
+		// The predicates ensured before are added to the results when they are propagated.
+		if (resultIndex == null)
+			return;
+		for (Node<Statement, Val> node : resultIndex.getNodes()) {
+			predicateHandler.addNewPred(this, node.stmt(), node.fact(), ensuredCryptSLPredicate);
 		}
 	}
 
@@ -332,29 +300,15 @@ public class AnalysisSeedWithSpecification extends IAnalysisSeed {
 
 		if (!satisfiesConstraintSytem)
 			return;
-		for (Cell<Statement, Val, TransitionFunction> e : results.asStatementValWeightTable().cellSet()) {
-			// TODO check for any reachable state that don't kill
-			// predicates.
-			if (containsTargetState(e.getValue(), stateNode)) {
-				predicateHandler.addNewPred(this, e.getRowKey(), e.getColumnKey(),
-						new EnsuredCryptSLPredicate(predToBeEnsured, parameterAnalysis.getCollectedValues()));
-			}
+		EnsuredCryptSLPredicate ensuredPred = new EnsuredCryptSLPredicate(predToBeEnsured,
+				parameterAnalysis.getCollectedValues());
+		// TODO check for any reachable state that don't kill
+		// predicates.
+		for (Node<Statement, Val> node : resultIndex.getNodesInState(stateNode)) {
+			predicateHandler.addNewPred(this, node.stmt(), node.fact(), ensuredPred);
 		}
 	}
 
-	private boolean containsTargetState(TransitionFunction value, State stateNode) {
-		return getTargetStates(value).contains(stateNode);
-	}
-
-	private Collection<? extends State> getTargetStates(TransitionFunction value) {
-		Set<State> res = Sets.newHashSet();
-		for (ITransition t : value.values()) {
-			if (t.to() != null)
-				res.add(t.to());
-		}
-		return res;
-	}
-
 	private boolean checkConstraintSystem() {
 		cryptoScanner.getAnalysisListener().beforePredicateCheck(this);
 		List<ISLConstraint> relConstraints = constraintSolver.getRelConstraints();
@@ -511,6 +465,7 @@ public class AnalysisSeedWithSpecification extends IAnalysisSeed {
 
 	public void addEnsuredPredicate(EnsuredCryptSLPredicate ensPred) {
 		if (ensuredPredicates.add(ensPred)) {
+			cryptoScanner.predicateArrived(this, !typeStateChange.isEmpty());
 			for (Entry<Statement, State> e : typeStateChange.entries())
 				onAddedTypestateChange(e.getKey(), e.getValue());
 		}
@@ -542,6 +497,28 @@ public class AnalysisSeedWithSpecification extends IAnalysisSeed {
 		return parameterAnalysis;
 	}
 
+	/**
+	 * @return the methods visited by the typestate analysis and the methods of the call sites and values the parameter
+	 *         analysis extracted.
+	 */
+	@Override
+	public Collection<SootMethod> getTouchedMethods() {
+		Set<SootMethod> methods = Sets.newHashSet();
+		if (results == null)
+			return methods;
+		methods.add(getMethod());
+		methods.addAll(results.getStats().getCallVisitedMethods());
+		for (Statement s : results.asStatementValWeightTable().rowKeySet())
+			methods.add(s.getMethod());
+		for (Statement s : allCallsOnObject.keySet())
+			methods.add(s.getMethod());
+		for (Entry<CallSiteWithParamIndex, ExtractedValue> e : parameterAnalysis.getCollectedValues().entries()) {
+			methods.add(e.getKey().stmt().getMethod());
+			methods.add(e.getValue().stmt().getMethod());
+		}
+		return methods;
+	}
+
 	@Override
 	public int hashCode() {
 		final int prime = 31;
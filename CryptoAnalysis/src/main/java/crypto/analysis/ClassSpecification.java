@@ -1,30 +1,28 @@
 package crypto.analysis;
 
 import java.util.Collection;
-import java.util.List;
-import java.util.Optional;
+import java.util.Collections;
+import java.util.Map;
 import java.util.Set;
 
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+
+import boomerang.ForwardQuery;
 import boomerang.WeightedForwardQuery;
 import boomerang.debugger.Debugger;
-import boomerang.jimple.Statement;
-import crypto.analysis.errors.ForbiddenMethodError;
-import crypto.rules.CryptSLForbiddenMethod;
+import crypto.interfaces.ISLConstraint;
 import crypto.rules.CryptSLRule;
+import crypto.rules.StateNode;
+import crypto.rules.TransitionEdge;
 import crypto.typestate.CryptSLMethodToSootMethod;
 import crypto.typestate.ExtendedIDEALAnaylsis;
+import crypto.typestate.FiniteStateMachineToTypestateChangeFunction;
 import crypto.typestate.SootBasedStateMachineGraph;
 import ideal.IDEALSeedSolver;
-import soot.Body;
-import soot.MethodOrMethodContext;
-import soot.Scene;
 import soot.SootMethod;
 import soot.Unit;
-import soot.jimple.InvokeExpr;
-import soot.jimple.Stmt;
-import soot.jimple.toolkits.callgraph.ReachableMethods;
 import soot.jimple.toolkits.ide.icfg.BiDiInterproceduralCFG;
-import soot.util.queue.QueueReader;
 import typestate.TransitionFunction;
 
 public class ClassSpecification {
@@ -32,11 +30,29 @@ public class ClassSpecification {
 	private CryptSLRule cryptSLRule;
 	private final CryptoScanner cryptoScanner;
 	private final SootBasedStateMachineGraph fsm;
+	private final Set<SootMethod> involvedMethods;
+	private final Map<ISLConstraint, Set<String>> constraintVarNames = Maps.newIdentityHashMap();
+	private final Set<ISLConstraint> speccedKeyConstraints = Sets.newIdentityHashSet();
+	private final Map<StateNode, Set<SootMethod>> expectedCalls = Maps.newHashMap();
 
 	public ClassSpecification(final CryptSLRule rule, final CryptoScanner cScanner) {
 		this.cryptSLRule = rule;
 		this.cryptoScanner = cScanner;
 		this.fsm = new SootBasedStateMachineGraph(rule.getUsagePattern());
+		this.involvedMethods = Collections.unmodifiableSet(Sets.newHashSet(fsm.getInvolvedMethods()));
+		for (ISLConstraint cons : rule.getConstraints()) {
+			constraintVarNames.put(cons, Collections.unmodifiableSet(cons.getInvolvedVarNames()));
+			if (cons.toString().contains("speccedKey"))
+				speccedKeyConstraints.add(cons);
+		}
+		for (TransitionEdge t : rule.getUsagePattern().getAllTransitions()) {
+			Set<SootMethod> calls = expectedCalls.get(t.getLeft());
+			if (calls == null) {
+				calls = Sets.newHashSet();
+				expectedCalls.put(t.getLeft(), calls);
+			}
+			calls.addAll(CryptSLMethodToSootMethod.v().convert(t.getLabel()));
+		}
 		this.extendedIdealAnalysis = new ExtendedIDEALAnaylsis() {
 			@Override
 			public SootBasedStateMachineGraph getStateMachine() {
@@ -55,7 +71,8 @@ public class ClassSpecification {
 
 			@Override
 			protected Debugger<TransitionFunction> debugger(IDEALSeedSolver<TransitionFunction> solver) {
-				return cryptoScanner.debugger(solver, null);
+				ForwardQuery query = runningQuery();
+				return cryptoScanner.debugger(solver, query instanceof IAnalysisSeed ? (IAnalysisSeed) query : null);
 			}
 		};
 	}
@@ -68,57 +85,29 @@ public class ClassSpecification {
 		return extendedIdealAnalysis.computeInitialSeeds();
 	}
 
-	@Override
-	public String toString() {
-		return cryptSLRule.getClassName().toString();
+	/**
+	 * @return the seeds of this specification created at the given statement.
+	 */
+	public Collection<WeightedForwardQuery<TransitionFunction>> generateSeeds(SootMethod method, Unit unit) {
+		return extendedIdealAnalysis.computeSeeds(method, unit);
 	}
 
-	public void checkForForbiddenMethods() {
-		ReachableMethods rm = Scene.v().getReachableMethods();
-		QueueReader<MethodOrMethodContext> listener = rm.listener();
-		while (listener.hasNext()) {
-			MethodOrMethodContext next = listener.next();
-			SootMethod method = next.method();
-			if (method == null || !method.hasActiveBody()) {
-				continue;
-			}
-			invokesForbiddenMethod(method.getActiveBody());
-		}
+	public FiniteStateMachineToTypestateChangeFunction getTypestateChangeFunction() {
+		return extendedIdealAnalysis.getOrCreateTypestateChangeFunction();
 	}
 
-	private void invokesForbiddenMethod(Body activeBody) {
-		for (Unit u : activeBody.getUnits()) {
-			if (u instanceof Stmt) {
-				Stmt stmt = (Stmt) u;
-				if (!stmt.containsInvokeExpr())
-					continue;
-				InvokeExpr invokeExpr = stmt.getInvokeExpr();
-				SootMethod method = invokeExpr.getMethod();
-				Optional<CryptSLForbiddenMethod> forbiddenMethod = isForbiddenMethod(method);
-				if (forbiddenMethod.isPresent()){
-					cryptoScanner.getAnalysisListener().reportError(new ForbiddenMethodError(new Statement((Stmt)u, cryptoScanner.icfg().getMethodOf(u)), this.getRule(), method, CryptSLMethodToSootMethod.v().convert(forbiddenMethod.get().getAlternatives())));
-				}
-			}
-		}
+	/**
+	 * @return the typestate analysis shared by all seeds of this specification.
+	 */
+	public ExtendedIDEALAnaylsis getTypestateAnalysis() {
+		return extendedIdealAnalysis;
 	}
 
-	private Optional<CryptSLForbiddenMethod> isForbiddenMethod(SootMethod method) {
-		// TODO replace by real specification once available.
-		List<CryptSLForbiddenMethod> forbiddenMethods = cryptSLRule.getForbiddenMethods();
-//		System.out.println(forbiddenMethods);
-		//TODO Iterate over ICFG and report on usage of forbidden method.
-		for(CryptSLForbiddenMethod m : forbiddenMethods){
-			if(!m.getSilent()){
-				Collection<SootMethod> matchingMethod = CryptSLMethodToSootMethod.v().convert(m.getMethod());
-				if(matchingMethod.contains(method))
-					return Optional.of(m);
-				
-			}
-		}
-		return Optional.empty();
+	@Override
+	public String toString() {
+		return cryptSLRule.getClassName().toString();
 	}
 
-
 	public CryptSLRule getRule() {
 		return cryptSLRule;
 	}
@@ -149,9 +138,33 @@ public class ClassSpecification {
 	}
 
 	public Collection<SootMethod> getInvolvedMethods() {
-		return fsm.getInvolvedMethods();
+		return involvedMethods;
+	}
+
+	/**
+	 * @return the variable names the constraint of the rule involves.
+	 */
+	public Set<String> getInvolvedVarNames(ISLConstraint cons) {
+		Set<String> varNames = constraintVarNames.get(cons);
+		return varNames != null ? varNames : cons.getInvolvedVarNames();
+	}
+
+	/**
+	 * @return whether the constraint of the rule refers to the speccedKey predicate.
+	 */
+	public boolean refersToSpeccedKey(ISLConstraint cons) {
+		return speccedKeyConstraints.contains(cons);
 	}
 	
+	/**
+	 * @return the methods of the transitions of the usage pattern out of the state, which are expected to be called
+	 *         on an object in the state.
+	 */
+	public Set<SootMethod> getExpectedCalls(StateNode state) {
+		Set<SootMethod> calls = expectedCalls.get(state);
+		return calls != null ? Collections.unmodifiableSet(calls) : Collections.<SootMethod>emptySet();
+	}
+
 	public SootBasedStateMachineGraph getFSM(){
 		return fsm;
 	}
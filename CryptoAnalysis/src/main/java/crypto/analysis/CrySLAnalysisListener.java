@@ -1,5 +1,23 @@
 package crypto.analysis;
 
+import boomerang.BackwardQuery;
+import boomerang.Query;
+
 public abstract class CrySLAnalysisListener implements ICrySLPerformanceListener, ICrySLResultsListener {
 	
+	@Override
+	public void parameterQueryCacheLookup(Query seed, BackwardQuery q, boolean cacheHit) {
+	}
+
+	@Override
+	public void predicateReplays(int replays, int avoidedReplays) {
+	}
+
+	@Override
+	public void onSeedSkipped(IAnalysisSeed seed) {
+	}
+
+	@Override
+	public void onSeedRecovered(IAnalysisSeed seed, int analysisTimeoutMS) {
+	}
 }
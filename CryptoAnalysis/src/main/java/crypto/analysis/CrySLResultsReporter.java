@@ -29,27 +29,27 @@ public class CrySLResultsReporter  {
 		listeners = new ArrayList<ICrySLResultsListener>();
 	}
 
-	public boolean addReportListener(ICrySLResultsListener listener) {
+	public synchronized boolean addReportListener(ICrySLResultsListener listener) {
 		return listeners.add(listener);
 	}
 
-	public boolean removeReportListener(CrySLAnalysisListener listener) {
+	public synchronized boolean removeReportListener(CrySLAnalysisListener listener) {
 		return listeners.remove(listener);
 	}
 
-	public void collectedValues(AnalysisSeedWithSpecification seed, Multimap<CallSiteWithParamIndex, ExtractedValue> parametersToValues) {
+	public synchronized void collectedValues(AnalysisSeedWithSpecification seed, Multimap<CallSiteWithParamIndex, ExtractedValue> parametersToValues) {
 		for (ICrySLResultsListener listen : listeners) {
 			listen.collectedValues(seed, parametersToValues);
 		}
 	}
 
-	public void discoveredSeed(IAnalysisSeed curr) {
+	public synchronized void discoveredSeed(IAnalysisSeed curr) {
 		for (ICrySLResultsListener listen : listeners) {
 			listen.discoveredSeed(curr);
 		}
 	}
 
-	public void ensuredPredicates(Table<Statement, Val, Set<EnsuredCryptSLPredicate>> existingPredicates, Table<Statement, IAnalysisSeed, Set<CryptSLPredicate>> expectedPredicates, Table<Statement, IAnalysisSeed, Set<CryptSLPredicate>> missingPredicates) {
+	public synchronized void ensuredPredicates(Table<Statement, Val, Set<EnsuredCryptSLPredicate>> existingPredicates, Table<Statement, IAnalysisSeed, Set<CryptSLPredicate>> expectedPredicates, Table<Statement, IAnalysisSeed, Set<CryptSLPredicate>> missingPredicates) {
 		for (ICrySLResultsListener listen : listeners) {
 			if (listen instanceof CrySLAnalysisListener) {
 				((CrySLAnalysisListener) listen).ensuredPredicates(existingPredicates, expectedPredicates, missingPredicates);
@@ -57,13 +57,13 @@ public class CrySLResultsReporter  {
 		}
 	}
 
-	public void checkedConstraints(AnalysisSeedWithSpecification analysisSeedWithSpecification, Collection<ISLConstraint> relConstraints) {
+	public synchronized void checkedConstraints(AnalysisSeedWithSpecification analysisSeedWithSpecification, Collection<ISLConstraint> relConstraints) {
 		for (ICrySLResultsListener listen : listeners) {
 			listen.checkedConstraints(analysisSeedWithSpecification, relConstraints);
 		}
 	}
 
-	public void beforeAnalysis() {
+	public synchronized void beforeAnalysis() {
 		for (ICrySLResultsListener listen : listeners) {
 			if (listen instanceof CrySLAnalysisListener) {
 				((CrySLAnalysisListener) listen).beforeAnalysis();
@@ -71,7 +71,7 @@ public class CrySLResultsReporter  {
 		}
 	}
 
-	public void afterAnalysis() {
+	public synchronized void afterAnalysis() {
 		for (ICrySLResultsListener listen : listeners) {
 			if (listen instanceof CrySLAnalysisListener) {
 				((CrySLAnalysisListener) listen).afterAnalysis();
@@ -79,7 +79,7 @@ public class CrySLResultsReporter  {
 		}
 	}
 
-	public void beforeConstraintCheck(AnalysisSeedWithSpecification analysisSeedWithSpecification) {
+	public synchronized void beforeConstraintCheck(AnalysisSeedWithSpecification analysisSeedWithSpecification) {
 		for (ICrySLResultsListener listen : listeners) {
 			if (listen instanceof CrySLAnalysisListener) {
 				((CrySLAnalysisListener) listen).beforeConstraintCheck(analysisSeedWithSpecification);
@@ -87,7 +87,7 @@ public class CrySLResultsReporter  {
 		}
 	}
 
-	public void afterConstraintCheck(AnalysisSeedWithSpecification analysisSeedWithSpecification) {
+	public synchronized void afterConstraintCheck(AnalysisSeedWithSpecification analysisSeedWithSpecification) {
 		for (ICrySLResultsListener listen : listeners) {
 			if (listen instanceof CrySLAnalysisListener) {
 				((CrySLAnalysisListener) listen).afterConstraintCheck(analysisSeedWithSpecification);
@@ -95,7 +95,7 @@ public class CrySLResultsReporter  {
 		}
 	}
 
-	public void beforePredicateCheck(AnalysisSeedWithSpecification analysisSeedWithSpecification) {
+	public synchronized void beforePredicateCheck(AnalysisSeedWithSpecification analysisSeedWithSpecification) {
 		for (ICrySLResultsListener listen : listeners) {
 			if (listen instanceof CrySLAnalysisListener) {
 				((CrySLAnalysisListener) listen).beforePredicateCheck(analysisSeedWithSpecification);
@@ -103,7 +103,7 @@ public class CrySLResultsReporter  {
 		}
 	}
 
-	public void afterPredicateCheck(AnalysisSeedWithSpecification analysisSeedWithSpecification) {
+	public synchronized void afterPredicateCheck(AnalysisSeedWithSpecification analysisSeedWithSpecification) {
 		for (ICrySLResultsListener listen : listeners) {
 			if (listen instanceof CrySLAnalysisListener) {
 				((CrySLAnalysisListener) listen).afterPredicateCheck(analysisSeedWithSpecification);
@@ -111,7 +111,7 @@ public class CrySLResultsReporter  {
 		}
 	}
 
-	public void seedStarted(IAnalysisSeed analysisSeedWithSpecification) {
+	public synchronized void seedStarted(IAnalysisSeed analysisSeedWithSpecification) {
 		for (ICrySLResultsListener listen : listeners) {
 			if (listen instanceof CrySLAnalysisListener) {
 				((CrySLAnalysisListener) listen).seedStarted(analysisSeedWithSpecification);
@@ -119,7 +119,7 @@ public class CrySLResultsReporter  {
 		}
 	}
 
-	public void boomerangQueryStarted(Query seed, BackwardQuery q) {
+	public synchronized void boomerangQueryStarted(Query seed, BackwardQuery q) {
 		for (ICrySLResultsListener listen : listeners) {
 			if (listen instanceof CrySLAnalysisListener) {
 				((CrySLAnalysisListener) listen).boomerangQueryStarted(seed, q);
@@ -127,33 +127,61 @@ public class CrySLResultsReporter  {
 		}
 	}
 
-	public void boomerangQueryFinished(Query seed, BackwardQuery q) {
+	public synchronized void boomerangQueryFinished(Query seed, BackwardQuery q) {
 		for (ICrySLResultsListener listen : listeners) {
 			if (listen instanceof CrySLAnalysisListener) {
 				((CrySLAnalysisListener) listen).boomerangQueryFinished(seed, q);
 			}
 		}
 	}
+
+	public synchronized void parameterQueryCacheLookup(Query seed, BackwardQuery q, boolean cacheHit) {
+		for (ICrySLResultsListener listen : listeners) {
+			if (listen instanceof CrySLAnalysisListener) {
+				((CrySLAnalysisListener) listen).parameterQueryCacheLookup(seed, q, cacheHit);
+			}
+
+	public synchronized void predicateReplays(int replays, int avoidedReplays) {
+		for (ICrySLResultsListener listen : listeners) {
+			if (listen instanceof CrySLAnalysisListener) {
+				((CrySLAnalysisListener) listen).predicateReplays(replays, avoidedReplays);
+			}
+		}
+	}
+		}
+	}
 	
-	public void onSeedFinished(IAnalysisSeed seed, ForwardBoomerangResults<TransitionFunction> analysisResults) {
+	public synchronized void onSeedFinished(IAnalysisSeed seed, ForwardBoomerangResults<TransitionFunction> analysisResults) {
 		for (ICrySLResultsListener listen : listeners) {
 			listen.onSeedFinished(seed, analysisResults);
 		}
 	}
 	
-	public void onSeedTimeout(Node<Statement,Val> seed) {
+	public synchronized void onSeedTimeout(Node<Statement,Val> seed) {
 		for (ICrySLResultsListener listen : listeners) {
 			listen.onSeedTimeout(seed);
 		}
 	}
 	
-	public void reportError(AbstractError err) {
+	public synchronized void onSeedSkipped(IAnalysisSeed seed) {
+		for (ICrySLResultsListener listen : listeners) {
+			listen.onSeedSkipped(seed);
+		}
+	}
+	
+	public synchronized void onSeedRecovered(IAnalysisSeed seed, int analysisTimeoutMS) {
+		for (ICrySLResultsListener listen : listeners) {
+			listen.onSeedRecovered(seed, analysisTimeoutMS);
+		}
+	}
+	
+	public synchronized void reportError(AbstractError err) {
 		for (ICrySLResultsListener listen : listeners) {
 			listen.reportError(err);
 		}
 	}
 	
-	public void onSecureObjectFound(IAnalysisSeed seed) {
+	public synchronized void onSecureObjectFound(IAnalysisSeed seed) {
 		for (ICrySLResultsListener listen : listeners) {
 			listen.onSecureObjectFound(seed);
 		}
@@ -1,20 +1,36 @@
 package crypto.analysis;
 
+import java.io.File;
 import java.time.Duration;
 import java.util.Collection;
-import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import com.google.common.base.Stopwatch;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Multimap;
+import com.google.common.collect.Sets;
 
 import boomerang.Query;
+import boomerang.WeightedForwardQuery;
 import boomerang.debugger.Debugger;
 import boomerang.jimple.Statement;
 import boomerang.jimple.Val;
+import crypto.boomerang.CogniCryptBoomerangOptions;
+import crypto.extractparameter.ParameterQueryCache;
+import crypto.incremental.IncrementalScan;
 import crypto.predicates.PredicateHandler;
 import crypto.rules.CryptSLRule;
+import crypto.scheduling.SchedulingPolicy;
+import crypto.scheduling.SeedScheduler;
 import crypto.typestate.CryptSLMethodToSootMethod;
 import heros.utilities.DefaultValueMap;
 import ideal.IDEALSeedSolver;
@@ -27,9 +43,12 @@ import typestate.TransitionFunction;
 public abstract class CryptoScanner {
 
 	public static boolean APPLICATION_CLASS_SEEDS_ONLY = false;
-	private final LinkedList<IAnalysisSeed> worklist = Lists.newLinkedList();
+	private static final int TIMEOUT_ESCALATION_FACTOR = 4;
+	private SeedScheduler worklist;
+	private final Object worklistLock = new Object();
 	private final List<ClassSpecification> specifications = Lists.newLinkedList();
 	private final PredicateHandler predicateHandler = new PredicateHandler(this);
+	private final ParameterQueryCache parameterQueryCache = new ParameterQueryCache();
 	private CrySLResultsReporter resultsAggregator = new CrySLResultsReporter();
 
 	
@@ -49,7 +68,25 @@ public abstract class CryptoScanner {
 		}
 	};
 	private int solvedObject;
+	private int seedsInProgress;
+	private final AtomicInteger predicateReplays = new AtomicInteger();
+	private final AtomicInteger avoidedPredicateReplays = new AtomicInteger();
+	private final Map<IAnalysisSeed, Long> discoveryOrder = Maps.newHashMap();
+	private long discoveredSeeds;
+	private final Set<IAnalysisSeed> startedSeeds = Sets.newHashSet();
+	private final ThreadLocal<IAnalysisSeed> analyzedSeed = new ThreadLocal<IAnalysisSeed>();
 	private Stopwatch analysisWatch;
+	private Duration maxAnalysisTime;
+	private boolean analysisTimeExpired;
+	private final Set<IAnalysisSeed> timedOutSeeds = Sets.newLinkedHashSet();
+	private final Set<IAnalysisSeed> retriedSeeds = Sets.newHashSet();
+	private final Set<IAnalysisSeed> finishedRetries = Sets.newHashSet();
+	private IncrementalScan incrementalScan;
+	/**
+	 * Guards the state seeds share with each other (ensured predicates, seeds created for other objects, the
+	 * {@link PredicateHandler} tables). Seeds compute their typestate and parameter analysis without holding it.
+	 */
+	final Object analysisLock = new Object();
 
 	public abstract BiDiInterproceduralCFG<Unit, SootMethod> icfg();
 
@@ -59,6 +96,75 @@ public abstract class CryptoScanner {
 
 	public abstract boolean isCommandLineMode();
 
+	/**
+	 * @return the number of threads used to discover and execute the analysis seeds. With one thread, all seeds are
+	 *         discovered and executed sequentially on the thread calling {@link #scan()}.
+	 */
+	public int analysisThreads() {
+		return 1;
+	}
+
+	/**
+	 * @return the time after which no further seeds are analyzed, or null if the analysis time is unlimited. Seeds
+	 *         already being analyzed when the time expires are completed.
+	 */
+	public Duration maxAnalysisTime() {
+		return null;
+	}
+
+	/**
+	 * @return the time after which the typestate analysis of a seed is aborted in the first attempt.
+	 */
+	public int seedTimeoutMS() {
+		return CogniCryptBoomerangOptions.DEFAULT_ANALYSIS_TIMEOUT_MS;
+	}
+
+	/**
+	 * @return how often seeds whose analysis timed out are retried. Each retry multiplies the seed's timeout by
+	 *         four. Retries start once all other seeds are analyzed.
+	 */
+	public int timeoutRetries() {
+		return 0;
+	}
+
+	/**
+	 * @return the order in which the analysis seeds are executed.
+	 */
+	public SchedulingPolicy schedulingPolicy() {
+		return SchedulingPolicy.FIFO;
+	}
+
+	/**
+	 * @return whether objects of the specification may be seeds in the program. The initial seeds of specifications for
+	 *         which this is false are not searched.
+	 */
+	public boolean mayHaveSeeds(ClassSpecification spec) {
+		return true;
+	}
+
+	/**
+	 * @return whether the given method may contain seeds of the specification. Initial seeds are only searched in
+	 *         such methods.
+	 */
+	public boolean mayHaveSeeds(ClassSpecification spec, SootMethod method) {
+		return true;
+	}
+
+	/**
+	 * @return whether the initial seed is analyzed by this scanner. Seeds created while analyzing other seeds, e.g. for
+	 *         objects receiving a predicate, are always analyzed.
+	 */
+	public boolean analyzeInitialSeed(AnalysisSeedWithSpecification seed) {
+		return true;
+	}
+
+	/**
+	 * @return the file the results of the analysis are stored in, so a later analysis of the same program only
+	 *         re-analyzes the seeds affected by changes. Null disables the incremental analysis.
+	 */
+	public File incrementalStateFile() {
+		return null;
+	}
 
 	public CryptoScanner(List<CryptSLRule> specs) {
 		CryptSLMethodToSootMethod.reset();
@@ -73,15 +179,19 @@ public abstract class CryptoScanner {
 	public void scan() {
 		getAnalysisListener().beforeAnalysis();
 		analysisWatch = Stopwatch.createStarted();
+		File stateFile = incrementalStateFile();
+		if (stateFile != null) {
+			incrementalScan = new IncrementalScan(this, stateFile);
+			getAnalysisListener().addReportListener(incrementalScan);
+		}
+		maxAnalysisTime = maxAnalysisTime();
+		worklist = schedulingPolicy().createScheduler(this);
 		initialize();
 		long elapsed = analysisWatch.elapsed(TimeUnit.SECONDS);
 		System.out.println("Discovered "+worklist.size() + " analysis seeds within " + elapsed + " seconds!");
-		while (!worklist.isEmpty()) {
-			IAnalysisSeed curr = worklist.poll();
-			getAnalysisListener().discoveredSeed(curr);
-			curr.execute();
-			estimateAnalysisTime();
-		}
+		analyseSeeds();
+		retryTimedOutSeeds();
+		skipRemainingSeeds();
 		
 //		IDebugger<TypestateDomainValue<StateNode>> debugger = debugger();
 //		if (debugger instanceof CryptoVizDebugger) {
@@ -89,6 +199,18 @@ public abstract class CryptoScanner {
 //			ideVizDebugger.addEnsuredPredicates(this.existingPredicates);
 //		}
 		predicateHandler.checkPredicates();
+		if (incrementalScan != null)
+			incrementalScan.finish(timedOutSeeds);
+		System.out.println("Predicates propagated to already analyzed seeds: " + predicateReplays.get()
+				+ " (avoided compared to the order of discovery: " + avoidedPredicateReplays.get() + ")");
+		getAnalysisListener().predicateReplays(predicateReplays.get(), avoidedPredicateReplays.get());
+		int parameterValues = parameterQueryCache.getMisses() + parameterQueryCache.getHits()
+				+ parameterQueryCache.getResolvedLocally();
+		System.out.println("Parameter queries solved: " + parameterQueryCache.getMisses() + " (reused: "
+				+ parameterQueryCache.getHits() + ", resolved within the method: "
+				+ parameterQueryCache.getResolvedLocally() + " of " + parameterValues + " values"
+				+ (parameterValues > 0 ? String.format(", %.1f%%", 100.0 * parameterQueryCache.getResolvedLocally() / parameterValues) : "")
+				+ ")");
 		
 		getAnalysisListener().afterAnalysis();
 		elapsed = analysisWatch.elapsed(TimeUnit.SECONDS);
@@ -98,6 +220,141 @@ public abstract class CryptoScanner {
 
 	
 
+	private void analyseSeeds() {
+		int threads = analysisThreads();
+		if (threads <= 1) {
+			processWorklist();
+			return;
+		}
+		System.out.println("Analyzing seeds with " + threads + " threads");
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		List<Future<?>> workers = Lists.newArrayList();
+		for (int i = 0; i < threads; i++) {
+			workers.add(executor.submit(new Runnable() {
+				@Override
+				public void run() {
+					processWorklist();
+				}
+			}));
+		}
+		try {
+			for (Future<?> worker : workers) {
+				worker.get();
+			}
+		} catch (InterruptedException | ExecutionException e) {
+			throw new RuntimeException("Analysis of seeds failed", e);
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	private void processWorklist() {
+		IAnalysisSeed curr;
+		while ((curr = nextSeed()) != null) {
+			Stopwatch seedWatch = Stopwatch.createStarted();
+			try {
+				if (!retriedSeeds.contains(curr))
+					getAnalysisListener().discoveredSeed(curr);
+				if (incrementalScan != null)
+					incrementalScan.enter(curr);
+				analyzedSeed.set(curr);
+				curr.execute();
+			} finally {
+				analyzedSeed.remove();
+				if (incrementalScan != null)
+					incrementalScan.exit();
+				seedFinished(curr, seedWatch.elapsed());
+			}
+		}
+	}
+
+	/**
+	 * Blocks while the worklist is empty but other seeds are still executed, as these may add new seeds.
+	 * 
+	 * @return the next seed to analyze or null when all seeds are analyzed.
+	 */
+	private IAnalysisSeed nextSeed() {
+		synchronized (worklistLock) {
+			while (worklist.isEmpty()) {
+				if (seedsInProgress == 0) {
+					return null;
+				}
+				try {
+					worklistLock.wait();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					return null;
+				}
+			}
+			if (maxAnalysisTime != null && analysisWatch.elapsed().compareTo(maxAnalysisTime) >= 0) {
+				analysisTimeExpired = true;
+				return null;
+			}
+			seedsInProgress++;
+			IAnalysisSeed next = worklist.poll();
+			startedSeeds.add(next);
+			return next;
+		}
+	}
+
+	private void seedFinished(IAnalysisSeed seed, Duration analysisTime) {
+		synchronized (worklistLock) {
+			seedsInProgress--;
+			worklist.seedFinished(seed, analysisTime);
+			if (retriedSeeds.contains(seed))
+				finishedRetries.add(seed);
+			estimateAnalysisTime();
+			worklistLock.notifyAll();
+		}
+	}
+
+	/**
+	 * Re-analyzes the seeds whose analysis timed out with an escalated timeout, as long as retries and analysis time
+	 * remain. Seeds discovered during a retry are analyzed in the same round.
+	 */
+	private void retryTimedOutSeeds() {
+		for (int round = 0; round < timeoutRetries() && !timedOutSeeds.isEmpty() && !analysisTimeExpired; round++) {
+			List<IAnalysisSeed> retry = Lists.newArrayList(timedOutSeeds);
+			timedOutSeeds.clear();
+			finishedRetries.clear();
+			System.out.println("Retrying " + retry.size() + " timed out analysis seeds");
+			for (IAnalysisSeed seed : retry) {
+				seed.setAnalysisTimeoutMS(seed.getAnalysisTimeoutMS() * TIMEOUT_ESCALATION_FACTOR);
+				retriedSeeds.add(seed);
+				addToWorkList(seed);
+			}
+			analyseSeeds();
+			for (IAnalysisSeed seed : retry) {
+				if (finishedRetries.contains(seed) && !timedOutSeeds.contains(seed)) {
+					getAnalysisListener().onSeedRecovered(seed, seed.getAnalysisTimeoutMS());
+				}
+			}
+		}
+	}
+
+	void seedTimedOut(IAnalysisSeed seed) {
+		synchronized (worklistLock) {
+			timedOutSeeds.add(seed);
+		}
+	}
+
+	/**
+	 * Reports the seeds that were not analyzed because the analysis time expired. The predicates are still checked
+	 * for the analyzed seeds, but the results are partial.
+	 */
+	private void skipRemainingSeeds() {
+		if (!analysisTimeExpired)
+			return;
+		int skipped = 0;
+		IAnalysisSeed seed;
+		while ((seed = worklist.poll()) != null) {
+			getAnalysisListener().onSeedSkipped(seed);
+			skipped++;
+		}
+		System.out.println("Analysis time of " + maxAnalysisTime + " expired, " + skipped
+				+ " analysis seeds were not analyzed. The results are partial!");
+	}
+
 	private void estimateAnalysisTime() {
 		int remaining = worklist.size();
 		solvedObject++;
@@ -113,17 +370,80 @@ public abstract class CryptoScanner {
 	}
 
 	private void initialize() {
+		new ForbiddenMethodDetection(this, getClassSpecifictions()).detect(analysisThreads());
+		List<ClassSpecification> seedSpecs = Lists.newArrayList();
 		for (ClassSpecification spec : getClassSpecifictions()) {
-			spec.checkForForbiddenMethods();
 			if (!isCommandLineMode() && !spec.isLeafRule())
 				continue;
+			if (!mayHaveSeeds(spec))
+				continue;
+			seedSpecs.add(spec);
+		}
 
-			for (Query seed : spec.getInitialSeeds()) {
+		Multimap<ClassSpecification, WeightedForwardQuery<TransitionFunction>> seeds = new SeedDiscovery(this, seedSpecs).discoverSeeds(analysisThreads());
+		List<AnalysisSeedWithSpecification> initialSeeds = Lists.newArrayList();
+		for (ClassSpecification spec : seedSpecs) {
+			for (Query seed : seeds.get(spec)) {
 				if(!spec.getRule().getClassName().equals("javax.crypto.SecretKey")) {
-					getOrCreateSeedWithSpec(new AnalysisSeedWithSpecification(this, seed.stmt(),seed.var(),spec));
+					AnalysisSeedWithSpecification initialSeed = new AnalysisSeedWithSpecification(this, seed.stmt(),seed.var(),spec);
+					if (analyzeInitialSeed(initialSeed))
+						initialSeeds.add(initialSeed);
 				}
 			}
 		}
+		addInitialSeeds(initialSeeds);
+	}
+
+	/**
+	 * Adds the initial seeds to the worklist. In an incremental analysis, seeds whose results are reused from the
+	 * previous analysis are only registered.
+	 */
+	private void addInitialSeeds(List<AnalysisSeedWithSpecification> initialSeeds) {
+		if (incrementalScan == null) {
+			for (AnalysisSeedWithSpecification seed : initialSeeds)
+				getOrCreateSeedWithSpec(seed);
+			return;
+		}
+		List<AnalysisSeedWithSpecification> registered = Lists.newArrayList();
+		synchronized (seedsWithSpec) {
+			for (AnalysisSeedWithSpecification seed : initialSeeds) {
+				if (!seedsWithSpec.containsKey(seed))
+					registered.add(seedsWithSpec.getOrCreate(seed));
+			}
+		}
+		Set<IAnalysisSeed> reused = Sets.newIdentityHashSet();
+		reused.addAll(incrementalScan.start(registered));
+		for (AnalysisSeedWithSpecification seed : registered) {
+			if (!reused.contains(seed))
+				addToWorkList(seed);
+		}
+	}
+
+	/**
+	 * Records that a seed received a predicate ensured by the seed currently analyzed. If the seed was already
+	 * analyzed, its typestate changes have to be re-evaluated for the new predicate. If it is still waiting in the
+	 * worklist, but was discovered before the seed ensuring the predicate, executing the seeds in the order of
+	 * discovery would have required this replay, so the scheduling policy avoided it.
+	 */
+	void predicateArrived(IAnalysisSeed seed, boolean afterAnalysis) {
+		if (afterAnalysis) {
+			predicateReplays.incrementAndGet();
+			return;
+		}
+		IAnalysisSeed producer = analyzedSeed.get();
+		if (producer != null && waitsSinceBefore(seed, producer))
+			avoidedPredicateReplays.incrementAndGet();
+	}
+
+	/**
+	 * @return whether the seed was not started yet, although it was discovered before the other seed.
+	 */
+	private boolean waitsSinceBefore(IAnalysisSeed seed, IAnalysisSeed other) {
+		synchronized (worklistLock) {
+			Long order = discoveryOrder.get(seed);
+			Long otherOrder = discoveryOrder.get(other);
+			return !startedSeeds.contains(seed) && order != null && otherOrder != null && order < otherOrder;
+		}
 	}
 
 	public List<ClassSpecification> getClassSpecifictions() {
@@ -131,30 +451,58 @@ public abstract class CryptoScanner {
 	}
 
 	protected void addToWorkList(IAnalysisSeed analysisSeedWithSpecification) {
-		worklist.add(analysisSeedWithSpecification);
+		synchronized (worklistLock) {
+			if (!discoveryOrder.containsKey(analysisSeedWithSpecification))
+				discoveryOrder.put(analysisSeedWithSpecification, discoveredSeeds++);
+			worklist.add(analysisSeedWithSpecification);
+			worklistLock.notifyAll();
+		}
 	}
 
 	public AnalysisSeedWithEnsuredPredicate getOrCreateSeed(Node<Statement,Val> factAtStatement) {
 		boolean addToWorklist = false;
-		if (!seedsWithoutSpec.containsKey(factAtStatement))
-			addToWorklist = true;
-
-		AnalysisSeedWithEnsuredPredicate seed = seedsWithoutSpec.getOrCreate(factAtStatement);
+		AnalysisSeedWithEnsuredPredicate seed;
+		synchronized (seedsWithoutSpec) {
+			if (!seedsWithoutSpec.containsKey(factAtStatement))
+				addToWorklist = true;
+			seed = seedsWithoutSpec.getOrCreate(factAtStatement);
+		}
 		if (addToWorklist)
 			addToWorkList(seed);
+		seedAccessed(seed);
 		return seed;
 	}
 
 	public AnalysisSeedWithSpecification getOrCreateSeedWithSpec(AnalysisSeedWithSpecification factAtStatement) {
 		boolean addToWorklist = false;
-		if (!seedsWithSpec.containsKey(factAtStatement))
-			addToWorklist = true;
-		AnalysisSeedWithSpecification seed = seedsWithSpec.getOrCreate(factAtStatement);
+		AnalysisSeedWithSpecification seed;
+		synchronized (seedsWithSpec) {
+			if (!seedsWithSpec.containsKey(factAtStatement))
+				addToWorklist = true;
+			seed = seedsWithSpec.getOrCreate(factAtStatement);
+		}
 		if (addToWorklist)
 			addToWorkList(seed);
+		seedAccessed(seed);
 		return seed;
 	}
 
+	/**
+	 * Analyzes the seeds whose results would have been reused, but which the given seed depends on or influences.
+	 */
+	private void seedAccessed(IAnalysisSeed seed) {
+		if (incrementalScan == null)
+			return;
+		for (IAnalysisSeed reusedSeed : incrementalScan.seedAccessed(seed))
+			addToWorkList(reusedSeed);
+	}
+
+	/**
+	 * @return the incremental analysis, or null if the results are not stored for later analyses.
+	 */
+	public IncrementalScan getIncrementalScan() {
+		return incrementalScan;
+	}
 
 	
 	public Debugger<TransitionFunction> debugger(IDEALSeedSolver<TransitionFunction> solver, IAnalysisSeed analyzedObject) {
@@ -165,7 +513,16 @@ public abstract class CryptoScanner {
 		return predicateHandler;
 	}
 
+	/**
+	 * @return the results of the parameter extraction queries shared by all seeds of the scan.
+	 */
+	public ParameterQueryCache getParameterQueryCache() {
+		return parameterQueryCache;
+	}
+
 	public Collection<AnalysisSeedWithSpecification> getAnalysisSeeds() {
-		return this.seedsWithSpec.values();
+		synchronized (seedsWithSpec) {
+			return Lists.newArrayList(this.seedsWithSpec.values());
+		}
 	}
 }
@@ -0,0 +1,116 @@
+package crypto.analysis;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+import boomerang.jimple.Statement;
+import crypto.analysis.errors.ForbiddenMethodError;
+import crypto.rules.CryptSLForbiddenMethod;
+import crypto.typestate.CryptSLMethodToSootMethod;
+import soot.SootMethod;
+import soot.Unit;
+import soot.jimple.Stmt;
+
+/**
+ * Detects calls to forbidden methods of all class specifications in a single pass over the reachable methods. The
+ * forbidden methods of all specifications are converted to Soot methods once and indexed by the called method, so a
+ * call site is checked by a single lookup.
+ */
+public class ForbiddenMethodDetection {
+
+	private final CryptoScanner cryptoScanner;
+	private final Map<SootMethod, List<ForbiddenCall>> forbiddenCalls = Maps.newHashMap();
+
+	public ForbiddenMethodDetection(CryptoScanner cryptoScanner, Collection<ClassSpecification> specs) {
+		this.cryptoScanner = cryptoScanner;
+		for (ClassSpecification spec : specs) {
+			for (CryptSLForbiddenMethod forbiddenMethod : spec.getRule().getForbiddenMethods()) {
+				if (forbiddenMethod.getSilent())
+					continue;
+				Collection<SootMethod> alternatives = null;
+				for (SootMethod method : CryptSLMethodToSootMethod.v().convert(forbiddenMethod.getMethod())) {
+					List<ForbiddenCall> calls = forbiddenCalls.get(method);
+					if (calls == null) {
+						calls = Lists.newArrayList();
+						forbiddenCalls.put(method, calls);
+					}
+					if (containsSpec(calls, spec))
+						continue;
+					if (alternatives == null)
+						alternatives = CryptSLMethodToSootMethod.v().convert(forbiddenMethod.getAlternatives());
+					calls.add(new ForbiddenCall(spec, alternatives));
+				}
+			}
+		}
+	}
+
+	/**
+	 * Reports a {@link ForbiddenMethodError} for every call to a forbidden method. The errors are reported in the
+	 * order of the reachable methods, independent of the number of threads.
+	 */
+	public void detect(int threads) {
+		if (forbiddenCalls.isEmpty())
+			return;
+		List<List<ForbiddenMethodError>> errorsPerMethod = new ReachableMethodVisitor<List<ForbiddenMethodError>>() {
+			@Override
+			protected List<ForbiddenMethodError> visit(SootMethod method) {
+				List<ForbiddenMethodError> methodErrors = Lists.newArrayList();
+				detect(method, methodErrors);
+				return methodErrors.isEmpty() ? null : methodErrors;
+			}
+		}.visitReachableMethods(threads);
+		for (List<ForbiddenMethodError> methodErrors : errorsPerMethod) {
+			report(methodErrors);
+		}
+	}
+
+	private void detect(SootMethod method, List<ForbiddenMethodError> errors) {
+		if (method == null || !method.hasActiveBody())
+			return;
+		for (Unit u : method.getActiveBody().getUnits()) {
+			if (!(u instanceof Stmt) || !((Stmt) u).containsInvokeExpr())
+				continue;
+			Stmt stmt = (Stmt) u;
+			SootMethod calledMethod = stmt.getInvokeExpr().getMethod();
+			List<ForbiddenCall> calls = forbiddenCalls.get(calledMethod);
+			if (calls == null)
+				continue;
+			for (ForbiddenCall call : calls) {
+				errors.add(new ForbiddenMethodError(new Statement(stmt, method), call.spec.getRule(), calledMethod,
+						call.alternatives));
+			}
+		}
+	}
+
+	private void report(List<ForbiddenMethodError> errors) {
+		for (ForbiddenMethodError error : errors) {
+			cryptoScanner.getAnalysisListener().reportError(error);
+		}
+	}
+
+	private static boolean containsSpec(List<ForbiddenCall> calls, ClassSpecification spec) {
+		for (ForbiddenCall call : calls) {
+			if (call.spec.equals(spec))
+				return true;
+		}
+		return false;
+	}
+
+	/**
+	 * A forbidden method of a specification. Only the first non-silent forbidden method of a specification matching a
+	 * called method is indexed, so one error is reported per specification and call site.
+	 */
+	private static class ForbiddenCall {
+		private final ClassSpecification spec;
+		private final Collection<SootMethod> alternatives;
+
+		private ForbiddenCall(ClassSpecification spec, Collection<SootMethod> alternatives) {
+			this.spec = spec;
+			this.alternatives = alternatives;
+		}
+	}
+}
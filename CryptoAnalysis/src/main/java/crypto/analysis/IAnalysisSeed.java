@@ -3,6 +3,7 @@ package crypto.analysis;
 import java.math.BigInteger;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
+import java.util.Collection;
 
 import boomerang.WeightedForwardQuery;
 import boomerang.jimple.Statement;
@@ -16,14 +17,32 @@ public abstract class IAnalysisSeed extends WeightedForwardQuery<TransitionFunct
 	protected final CryptoScanner cryptoScanner;
 	protected final PredicateHandler predicateHandler;
 	private String objectId;
+	private int analysisTimeoutMS;
 
 	public IAnalysisSeed(CryptoScanner scanner, Statement stmt, Val fact, TransitionFunction func){
 		super(stmt,fact, func);
 		this.cryptoScanner = scanner;
 		this.predicateHandler = scanner.getPredicateHandler();
+		this.analysisTimeoutMS = scanner.seedTimeoutMS();
 	}
 	abstract void execute();
 
+	/**
+	 * @return the methods whose bodies the results of this seed depend on. Empty before the seed is analyzed.
+	 */
+	public abstract Collection<SootMethod> getTouchedMethods();
+
+	/**
+	 * @return the time after which the typestate analysis of this seed is aborted.
+	 */
+	public int getAnalysisTimeoutMS() {
+		return analysisTimeoutMS;
+	}
+
+	void setAnalysisTimeoutMS(int analysisTimeoutMS) {
+		this.analysisTimeoutMS = analysisTimeoutMS;
+	}
+
 	public SootMethod getMethod(){
 		return stmt().getMethod();
 	}
@@ -29,6 +29,20 @@ public interface ICrySLPerformanceListener {
 	void boomerangQueryStarted(Query seed, BackwardQuery q);
 
 	void boomerangQueryFinished(Query seed, BackwardQuery q);
+
+	/**
+	 * Called for every backward query of the parameter extraction of a seed, with whether its result was reused from
+	 * an equal query of the same scan.
+	 */
+	void parameterQueryCacheLookup(Query seed, BackwardQuery q, boolean cacheHit);
+
+	/**
+	 * Called once all seeds are analyzed, with the number of predicates that reached a seed after it was analyzed and
+	 * required its typestate changes to be replayed, and the number of predicates that reached a seed before it was
+	 * analyzed, although the seed was discovered before the seed ensuring them. Executed in the order of discovery,
+	 * the latter would have been replays as well.
+	 */
+	void predicateReplays(int replays, int avoidedReplays);
 	
 	void ensuredPredicates(Table<Statement, Val, Set<EnsuredCryptSLPredicate>> existingPredicates, Table<Statement, IAnalysisSeed, Set<CryptSLPredicate>> expectedPredicates, Table<Statement, IAnalysisSeed, Set<CryptSLPredicate>> missingPredicates);
 
@@ -21,6 +21,16 @@ public interface ICrySLResultsListener {
 	void checkedConstraints(AnalysisSeedWithSpecification analysisSeedWithSpecification, Collection<ISLConstraint> relConstraints);
 	
 	void onSeedTimeout(Node<Statement,Val> seed);
+
+	/**
+	 * Called for every seed that was not analyzed because the analysis time expired.
+	 */
+	void onSeedSkipped(IAnalysisSeed seed);
+
+	/**
+	 * Called for every seed whose analysis timed out, but succeeded when it was retried with the given timeout.
+	 */
+	void onSeedRecovered(IAnalysisSeed seed, int analysisTimeoutMS);
 	
 	void onSeedFinished(IAnalysisSeed seed, ForwardBoomerangResults<TransitionFunction> analysisResults);
 	
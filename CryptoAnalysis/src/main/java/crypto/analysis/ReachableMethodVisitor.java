@@ -0,0 +1,101 @@
+package crypto.analysis;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import com.google.common.collect.Lists;
+
+import soot.MethodOrMethodContext;
+import soot.Scene;
+import soot.SootMethod;
+import soot.jimple.toolkits.callgraph.ReachableMethods;
+import soot.util.queue.QueueReader;
+
+/**
+ * Visits the reachable methods, split across a number of threads. Every method is visited independently and its
+ * result is kept at the position of the method, so the results are returned in the order of the methods, independent
+ * of the number of threads.
+ *
+ * @param <R>
+ *            the result of visiting a method
+ */
+public abstract class ReachableMethodVisitor<R> {
+
+	private static final int METHODS_PER_TASK = 64;
+
+	/**
+	 * @return the result of visiting the method, or null if there is none. With more than one thread, methods are
+	 *         visited concurrently.
+	 */
+	protected abstract R visit(SootMethod method);
+
+	/**
+	 * @return the results of visiting the reachable methods of the Scene, in the order of the reachable methods.
+	 */
+	public List<R> visitReachableMethods(int threads) {
+		List<SootMethod> methods = Lists.newArrayList();
+		ReachableMethods rm = Scene.v().getReachableMethods();
+		QueueReader<MethodOrMethodContext> listener = rm.listener();
+		while (listener.hasNext()) {
+			methods.add(listener.next().method());
+		}
+		return visit(methods, threads);
+	}
+
+	/**
+	 * @return the results of visiting the given methods, in the order of the methods.
+	 */
+	public List<R> visit(List<SootMethod> methods, int threads) {
+		List<R> resultsPerMethod = Lists.newArrayList();
+		if (threads <= 1) {
+			for (SootMethod method : methods) {
+				resultsPerMethod.add(visit(method));
+			}
+		} else {
+			for (int i = 0; i < methods.size(); i++) {
+				resultsPerMethod.add(null);
+			}
+			ForkJoinPool pool = new ForkJoinPool(threads);
+			try {
+				pool.invoke(new VisitTask(methods, resultsPerMethod, 0, methods.size()));
+			} finally {
+				pool.shutdown();
+			}
+		}
+		List<R> results = Lists.newArrayList();
+		for (R result : resultsPerMethod) {
+			if (result != null)
+				results.add(result);
+		}
+		return results;
+	}
+
+	private class VisitTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+		private final List<SootMethod> methods;
+		private final List<R> resultsPerMethod;
+		private final int from;
+		private final int to;
+
+		private VisitTask(List<SootMethod> methods, List<R> resultsPerMethod, int from, int to) {
+			this.methods = methods;
+			this.resultsPerMethod = resultsPerMethod;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from > METHODS_PER_TASK) {
+				int middle = (from + to) >>> 1;
+				invokeAll(new VisitTask(methods, resultsPerMethod, from, middle),
+						new VisitTask(methods, resultsPerMethod, middle, to));
+				return;
+			}
+			for (int i = from; i < to; i++) {
+				resultsPerMethod.set(i, visit(methods.get(i)));
+			}
+		}
+	}
+}
@@ -0,0 +1,98 @@
+package crypto.analysis;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import com.google.common.collect.HashMultimap;
+import com.google.common.collect.LinkedHashMultimap;
+import com.google.common.collect.Multimap;
+
+import boomerang.WeightedForwardQuery;
+import crypto.typestate.FiniteStateMachineToTypestateChangeFunction;
+import soot.RefType;
+import soot.SootMethod;
+import soot.Type;
+import soot.Unit;
+import soot.jimple.AssignStmt;
+import soot.jimple.NewExpr;
+import soot.jimple.Stmt;
+import typestate.TransitionFunction;
+
+/**
+ * Discovers the initial seeds of all class specifications in a single pass over the reachable methods. Instead of
+ * asking every specification about every statement, the specifications are indexed by the methods whose calls create
+ * their seeds and by the types whose allocations are their seeds. Only the specifications indexed for a statement are
+ * asked to generate seeds for it, and only if the {@link CryptoScanner} expects seeds of the specification in the
+ * visited method.
+ */
+public class SeedDiscovery {
+
+	private final CryptoScanner cryptoScanner;
+	private final Multimap<SootMethod, ClassSpecification> specsBySeedingMethod = HashMultimap.create();
+	private final Multimap<Type, ClassSpecification> specsByAllocatedType = HashMultimap.create();
+
+	public SeedDiscovery(CryptoScanner cryptoScanner, Collection<ClassSpecification> specs) {
+		this.cryptoScanner = cryptoScanner;
+		for (ClassSpecification spec : specs) {
+			FiniteStateMachineToTypestateChangeFunction changeFunction = spec.getTypestateChangeFunction();
+			RefType analyzedType = changeFunction.getAnalyzedType();
+			if (analyzedType != null)
+				specsByAllocatedType.put(analyzedType, spec);
+			for (SootMethod m : changeFunction.getSeedingMethods()) {
+				specsBySeedingMethod.put(m, spec);
+			}
+		}
+	}
+
+	/**
+	 * @return the seeds of every specification, in the order the reachable methods and their statements are visited.
+	 */
+	public Multimap<ClassSpecification, WeightedForwardQuery<TransitionFunction>> discoverSeeds() {
+		return discoverSeeds(1);
+	}
+
+	/**
+	 * Splits the reachable methods across the given number of threads. Seed generation only reads the Jimple bodies,
+	 * and the seeds found per method are merged in the order of the reachable methods, so the result is the same as
+	 * the one of a sequential discovery.
+	 */
+	public Multimap<ClassSpecification, WeightedForwardQuery<TransitionFunction>> discoverSeeds(int threads) {
+		List<Multimap<ClassSpecification, WeightedForwardQuery<TransitionFunction>>> seedsPerMethod = new ReachableMethodVisitor<Multimap<ClassSpecification, WeightedForwardQuery<TransitionFunction>>>() {
+			@Override
+			protected Multimap<ClassSpecification, WeightedForwardQuery<TransitionFunction>> visit(SootMethod method) {
+				Multimap<ClassSpecification, WeightedForwardQuery<TransitionFunction>> methodSeeds = LinkedHashMultimap.create();
+				discoverSeeds(method, methodSeeds);
+				return methodSeeds.isEmpty() ? null : methodSeeds;
+			}
+		}.visitReachableMethods(threads);
+		Multimap<ClassSpecification, WeightedForwardQuery<TransitionFunction>> seeds = LinkedHashMultimap.create();
+		for (Multimap<ClassSpecification, WeightedForwardQuery<TransitionFunction>> methodSeeds : seedsPerMethod) {
+			seeds.putAll(methodSeeds);
+		}
+		return seeds;
+	}
+
+	private void discoverSeeds(SootMethod method,
+			Multimap<ClassSpecification, WeightedForwardQuery<TransitionFunction>> seeds) {
+		if (method == null || !method.hasActiveBody())
+			return;
+		for (Unit u : method.getActiveBody().getUnits()) {
+			for (ClassSpecification spec : specsInterestedIn(u)) {
+				if (!cryptoScanner.mayHaveSeeds(spec, method))
+					continue;
+				seeds.putAll(spec, spec.generateSeeds(method, u));
+			}
+		}
+	}
+
+	private Collection<ClassSpecification> specsInterestedIn(Unit u) {
+		if (u instanceof AssignStmt && ((AssignStmt) u).getRightOp() instanceof NewExpr) {
+			return specsByAllocatedType.get(((NewExpr) ((AssignStmt) u).getRightOp()).getType());
+		}
+		if (u instanceof Stmt && ((Stmt) u).containsInvokeExpr()) {
+			return specsBySeedingMethod.get(((Stmt) u).getInvokeExpr().getMethod());
+		}
+		return Collections.emptyList();
+	}
+}
@@ -0,0 +1,56 @@
+package crypto.analysis;
+
+import boomerang.jimple.Statement;
+import boomerang.jimple.Val;
+import soot.SootMethod;
+import soot.Unit;
+
+/**
+ * Keys of seeds, values and statements that are equal in all analyses of the same method bodies, e.g. in the
+ * processes of several shards or in a later incremental analysis. Unlike {@link IAnalysisSeed#getObjectId()}, the key
+ * of a seed does not depend on the predicates the seed received.
+ */
+public class SeedKeys {
+
+	private SeedKeys() {
+	}
+
+	/**
+	 * @return the rule of the seed, if any, followed by the key of its value, e.g.
+	 *         {@code javax.crypto.Cipher@<Main: void main(java.lang.String[])>#4:r1}.
+	 */
+	public static String seedKey(IAnalysisSeed seed) {
+		String key = valueKey(seed.stmt(), seed.var());
+		if (seed instanceof AnalysisSeedWithSpecification)
+			return ((AnalysisSeedWithSpecification) seed).getSpec().getRule().getClassName() + "@" + key;
+		return key;
+	}
+
+	/**
+	 * @return the key of the statement followed by the value.
+	 */
+	public static String valueKey(Statement stmt, Val var) {
+		return statementKey(stmt) + ":" + var.value();
+	}
+
+	/**
+	 * @return the signature of the statement's method and the position of the statement within its body, or the
+	 *         statement itself if it is not part of the body.
+	 */
+	public static String statementKey(Statement stmt) {
+		SootMethod method = stmt.getMethod();
+		String position = null;
+		if (stmt.getUnit().isPresent() && method.hasActiveBody()) {
+			Unit unit = stmt.getUnit().get();
+			int index = 0;
+			for (Unit u : method.getActiveBody().getUnits()) {
+				if (u == unit) {
+					position = Integer.toString(index);
+					break;
+				}
+				index++;
+			}
+		}
+		return method.getSignature() + "#" + (position != null ? position : stmt.toString());
+	}
+}
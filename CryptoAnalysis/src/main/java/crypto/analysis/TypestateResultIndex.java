@@ -0,0 +1,84 @@
+package crypto.analysis;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+import com.google.common.collect.LinkedHashMultimap;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Multimap;
+import com.google.common.collect.Table.Cell;
+
+import boomerang.jimple.Statement;
+import boomerang.jimple.Val;
+import boomerang.results.ForwardBoomerangResults;
+import soot.Unit;
+import sync.pds.solver.nodes.Node;
+import typestate.TransitionFunction;
+import typestate.finiteautomata.ITransition;
+import typestate.finiteautomata.State;
+
+/**
+ * The results of the typestate analysis of a seed, indexed in a single pass over the result table. The propagation of
+ * predicates and the computation of typestate errors query the index instead of iterating the table again.
+ */
+class TypestateResultIndex {
+
+	private final List<Node<Statement, Val>> nodes = Lists.newArrayList();
+	private final Multimap<Statement, State> targetStates = LinkedHashMultimap.create();
+	private final Multimap<State, Node<Statement, Val>> nodesInState = LinkedHashMultimap.create();
+	private final Map<Unit, Statement> stateChangeStatements = Maps.newHashMap();
+
+	TypestateResultIndex(ForwardBoomerangResults<TransitionFunction> results) {
+		for (Cell<Statement, Val, TransitionFunction> c : results.asStatementValWeightTable().cellSet()) {
+			Node<Statement, Val> node = new Node<Statement, Val>(c.getRowKey(), c.getColumnKey());
+			nodes.add(node);
+			for (Statement s : c.getValue().getLastStateChangeStatements()) {
+				if (s.getUnit().isPresent())
+					stateChangeStatements.put(s.getUnit().get(), s);
+			}
+			for (ITransition t : c.getValue().values()) {
+				if (t.to() == null)
+					continue;
+				targetStates.put(c.getRowKey(), t.to());
+				nodesInState.put(t.to(), node);
+			}
+		}
+	}
+
+	/**
+	 * @return the statements and values the seed reaches.
+	 */
+	List<Node<Statement, Val>> getNodes() {
+		return nodes;
+	}
+
+	/**
+	 * @return the statements at which the seed is in any state.
+	 */
+	Collection<Statement> getStatements() {
+		return targetStates.keySet();
+	}
+
+	/**
+	 * @return the states the seed may be in at the statement.
+	 */
+	Collection<State> getTargetStates(Statement stmt) {
+		return targetStates.get(stmt);
+	}
+
+	/**
+	 * @return the statements and values at which the seed may be in the state.
+	 */
+	Collection<Node<Statement, Val>> getNodesInState(State state) {
+		return nodesInState.get(state);
+	}
+
+	/**
+	 * @return the statement of the unit if it last changed the state of the seed, otherwise null.
+	 */
+	Statement getStateChangeStatement(Unit unit) {
+		return stateChangeStatements.get(unit);
+	}
+}
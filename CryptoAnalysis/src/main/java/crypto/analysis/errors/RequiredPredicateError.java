@@ -19,7 +19,11 @@ public class RequiredPredicateError extends AbstractError{
 	public CryptSLPredicate getContradictedPredicate() {
 		return contradictedPredicate;
 	}
-	
+
+	public CallSiteWithExtractedValue getExtractedValues() {
+		return extractedValues;
+	}
+
 	public void accept(ErrorVisitor visitor){
 		visitor.visit(this);
 	}
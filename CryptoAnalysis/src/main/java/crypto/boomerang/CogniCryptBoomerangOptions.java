@@ -3,6 +3,18 @@ package crypto.boomerang;
 import boomerang.DefaultBoomerangOptions;
 
 public class CogniCryptBoomerangOptions extends DefaultBoomerangOptions {
+	public static final int DEFAULT_ANALYSIS_TIMEOUT_MS = 5000;
+
+	private final int analysisTimeoutMS;
+
+	public CogniCryptBoomerangOptions() {
+		this(DEFAULT_ANALYSIS_TIMEOUT_MS);
+	}
+
+	public CogniCryptBoomerangOptions(int analysisTimeoutMS) {
+		this.analysisTimeoutMS = analysisTimeoutMS;
+	}
+
 	@Override
 	public boolean onTheFlyCallGraph() {
 		return false;
@@ -15,6 +27,6 @@ public class CogniCryptBoomerangOptions extends DefaultBoomerangOptions {
 	
 	@Override
 	public int analysisTimeoutMS() {
-		return 5000;
+		return analysisTimeoutMS;
 	}
 }
@@ -0,0 +1,325 @@
+package crypto.callgraph;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+
+import soot.MethodOrMethodContext;
+import soot.PhaseOptions;
+import soot.Scene;
+import soot.SootMethod;
+import soot.Unit;
+import soot.jimple.InvokeExpr;
+import soot.jimple.Stmt;
+import soot.jimple.toolkits.callgraph.CallGraph;
+import soot.jimple.toolkits.callgraph.Edge;
+import soot.jimple.toolkits.callgraph.Kind;
+import soot.jimple.toolkits.callgraph.ReachableMethods;
+import soot.options.Options;
+import soot.util.queue.QueueReader;
+
+/**
+ * Stores the call graph and the reachable methods of the {@link Scene} on disk, so a later analysis of the same
+ * program can skip the call graph construction. The cache file is named after a hash of the contents of all class
+ * path entries, the Soot version and options and the settings the call graph depends on. Changing any class, jar or
+ * setting therefore leads to a different file.
+ *
+ * Edges are stored by the signatures of their methods and the index of the calling statement in the Jimple body of
+ * the caller. The cache must thus be stored and loaded before any transformation modifies the bodies.
+ */
+public class CallGraphCache {
+
+	private static final int MAGIC = 0xC6CAC4E;
+	private static final int FORMAT_VERSION = 1;
+	private final File cacheFile;
+
+	/**
+	 * @param classPath
+	 *            the class path entries the Scene is loaded from, either jars or directories.
+	 * @param settings
+	 *            any other input the call graph depends on, e.g. the call graph algorithm and the entry points.
+	 */
+	public CallGraphCache(File directory, Collection<String> classPath, Collection<String> settings) {
+		Hasher hasher = Hashing.sha256().newHasher();
+		hasher.putInt(FORMAT_VERSION);
+		for (String setting : sootSettings()) {
+			hasher.putString(setting, StandardCharsets.UTF_8);
+			hasher.putByte((byte) 0);
+		}
+		for (String setting : settings) {
+			hasher.putString(setting, StandardCharsets.UTF_8);
+			hasher.putByte((byte) 0);
+		}
+		for (String entry : classPath) {
+			if (entry.isEmpty())
+				continue;
+			hasher.putString(entry, StandardCharsets.UTF_8);
+			hasher.putByte((byte) 0);
+			hashContents(new File(entry), hasher);
+		}
+		this.cacheFile = new File(directory, "callgraph-" + hasher.hash() + ".bin");
+	}
+
+	public File getCacheFile() {
+		return cacheFile;
+	}
+
+	/**
+	 * Sets the call graph and reachable methods of the {@link Scene} to the cached ones.
+	 *
+	 * @return false if there is no cache file for the inputs or it does not match the loaded classes. The Scene is
+	 *         left unchanged in this case.
+	 */
+	public boolean load() {
+		if (!cacheFile.exists())
+			return false;
+		List<SootMethod> retrievedBodies = Lists.newArrayList();
+		boolean loaded = false;
+		try (DataInputStream in = new DataInputStream(
+				new BufferedInputStream(new GZIPInputStream(new FileInputStream(cacheFile))))) {
+			loaded = read(in, retrievedBodies);
+		} catch (IOException | RuntimeException e) {
+			System.err.println("Failed to load the call graph cache " + cacheFile + ": " + e.getMessage());
+		}
+		if (!loaded) {
+			for (SootMethod m : retrievedBodies) {
+				m.releaseActiveBody();
+			}
+		}
+		return loaded;
+	}
+
+	/**
+	 * Reads the call graph and sets it in the {@link Scene} if every edge matches the loaded classes. The methods
+	 * whose bodies are retrieved to find the calling statements are added to retrievedBodies, so the bodies can be
+	 * released again if the cache is rejected.
+	 */
+	private boolean read(DataInputStream in, List<SootMethod> retrievedBodies) throws IOException {
+		if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION)
+			return false;
+		SootMethod[] methods = new SootMethod[in.readInt()];
+		for (int i = 0; i < methods.length; i++) {
+			methods[i] = Scene.v().grabMethod(in.readUTF());
+			if (methods[i] == null)
+				return false;
+		}
+		List<MethodOrMethodContext> reachable = Lists.newArrayList();
+		int reachableCount = in.readInt();
+		for (int i = 0; i < reachableCount; i++) {
+			reachable.add(methods[in.readInt()]);
+		}
+		Map<String, Kind> kinds = kindsByName();
+		Kind[] edgeKinds = new Kind[in.readInt()];
+		for (int i = 0; i < edgeKinds.length; i++) {
+			edgeKinds[i] = kinds.get(in.readUTF());
+			if (edgeKinds[i] == null)
+				return false;
+		}
+		Map<SootMethod, Unit[]> units = Maps.newHashMap();
+		CallGraph cg = new CallGraph();
+		int edgeCount = in.readInt();
+		for (int i = 0; i < edgeCount; i++) {
+			SootMethod src = methods[in.readInt()];
+			int unitIndex = in.readInt();
+			SootMethod tgt = methods[in.readInt()];
+			Kind kind = edgeKinds[in.readInt()];
+			Unit srcUnit = null;
+			if (unitIndex >= 0) {
+				Unit[] srcUnits = units.get(src);
+				if (srcUnits == null) {
+					if (!src.isConcrete())
+						return false;
+					if (!src.hasActiveBody())
+						retrievedBodies.add(src);
+					srcUnits = src.retrieveActiveBody().getUnits().toArray(new Unit[0]);
+					units.put(src, srcUnits);
+				}
+				if (unitIndex >= srcUnits.length)
+					return false;
+				srcUnit = srcUnits[unitIndex];
+			}
+			if (!matches(srcUnit, tgt, kind))
+				return false;
+			cg.addEdge(new Edge(src, srcUnit, tgt, kind));
+		}
+		ReachableMethods rm = new ReachableMethods(cg, reachable);
+		rm.update();
+		Scene.v().setCallGraph(cg);
+		Scene.v().setReachableMethods(rm);
+		return true;
+	}
+
+	/**
+	 * Checks a cached edge against the loaded body of its caller. An explicit edge must start at a statement invoking
+	 * a method with the subsignature of the target. Implicit edges, e.g. to static initializers or thread bodies, only
+	 * need to start at a statement, if any. A mismatch means the body differs from the one the cache was built from.
+	 */
+	private static boolean matches(Unit srcUnit, SootMethod tgt, Kind kind) {
+		if (srcUnit != null && !(srcUnit instanceof Stmt))
+			return false;
+		if (!kind.isExplicit())
+			return true;
+		if (srcUnit == null || !((Stmt) srcUnit).containsInvokeExpr())
+			return false;
+		InvokeExpr invoke = ((Stmt) srcUnit).getInvokeExpr();
+		return invoke.getMethodRef().getSubSignature().equals(tgt.getNumberedSubSignature());
+	}
+
+	/**
+	 * Writes the call graph and reachable methods of the {@link Scene} to the cache file.
+	 */
+	public void store() {
+		Map<SootMethod, Integer> methodIndex = Maps.newLinkedHashMap();
+		Map<Kind, Integer> kindIndex = Maps.newLinkedHashMap();
+		List<SootMethod> reachable = Lists.newArrayList();
+		QueueReader<MethodOrMethodContext> listener = Scene.v().getReachableMethods().listener();
+		while (listener.hasNext()) {
+			SootMethod m = listener.next().method();
+			index(methodIndex, m);
+			reachable.add(m);
+		}
+		List<Edge> edges = Lists.newArrayList(Scene.v().getCallGraph());
+		for (Edge e : edges) {
+			index(methodIndex, e.src());
+			index(methodIndex, e.tgt());
+			if (!kindIndex.containsKey(e.kind()))
+				kindIndex.put(e.kind(), kindIndex.size());
+		}
+		Map<SootMethod, Map<Unit, Integer>> unitIndex = Maps.newHashMap();
+		cacheFile.getParentFile().mkdirs();
+		File tmpFile = new File(cacheFile.getPath() + ".tmp");
+		try (DataOutputStream out = new DataOutputStream(
+				new BufferedOutputStream(new GZIPOutputStream(new FileOutputStream(tmpFile))))) {
+			out.writeInt(MAGIC);
+			out.writeInt(FORMAT_VERSION);
+			out.writeInt(methodIndex.size());
+			for (SootMethod m : methodIndex.keySet()) {
+				out.writeUTF(m.getSignature());
+			}
+			out.writeInt(reachable.size());
+			for (SootMethod m : reachable) {
+				out.writeInt(methodIndex.get(m));
+			}
+			out.writeInt(kindIndex.size());
+			for (Kind kind : kindIndex.keySet()) {
+				out.writeUTF(kind.name());
+			}
+			out.writeInt(edges.size());
+			for (Edge e : edges) {
+				out.writeInt(methodIndex.get(e.src()));
+				out.writeInt(e.srcUnit() == null ? -1 : unitIndex(unitIndex, e.src(), e.srcUnit()));
+				out.writeInt(methodIndex.get(e.tgt()));
+				out.writeInt(kindIndex.get(e.kind()));
+			}
+		} catch (IOException e) {
+			System.err.println("Failed to write the call graph cache " + cacheFile + ": " + e.getMessage());
+			tmpFile.delete();
+			return;
+		}
+		if (!tmpFile.renameTo(cacheFile)) {
+			cacheFile.delete();
+			if (!tmpFile.renameTo(cacheFile))
+				tmpFile.delete();
+		}
+	}
+
+	private static void index(Map<SootMethod, Integer> methodIndex, SootMethod m) {
+		if (!methodIndex.containsKey(m))
+			methodIndex.put(m, methodIndex.size());
+	}
+
+	private static int unitIndex(Map<SootMethod, Map<Unit, Integer>> unitIndex, SootMethod m, Unit u) {
+		Map<Unit, Integer> units = unitIndex.get(m);
+		if (units == null) {
+			units = Maps.newHashMap();
+			int i = 0;
+			for (Unit unit : m.getActiveBody().getUnits()) {
+				units.put(unit, i++);
+			}
+			unitIndex.put(m, units);
+		}
+		return units.get(u);
+	}
+
+	private static Map<String, Kind> kindsByName() {
+		Map<String, Kind> kinds = Maps.newHashMap();
+		for (Field f : Kind.class.getFields()) {
+			if (Modifier.isStatic(f.getModifiers()) && f.getType().equals(Kind.class)) {
+				try {
+					Kind kind = (Kind) f.get(null);
+					kinds.put(kind.name(), kind);
+				} catch (IllegalAccessException e) {
+					throw new RuntimeException(e);
+				}
+			}
+		}
+		return kinds;
+	}
+
+	/**
+	 * @return the version of Soot and the Soot options the call graph depends on.
+	 */
+	private static List<String> sootSettings() {
+		List<String> settings = Lists.newArrayList();
+		String version = Scene.class.getPackage().getImplementationVersion();
+		if (version == null)
+			version = String.valueOf(Scene.class.getProtectionDomain().getCodeSource().getLocation());
+		settings.add(version);
+		settings.add("whole-program:" + Options.v().whole_program());
+		settings.add("allow-phantom-refs:" + Options.v().allow_phantom_refs());
+		settings.add("no-bodies-for-excluded:" + Options.v().no_bodies_for_excluded());
+		settings.add("full-resolver:" + Options.v().full_resolver());
+		settings.add("main-class:" + Options.v().main_class());
+		for (String phase : new String[] { "cg", "cg.cha", "cg.spark" }) {
+			settings.add(phase + ":" + new TreeMap<String, String>(PhaseOptions.v().getPhaseOptions(phase)));
+		}
+		return settings;
+	}
+
+	private static void hashContents(File file, Hasher hasher) {
+		if (file.isDirectory()) {
+			File[] children = file.listFiles();
+			if (children == null)
+				return;
+			Arrays.sort(children);
+			for (File child : children) {
+				hasher.putString(child.getName(), StandardCharsets.UTF_8);
+				hasher.putByte((byte) 0);
+				hashContents(child, hasher);
+			}
+		} else if (file.isFile()) {
+			byte[] buffer = new byte[64 * 1024];
+			try (InputStream in = new FileInputStream(file)) {
+				int read;
+				while ((read = in.read(buffer)) != -1) {
+					hasher.putBytes(buffer, 0, read);
+				}
+			} catch (IOException e) {
+				throw new RuntimeException("Failed to read " + file, e);
+			}
+		} else {
+			hasher.putByte((byte) -1);
+		}
+	}
+}
@@ -72,14 +72,16 @@ public class ConstraintSolver {
 		this.collectedCalls = collectedCalls;
 		this.allConstraints = this.classSpec.getRule().getConstraints();
 		this.relConstraints = new ArrayList<ISLConstraint>();
+		Set<String> queriedVarNames = Sets.newHashSet();
+		for (CallSiteWithParamIndex cwpi : this.parameterAnalysisQuerySites) {
+			queriedVarNames.add(cwpi.getVarName());
+		}
 		for (ISLConstraint cons : allConstraints) {
 
-			Set<String> involvedVarNames = cons.getInvolvedVarNames();
-			for (CallSiteWithParamIndex cwpi : this.parameterAnalysisQuerySites) {
-				involvedVarNames.remove(cwpi.getVarName());
-			}
+			Set<String> involvedVarNames = Sets.newHashSet(classSpec.getInvolvedVarNames(cons));
+			involvedVarNames.removeAll(queriedVarNames);
 
-			if (involvedVarNames.isEmpty() || (cons.toString().contains("speccedKey") && involvedVarNames.size() == 1)) {
+			if (involvedVarNames.isEmpty() || (classSpec.refersToSpeccedKey(cons) && involvedVarNames.size() == 1)) {
 				if (cons instanceof CryptSLPredicate) {
 					CryptSLPredicate pred = (CryptSLPredicate) cons;
 					for (CallSiteWithParamIndex cwpi : this.parameterAnalysisQuerySites) {
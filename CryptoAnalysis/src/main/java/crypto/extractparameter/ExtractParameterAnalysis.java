@@ -11,33 +11,29 @@ import com.google.common.collect.HashMultimap;
 import com.google.common.collect.Multimap;
 
 import boomerang.BackwardQuery;
-import boomerang.Boomerang;
 import boomerang.ForwardQuery;
 import boomerang.jimple.AllocVal;
 import boomerang.jimple.Statement;
 import boomerang.jimple.Val;
-import boomerang.results.BackwardBoomerangResults;
 import crypto.analysis.CryptoScanner;
-import crypto.boomerang.CogniCryptIntAndStringBoomerangOptions;
-import crypto.rules.CryptSLMethod;
-import crypto.typestate.CryptSLMethodToSootMethod;
+import crypto.analysis.IAnalysisSeed;
 import crypto.typestate.LabeledMatcherTransition;
 import crypto.typestate.SootBasedStateMachineGraph;
+import crypto.typestate.TransitionTable;
 import heros.utilities.DefaultValueMap;
 import soot.Local;
 import soot.SootMethod;
 import soot.Type;
-import soot.Unit;
 import soot.Value;
-import soot.jimple.toolkits.ide.icfg.BiDiInterproceduralCFG;
-import typestate.finiteautomata.MatcherTransition;
-import wpds.impl.Weight.NoWeight;
+import soot.jimple.AssignStmt;
+import typestate.finiteautomata.ITransition;
 
 public class ExtractParameterAnalysis {
 
 	private Map<Statement,SootMethod> allCallsOnObject;
-	private Collection<LabeledMatcherTransition> events = Sets.newHashSet();
+	private final TransitionTable transitions;
 	private CryptoScanner cryptoScanner;
+	private IAnalysisSeed seed;
 	private Multimap<CallSiteWithParamIndex, ExtractedValue> collectedValues = HashMultimap.create();
 	private Multimap<CallSiteWithParamIndex, Type> propagatedTypes = HashMultimap.create();
 	private DefaultValueMap<AdditionalBoomerangQuery, AdditionalBoomerangQuery> additionalBoomerangQuery = new DefaultValueMap<AdditionalBoomerangQuery, AdditionalBoomerangQuery>() {
@@ -48,14 +44,11 @@ public class ExtractParameterAnalysis {
 	};
 	private Collection<CallSiteWithParamIndex> querySites = Sets.newHashSet();
 
-	public ExtractParameterAnalysis(CryptoScanner cryptoScanner, Map<Statement, SootMethod> allCallsOnObject, SootBasedStateMachineGraph fsm) {
+	public ExtractParameterAnalysis(CryptoScanner cryptoScanner, IAnalysisSeed seed, Map<Statement, SootMethod> allCallsOnObject, SootBasedStateMachineGraph fsm) {
 		this.cryptoScanner = cryptoScanner;
+		this.seed = seed;
 		this.allCallsOnObject = allCallsOnObject;
-		for(MatcherTransition m : fsm.getAllTransitions()) {
-			if(m instanceof LabeledMatcherTransition) {
-				this.events.add((LabeledMatcherTransition) m );
-			}
-		}
+		this.transitions = fsm.getTransitionTable();
 	}
 
 	public void run() {
@@ -63,22 +56,34 @@ public class ExtractParameterAnalysis {
 			Statement callSite = callSiteWithCallee.getKey();
 			SootMethod declaredCallee = callSiteWithCallee.getValue();
 			if(callSite.isCallsite()){
-				for(LabeledMatcherTransition e : events) {
-					if(e.matches(declaredCallee)) {
-						injectQueryAtCallSite(e.label(),callSite);
+				SootMethod method = callSite.getUnit().get().getInvokeExpr().getMethod();
+				for(ITransition t : transitions.getTransitions(declaredCallee)) {
+					if(t instanceof LabeledMatcherTransition) {
+						for (Entry<String, Integer> query : ((LabeledMatcherTransition) t).getParameterQueries(method)) {
+							addQueryAtCallsite(query.getKey(), callSite, query.getValue());
+						}
 					}
 				}
 			}
 		}
+		List<AdditionalBoomerangQuery> unsolved = Lists.newArrayList();
 		for (AdditionalBoomerangQuery q : additionalBoomerangQuery.keySet()) {
-//			if (reports != null) {
-//				reports.boomerangQueryStarted(query, q);
-//			}
-			q.solve();
-//			if (reports != null) {
-//				reports.boomerangQueryFinished(query, q);
-//			}
+			if (!q.lookup())
+				unsolved.add(q);
+		}
+		if (unsolved.isEmpty())
+			return;
+//		if (reports != null) {
+//			reports.boomerangQueryStarted(query, q);
+//		}
+		Map<BackwardQuery, ParameterQueryCache.Result> results = cryptoScanner.getParameterQueryCache().solve(unsolved,
+				cryptoScanner.icfg());
+		for (AdditionalBoomerangQuery q : unsolved) {
+			q.solved(results.get(q));
 		}
+//		if (reports != null) {
+//			reports.boomerangQueryFinished(query, q);
+//		}
 	}
 	public Multimap<CallSiteWithParamIndex, ExtractedValue> getCollectedValues() {
 		return collectedValues;
@@ -92,30 +97,6 @@ public class ExtractParameterAnalysis {
 		return querySites;
 	}
 	
-	private void injectQueryAtCallSite(List<CryptSLMethod> list, Statement callSite) {
-		if(!callSite.isCallsite())
-			return;
-		for(CryptSLMethod matchingDescriptor : list){
-			for(SootMethod m : CryptSLMethodToSootMethod.v().convert(matchingDescriptor)){
-				SootMethod method = callSite.getUnit().get().getInvokeExpr().getMethod();
-				if (!m.equals(method))
-					continue;
-				{
-					int index = 0;
-					for(Entry<String, String> param : matchingDescriptor.getParameters()){
-						if(!param.getKey().equals("_")){
-							soot.Type parameterType = method.getParameterType(index);
-							if(parameterType.toString().equals(param.getValue())){
-								addQueryAtCallsite(param.getKey(), callSite, index);
-							}
-						}
-						index++;
-					}
-				}
-			}
-		}
-	}
-
 	public void addQueryAtCallsite(final String varNameInSpecification, final Statement stmt, final int index) {
 		if(!stmt.isCallsite())
 			return;
@@ -128,15 +109,23 @@ public class ExtractParameterAnalysis {
 			return;
 		}
 		Val queryVal = new Val((Local) parameter, stmt.getMethod());
-		AdditionalBoomerangQuery query = additionalBoomerangQuery
-				.getOrCreate(new AdditionalBoomerangQuery(stmt, queryVal));
 		CallSiteWithParamIndex callSiteWithParamIndex = new CallSiteWithParamIndex(stmt, queryVal, index, varNameInSpecification);
 		querySites.add(callSiteWithParamIndex);
+		List<AssignStmt> constantDefs = cryptoScanner.getParameterQueryCache().resolveConstantDefinitions(stmt, (Local) parameter);
+		if (constantDefs != null) {
+			propagatedTypes.put(callSiteWithParamIndex, parameter.getType());
+			for (AssignStmt def : constantDefs) {
+				collectedValues.put(callSiteWithParamIndex, new ExtractedValue(new Statement(def, stmt.getMethod()), def.getRightOp()));
+			}
+			return;
+		}
+		AdditionalBoomerangQuery query = additionalBoomerangQuery
+				.getOrCreate(new AdditionalBoomerangQuery(stmt, queryVal));
 		query.addListener(new QueryListener() {
 			@Override
-			public void solved(AdditionalBoomerangQuery q, BackwardBoomerangResults<NoWeight> res) {
-				propagatedTypes.putAll(callSiteWithParamIndex, res.getPropagationType());
-				for (ForwardQuery v : res.getAllocationSites().keySet()) {
+			public void solved(AdditionalBoomerangQuery q, ParameterQueryCache.Result res) {
+				propagatedTypes.putAll(callSiteWithParamIndex, res.getPropagationTypes());
+				for (ForwardQuery v : res.getAllocationSites()) {
 					ExtractedValue extractedValue = null;
 					if(v.var() instanceof AllocVal) {
 						AllocVal allocVal = (AllocVal) v.var();
@@ -163,17 +152,24 @@ public class ExtractParameterAnalysis {
 
 		protected boolean solved;
 		private List<QueryListener> listeners = Lists.newLinkedList();
-		private BackwardBoomerangResults<NoWeight> res;
+		private ParameterQueryCache.Result res;
+
+		/**
+		 * Reuses the result of an equal query of any seed of the scan.
+		 *
+		 * @return true if the result was cached and passed to the listeners, false if the query still has to be solved.
+		 */
+		public boolean lookup() {
+			ParameterQueryCache.Result cached = cryptoScanner.getParameterQueryCache().get(this);
+			boolean cacheHit = cached != null;
+			cryptoScanner.getAnalysisListener().parameterQueryCacheLookup(seed, this, cacheHit);
+			if (cacheHit)
+				solved(cached);
+			return cacheHit;
+		}
 
-		public void solve() {
-			Boomerang boomerang = new Boomerang(new CogniCryptIntAndStringBoomerangOptions()) {
-				@Override
-				public BiDiInterproceduralCFG<Unit, SootMethod> icfg() {
-					return ExtractParameterAnalysis.this.cryptoScanner.icfg();
-				}
-			};
-			res = boomerang.solve(this);
-			boomerang.debugOutput();
+		private void solved(ParameterQueryCache.Result result) {
+			res = result;
 			// log("Solving query "+ accessGraph + " @ " + stmt);
 			for (QueryListener l : Lists.newLinkedList(listeners)) {
 				l.solved(this, res);
@@ -192,7 +188,7 @@ public class ExtractParameterAnalysis {
 	}
 
 	private static interface QueryListener {
-		public void solved(AdditionalBoomerangQuery q, BackwardBoomerangResults<NoWeight> res);
+		public void solved(AdditionalBoomerangQuery q, ParameterQueryCache.Result res);
 	}
 	
 	
@@ -0,0 +1,224 @@
+package crypto.extractparameter;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.google.common.base.Stopwatch;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+
+import boomerang.BackwardQuery;
+import boomerang.Boomerang;
+import boomerang.ForwardQuery;
+import boomerang.jimple.Statement;
+import boomerang.jimple.Val;
+import boomerang.results.BackwardBoomerangResults;
+import crypto.boomerang.CogniCryptIntAndStringBoomerangOptions;
+import soot.Local;
+import soot.SootMethod;
+import soot.Type;
+import soot.Unit;
+import soot.Value;
+import soot.jimple.AssignStmt;
+import soot.jimple.IntConstant;
+import soot.jimple.StringConstant;
+import soot.jimple.toolkits.ide.icfg.BiDiInterproceduralCFG;
+import soot.toolkits.graph.ExceptionalUnitGraph;
+import soot.toolkits.scalar.LocalDefs;
+import soot.toolkits.scalar.SimpleLocalDefs;
+import sync.pds.solver.nodes.Node;
+import wpds.impl.Weight.NoWeight;
+
+/**
+ * The results of the backward queries of the parameter extraction, shared by all seeds of a scan. Seeds of objects
+ * that are used together, e.g. a cipher and its key, extract the same values at the same call sites, but the result
+ * of a backward query only depends on the queried value and statement. Only the allocation sites and propagated types
+ * are kept, not the solver.
+ *
+ * Before a query is solved, its value is resolved within the method of the call site. Most extracted values are
+ * locals assigned a constant shortly before the call, e.g. an algorithm name, which need no interprocedural query.
+ *
+ * The queries of a seed that are not cached yet are solved together by one solver, each within its own timeout.
+ *
+ * Queries are solved without holding a lock, so two threads asking the same query at the same time may both solve
+ * it. Both get equal results and only the first is kept. Results of queries that timed out are incomplete and are
+ * not cached, so a later seed asking the same query solves it again.
+ */
+public class ParameterQueryCache {
+
+	private final Map<Node<Statement, Val>, Result> results = Maps.newHashMap();
+	private final AtomicInteger hits = new AtomicInteger();
+	private final AtomicInteger misses = new AtomicInteger();
+	private final AtomicInteger resolvedLocally = new AtomicInteger();
+	private final Map<SootMethod, LocalDefs> localDefs = Maps.newHashMap();
+
+	public static class Result {
+		private final Set<ForwardQuery> allocationSites;
+		private final Set<Type> propagationTypes;
+		private final boolean timedOut;
+
+		private Result(BackwardBoomerangResults<NoWeight> res) {
+			this.allocationSites = Sets.newHashSet(res.getAllocationSites().keySet());
+			this.propagationTypes = Sets.newHashSet(res.getPropagationType());
+			this.timedOut = res.isTimedout();
+		}
+
+		public Set<ForwardQuery> getAllocationSites() {
+			return allocationSites;
+		}
+
+		public Set<Type> getPropagationTypes() {
+			return propagationTypes;
+		}
+
+		/**
+		 * @return true if the solver timed out, so the allocation sites and types may be incomplete.
+		 */
+		public boolean isTimedOut() {
+			return timedOut;
+		}
+	}
+
+	/**
+	 * Resolves the value of a local at a statement within its method.
+	 *
+	 * @return the assignments of string and int constants to the local reaching the statement, or null if any
+	 *         definition reaching it is not such a constant, e.g. a parameter, a field or the result of a call, so its
+	 *         value has to be queried.
+	 */
+	public List<AssignStmt> resolveConstantDefinitions(Statement stmt, Local local) {
+		SootMethod method = stmt.getMethod();
+		if (!method.hasActiveBody())
+			return null;
+		LocalDefs defs;
+		synchronized (localDefs) {
+			defs = localDefs.get(method);
+			if (defs == null) {
+				defs = new SimpleLocalDefs(new ExceptionalUnitGraph(method.getActiveBody()));
+				localDefs.put(method, defs);
+			}
+		}
+		List<Unit> reachingDefs = defs.getDefsOfAt(local, stmt.getUnit().get());
+		if (reachingDefs.isEmpty())
+			return null;
+		List<AssignStmt> constantDefs = Lists.newArrayList();
+		for (Unit def : reachingDefs) {
+			if (!(def instanceof AssignStmt))
+				return null;
+			Value value = ((AssignStmt) def).getRightOp();
+			if (!(value instanceof StringConstant) && !(value instanceof IntConstant))
+				return null;
+			constantDefs.add((AssignStmt) def);
+		}
+		resolvedLocally.incrementAndGet();
+		return constantDefs;
+	}
+
+	/**
+	 * @return the cached result of the query, or null if it was not solved yet.
+	 */
+	public Result get(BackwardQuery query) {
+		Result result;
+		synchronized (results) {
+			result = results.get(query.asNode());
+		}
+		if (result != null)
+			hits.incrementAndGet();
+		return result;
+	}
+
+	/**
+	 * Solves the queries with one solver and caches their results. The queries of one seed are often issued within
+	 * the same methods, so the summaries of the methods and fields computed for one query are reused by the others
+	 * instead of being built again by a new solver.
+	 *
+	 * Each query gets the timeout of a single query, counted from the time the solver already spent on the previous
+	 * queries. Once a query times out, the state of the solver is incomplete, so the remaining queries are solved by
+	 * a new solver.
+	 *
+	 * @return the result of each query.
+	 */
+	public Map<BackwardQuery, Result> solve(Collection<? extends BackwardQuery> queries,
+			BiDiInterproceduralCFG<Unit, SootMethod> icfg) {
+		Map<BackwardQuery, Result> solved = Maps.newIdentityHashMap();
+		SharedSolver solver = new SharedSolver(icfg);
+		for (BackwardQuery query : queries) {
+			misses.incrementAndGet();
+			Result result = solver.solve(query);
+			if (result.isTimedOut()) {
+				solver.debugOutput();
+				solver = new SharedSolver(icfg);
+			} else {
+				synchronized (results) {
+					Result existing = results.get(query.asNode());
+					if (existing != null)
+						result = existing;
+					else
+						results.put(query.asNode(), result);
+				}
+			}
+			solved.put(query, result);
+		}
+		solver.debugOutput();
+		return solved;
+	}
+
+	/**
+	 * A solver shared by several queries. The watch of the solver runs while any of its queries is solved, so the
+	 * timeout of the solver is moved by the time spent on the previous queries.
+	 */
+	private static class SharedSolver {
+		private static final int QUERY_TIMEOUT_MS = new CogniCryptIntAndStringBoomerangOptions().analysisTimeoutMS();
+		private final Boomerang boomerang;
+		private final Stopwatch watch = Stopwatch.createUnstarted();
+		private volatile long deadline;
+
+		SharedSolver(final BiDiInterproceduralCFG<Unit, SootMethod> icfg) {
+			this.boomerang = new Boomerang(new CogniCryptIntAndStringBoomerangOptions() {
+				@Override
+				public int analysisTimeoutMS() {
+					return (int) deadline;
+				}
+			}) {
+				@Override
+				public BiDiInterproceduralCFG<Unit, SootMethod> icfg() {
+					return icfg;
+				}
+			};
+		}
+
+		Result solve(BackwardQuery query) {
+			deadline = watch.elapsed(TimeUnit.MILLISECONDS) + QUERY_TIMEOUT_MS;
+			watch.start();
+			try {
+				return new Result(boomerang.solve(query));
+			} finally {
+				watch.stop();
+			}
+		}
+
+		void debugOutput() {
+			boomerang.debugOutput();
+		}
+	}
+
+	public int getHits() {
+		return hits.get();
+	}
+
+	public int getMisses() {
+		return misses.get();
+	}
+
+	/**
+	 * @return the number of values resolved within their method, without a query.
+	 */
+	public int getResolvedLocally() {
+		return resolvedLocally.get();
+	}
+}
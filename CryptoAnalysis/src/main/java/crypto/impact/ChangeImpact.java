@@ -0,0 +1,134 @@
+package crypto.impact;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+
+import crypto.analysis.errors.AbstractError;
+import crypto.rules.CryptSLRule;
+import crypto.scheduling.PredicateDependencyGraph;
+import soot.Scene;
+import soot.SootMethod;
+import soot.jimple.toolkits.callgraph.CallGraph;
+import soot.jimple.toolkits.callgraph.Edge;
+
+/**
+ * The part of the program a set of changed methods may affect. The impacted methods are the changed methods, all
+ * methods that transitively call them, and the application methods they transitively call, as objects created there
+ * may be returned into the changed code. Only seeds in impacted methods are analyzed, and only errors located in
+ * impacted methods are reported.
+ *
+ * Seeds of rules ensuring predicates other rules require are additionally analyzed if they are located in an
+ * application method an impacted method calls, directly or transitively, so the predicates of objects created there,
+ * e.g. a key generated by a helper method, still reach the impacted seeds.
+ */
+public class ChangeImpact {
+
+	private final Set<SootMethod> changedMethods = Sets.newHashSet();
+	private final Set<SootMethod> impactedMethods = Sets.newHashSet();
+	private final Set<SootMethod> predicateProviderMethods = Sets.newHashSet();
+	private final Set<String> predicateProviderRules = Sets.newHashSet();
+
+	/**
+	 * Computes the impact on the call graph of the {@link Scene}.
+	 *
+	 * @param changedMethodSignatures
+	 *            the Soot signatures of the changed methods. Signatures of methods not in the Scene, e.g. of deleted
+	 *            methods, are ignored, as their callers changed as well.
+	 */
+	public ChangeImpact(Collection<String> changedMethodSignatures, List<CryptSLRule> rules) {
+		for (String signature : changedMethodSignatures) {
+			SootMethod method = Scene.v().grabMethod(signature);
+			if (method == null)
+				System.err.println("Ignoring unknown changed method " + signature);
+			else
+				changedMethods.add(method);
+		}
+		CallGraph cg = Scene.v().getCallGraph();
+		Deque<SootMethod> worklist = Lists.newLinkedList(changedMethods);
+		Set<SootMethod> callers = Sets.newHashSet(changedMethods);
+		while (!worklist.isEmpty()) {
+			Iterator<Edge> edges = cg.edgesInto(worklist.poll());
+			while (edges.hasNext()) {
+				SootMethod caller = edges.next().src();
+				if (caller != null && callers.add(caller))
+					worklist.add(caller);
+			}
+		}
+		impactedMethods.addAll(callers);
+		impactedMethods.addAll(applicationCallees(changedMethods));
+		predicateProviderMethods.addAll(applicationCallees(impactedMethods));
+		PredicateDependencyGraph dependencyGraph = new PredicateDependencyGraph(rules);
+		for (CryptSLRule rule : rules) {
+			predicateProviderRules.addAll(dependencyGraph.getDependencies(rule.getClassName()));
+		}
+		System.out.println("Change impact: " + changedMethods.size() + " changed methods affect "
+				+ impactedMethods.size() + " methods");
+	}
+
+	/**
+	 * @return the application methods called by the given methods, directly or transitively.
+	 */
+	private static Set<SootMethod> applicationCallees(Collection<SootMethod> methods) {
+		CallGraph cg = Scene.v().getCallGraph();
+		Set<SootMethod> callees = Sets.newHashSet();
+		Deque<SootMethod> worklist = Lists.newLinkedList(methods);
+		while (!worklist.isEmpty()) {
+			Iterator<Edge> edges = cg.edgesOutOf(worklist.poll());
+			while (edges.hasNext()) {
+				SootMethod callee = edges.next().tgt();
+				if (callee == null || !callee.getDeclaringClass().isApplicationClass())
+					continue;
+				if (callees.add(callee))
+					worklist.add(callee);
+			}
+		}
+		return callees;
+	}
+
+	/**
+	 * @return whether seeds of the rule in the given method have to be analyzed.
+	 */
+	public boolean mayHaveSeeds(String ruleClassName, SootMethod method) {
+		return impactedMethods.contains(method)
+				|| (predicateProviderRules.contains(ruleClassName) && predicateProviderMethods.contains(method));
+	}
+
+	/**
+	 * @return whether the error is located in an impacted method.
+	 */
+	public boolean isImpacted(AbstractError error) {
+		return error.getErrorLocation() != null && impactedMethods.contains(error.getErrorLocation().getMethod());
+	}
+
+	public Set<SootMethod> getImpactedMethods() {
+		return impactedMethods;
+	}
+
+	/**
+	 * Reads the changed method signatures from a file with one Soot signature per line, e.g.
+	 * {@code <com.example.Foo: void bar(int)>}. Empty lines and lines starting with {@code #} are ignored.
+	 */
+	public static List<String> readSignatures(File file) {
+		List<String> signatures = Lists.newArrayList();
+		try {
+			for (String line : Files.readAllLines(file.toPath(), StandardCharsets.UTF_8)) {
+				line = line.trim();
+				if (!line.isEmpty() && !line.startsWith("#"))
+					signatures.add(line);
+			}
+		} catch (IOException e) {
+			throw new RuntimeException("Failed to read the changed methods from " + file, e);
+		}
+		return signatures;
+	}
+}
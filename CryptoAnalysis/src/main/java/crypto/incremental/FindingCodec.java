@@ -0,0 +1,447 @@
+package crypto.incremental;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+
+import boomerang.jimple.Statement;
+import boomerang.jimple.Val;
+import crypto.analysis.IAnalysisSeed;
+import crypto.analysis.SeedKeys;
+import crypto.analysis.errors.AbstractError;
+import crypto.analysis.errors.ConstraintError;
+import crypto.analysis.errors.ForbiddenMethodError;
+import crypto.analysis.errors.ImpreciseValueExtractionError;
+import crypto.analysis.errors.IncompleteOperationError;
+import crypto.analysis.errors.NeverTypeOfError;
+import crypto.analysis.errors.RequiredPredicateError;
+import crypto.analysis.errors.TypestateError;
+import crypto.extractparameter.CallSiteWithExtractedValue;
+import crypto.extractparameter.CallSiteWithParamIndex;
+import crypto.extractparameter.ExtractedValue;
+import crypto.interfaces.ISLConstraint;
+import crypto.rules.CryptSLComparisonConstraint;
+import crypto.rules.CryptSLConstraint;
+import crypto.rules.CryptSLPredicate;
+import crypto.rules.CryptSLRule;
+import soot.Local;
+import soot.Scene;
+import soot.SootMethod;
+import soot.Unit;
+import soot.Value;
+import soot.ValueBox;
+import soot.jimple.Stmt;
+import sync.pds.solver.nodes.Node;
+
+/**
+ * Encodes errors and seeds into bytes that remain valid in a later analysis of unchanged method bodies, and decodes
+ * them into objects of that analysis. Statements are encoded by the signature of their method and their index in its
+ * Jimple body, variables by the name of their local, other values by their position in their statement and
+ * constraints by their position in the rule.
+ */
+class FindingCodec {
+
+	private static final byte TYPESTATE = 0;
+	private static final byte INCOMPLETE_OPERATION = 1;
+	private static final byte CONSTRAINT = 2;
+	private static final byte NEVER_TYPE_OF = 3;
+	private static final byte REQUIRED_PREDICATE = 4;
+	private static final byte IMPRECISE_VALUE_EXTRACTION = 5;
+	private static final byte FORBIDDEN_METHOD = 6;
+
+	private static final byte NO_VALUE = 0;
+	private static final byte LOCAL = 1;
+	private static final byte STATEMENT_VALUE = 2;
+
+	private final Map<String, CryptSLRule> rules = Maps.newHashMap();
+	private final Map<CryptSLRule, List<ISLConstraint>> constraints = Maps.newHashMap();
+	private final Map<SootMethod, Map<Unit, Integer>> unitIndices = Maps.newHashMap();
+	private final Map<SootMethod, Unit[]> units = Maps.newHashMap();
+
+	FindingCodec(Collection<CryptSLRule> rules) {
+		for (CryptSLRule rule : rules) {
+			this.rules.put(rule.getClassName(), rule);
+			List<ISLConstraint> flattened = Lists.newArrayList();
+			for (ISLConstraint cons : rule.getConstraints()) {
+				flatten(cons, flattened);
+			}
+			constraints.put(rule, flattened);
+		}
+	}
+
+	/**
+	 * Thrown for errors and seeds that refer to something the codec cannot encode or that no longer exists.
+	 */
+	static class UnsupportedFindingException extends Exception {
+		private static final long serialVersionUID = 1L;
+
+		UnsupportedFindingException(String message) {
+			super(message);
+		}
+	}
+
+	byte[] encodeError(AbstractError error) throws UnsupportedFindingException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bytes);
+		try {
+			if (error instanceof TypestateError) {
+				TypestateError e = (TypestateError) error;
+				out.writeByte(TYPESTATE);
+				writeRule(out, e.getRule());
+				writeStatement(out, e.getErrorLocation());
+				out.writeUTF(SeedKeys.seedKey(e.getObjectLocation()));
+				writeMethods(out, e.getExpectedMethodCalls());
+			} else if (error instanceof IncompleteOperationError) {
+				IncompleteOperationError e = (IncompleteOperationError) error;
+				out.writeByte(INCOMPLETE_OPERATION);
+				writeRule(out, e.getRule());
+				writeStatement(out, e.getErrorLocation());
+				out.writeUTF(SeedKeys.seedKey(e.getObjectLocation()));
+				writeVal(out, e.getErrorVariable(), e.getErrorLocation());
+				writeMethods(out, e.getExpectedMethodCalls());
+			} else if (error instanceof ConstraintError) {
+				ConstraintError e = (ConstraintError) error;
+				out.writeByte(error instanceof NeverTypeOfError ? NEVER_TYPE_OF : CONSTRAINT);
+				writeRule(out, e.getRule());
+				out.writeUTF(SeedKeys.seedKey(e.getObjectLocation()));
+				writeCallSite(out, e.getCallSiteWithExtractedValue());
+				writeConstraint(out, e.getRule(), e.getBrokenConstraint());
+			} else if (error instanceof RequiredPredicateError) {
+				RequiredPredicateError e = (RequiredPredicateError) error;
+				out.writeByte(REQUIRED_PREDICATE);
+				writeRule(out, e.getRule());
+				writeStatement(out, e.getErrorLocation());
+				writeConstraint(out, e.getRule(), e.getContradictedPredicate());
+				writeCallSite(out, e.getExtractedValues());
+			} else if (error instanceof ImpreciseValueExtractionError) {
+				ImpreciseValueExtractionError e = (ImpreciseValueExtractionError) error;
+				out.writeByte(IMPRECISE_VALUE_EXTRACTION);
+				writeRule(out, e.getRule());
+				writeStatement(out, e.getErrorLocation());
+				writeConstraint(out, e.getRule(), e.getViolatedConstraint());
+			} else if (error instanceof ForbiddenMethodError) {
+				ForbiddenMethodError e = (ForbiddenMethodError) error;
+				out.writeByte(FORBIDDEN_METHOD);
+				writeRule(out, e.getRule());
+				writeStatement(out, e.getErrorLocation());
+				writeMethods(out, Lists.newArrayList(e.getCalledMethod()));
+				writeMethods(out, e.getAlternatives());
+			} else {
+				throw new UnsupportedFindingException("Cannot encode " + error.getClass().getSimpleName());
+			}
+			out.flush();
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+		return bytes.toByteArray();
+	}
+
+	/**
+	 * @param seeds
+	 *            the seeds the error may refer to, by their {@link SeedKeys#seedKey(IAnalysisSeed)}.
+	 */
+	AbstractError decodeError(byte[] encoded, Map<String, IAnalysisSeed> seeds) throws UnsupportedFindingException {
+		DataInputStream in = new DataInputStream(new ByteArrayInputStream(encoded));
+		try {
+			byte type = in.readByte();
+			CryptSLRule rule = readRule(in);
+			switch (type) {
+			case TYPESTATE: {
+				Statement location = readStatement(in);
+				IAnalysisSeed seed = readSeed(in, seeds);
+				return new TypestateError(location, rule, seed, readMethods(in));
+			}
+			case INCOMPLETE_OPERATION: {
+				Statement location = readStatement(in);
+				IAnalysisSeed seed = readSeed(in, seeds);
+				Val val = readVal(in, location);
+				return new IncompleteOperationError(location, val, rule, seed, readMethods(in));
+			}
+			case CONSTRAINT:
+			case NEVER_TYPE_OF: {
+				IAnalysisSeed seed = readSeed(in, seeds);
+				CallSiteWithExtractedValue callSite = readCallSite(in);
+				ISLConstraint cons = readConstraint(in, rule);
+				if (type == NEVER_TYPE_OF)
+					return new NeverTypeOfError(callSite, rule, seed, cons);
+				return new ConstraintError(callSite, rule, seed, cons);
+			}
+			case REQUIRED_PREDICATE: {
+				Statement location = readStatement(in);
+				ISLConstraint pred = readConstraint(in, rule);
+				if (!(pred instanceof CryptSLPredicate))
+					throw new UnsupportedFindingException("Not a predicate: " + pred);
+				return new RequiredPredicateError((CryptSLPredicate) pred, location, rule, readCallSite(in));
+			}
+			case IMPRECISE_VALUE_EXTRACTION: {
+				Statement location = readStatement(in);
+				return new ImpreciseValueExtractionError(readConstraint(in, rule), location, rule);
+			}
+			case FORBIDDEN_METHOD: {
+				Statement location = readStatement(in);
+				SootMethod calledMethod = readMethods(in).iterator().next();
+				return new ForbiddenMethodError(location, rule, calledMethod, readMethods(in));
+			}
+			default:
+				throw new UnsupportedFindingException("Unknown error type " + type);
+			}
+		} catch (IOException e) {
+			throw new UnsupportedFindingException("Corrupt error: " + e.getMessage());
+		}
+	}
+
+	/**
+	 * Encodes the statement and variable of a seed.
+	 */
+	byte[] encodeSeed(IAnalysisSeed seed) throws UnsupportedFindingException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bytes);
+		try {
+			writeStatement(out, seed.stmt());
+			writeVal(out, seed.var(), seed.stmt());
+			out.flush();
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+		return bytes.toByteArray();
+	}
+
+	Node<Statement, Val> decodeSeed(byte[] encoded) throws UnsupportedFindingException {
+		DataInputStream in = new DataInputStream(new ByteArrayInputStream(encoded));
+		try {
+			Statement stmt = readStatement(in);
+			Val val = readVal(in, stmt);
+			if (val == null)
+				throw new UnsupportedFindingException("Seed without variable");
+			return new Node<Statement, Val>(stmt, val);
+		} catch (IOException e) {
+			throw new UnsupportedFindingException("Corrupt seed: " + e.getMessage());
+		}
+	}
+
+	CryptSLRule getRule(String className) {
+		return rules.get(className);
+	}
+
+	private void writeRule(DataOutputStream out, CryptSLRule rule) throws IOException, UnsupportedFindingException {
+		if (rule == null)
+			throw new UnsupportedFindingException("Error without rule");
+		out.writeUTF(rule.getClassName());
+	}
+
+	private CryptSLRule readRule(DataInputStream in) throws IOException, UnsupportedFindingException {
+		String className = in.readUTF();
+		CryptSLRule rule = rules.get(className);
+		if (rule == null)
+			throw new UnsupportedFindingException("Unknown rule " + className);
+		return rule;
+	}
+
+	private IAnalysisSeed readSeed(DataInputStream in, Map<String, IAnalysisSeed> seeds)
+			throws IOException, UnsupportedFindingException {
+		String key = in.readUTF();
+		IAnalysisSeed seed = seeds.get(key);
+		if (seed == null)
+			throw new UnsupportedFindingException("Unknown seed " + key);
+		return seed;
+	}
+
+	private void writeStatement(DataOutputStream out, Statement stmt) throws IOException, UnsupportedFindingException {
+		if (stmt == null || !stmt.getUnit().isPresent())
+			throw new UnsupportedFindingException("Statement without unit " + stmt);
+		SootMethod method = stmt.getMethod();
+		Integer index = unitIndices(method).get(stmt.getUnit().get());
+		if (index == null)
+			throw new UnsupportedFindingException("Statement not in body " + stmt);
+		out.writeUTF(method.getSignature());
+		out.writeInt(index);
+	}
+
+	private Statement readStatement(DataInputStream in) throws IOException, UnsupportedFindingException {
+		SootMethod method = readMethod(in.readUTF());
+		int index = in.readInt();
+		Unit[] methodUnits = units(method);
+		if (index < 0 || index >= methodUnits.length || !(methodUnits[index] instanceof Stmt))
+			throw new UnsupportedFindingException("No statement " + index + " in " + method);
+		return new Statement((Stmt) methodUnits[index], method);
+	}
+
+	/**
+	 * Writes the variable by the name of its local or, for other values such as constants, by its position in the
+	 * statement it is written with.
+	 */
+	private void writeVal(DataOutputStream out, Val val, Statement stmt) throws IOException, UnsupportedFindingException {
+		if (val == null) {
+			out.writeByte(NO_VALUE);
+		} else if (val.value() instanceof Local) {
+			out.writeByte(LOCAL);
+			out.writeUTF(((Local) val.value()).getName());
+		} else {
+			out.writeByte(STATEMENT_VALUE);
+			out.writeInt(valuePosition(stmt.getUnit().get(), val.value()));
+		}
+	}
+
+	private Val readVal(DataInputStream in, Statement stmt) throws IOException, UnsupportedFindingException {
+		SootMethod method = stmt.getMethod();
+		byte kind = in.readByte();
+		if (kind == NO_VALUE)
+			return null;
+		if (kind == STATEMENT_VALUE) {
+			int position = in.readInt();
+			List<ValueBox> boxes = stmt.getUnit().get().getUseAndDefBoxes();
+			if (position < 0 || position >= boxes.size())
+				throw new UnsupportedFindingException("No value " + position + " in " + stmt);
+			return new Val(boxes.get(position).getValue(), method);
+		}
+		String name = in.readUTF();
+		for (Local local : method.getActiveBody().getLocals()) {
+			if (local.getName().equals(name))
+				return new Val(local, method);
+		}
+		throw new UnsupportedFindingException("No local " + name + " in " + method);
+	}
+
+	private void writeCallSite(DataOutputStream out, CallSiteWithExtractedValue callSite)
+			throws IOException, UnsupportedFindingException {
+		CallSiteWithParamIndex cs = callSite.getCallSite();
+		writeStatement(out, cs.stmt());
+		writeVal(out, cs.fact(), cs.stmt());
+		out.writeInt(cs.getIndex());
+		out.writeUTF(cs.getVarName());
+		ExtractedValue val = callSite.getVal();
+		out.writeBoolean(val != null);
+		if (val == null)
+			return;
+		writeStatement(out, val.stmt());
+		out.writeInt(valuePosition(val.stmt().getUnit().get(), val.getValue()));
+	}
+
+	private CallSiteWithExtractedValue readCallSite(DataInputStream in) throws IOException, UnsupportedFindingException {
+		Statement stmt = readStatement(in);
+		Val fact = readVal(in, stmt);
+		int index = in.readInt();
+		String varName = in.readUTF();
+		CallSiteWithParamIndex cs = new CallSiteWithParamIndex(stmt, fact, index, varName);
+		if (!in.readBoolean())
+			return new CallSiteWithExtractedValue(cs, null);
+		Statement valStmt = readStatement(in);
+		int position = in.readInt();
+		List<ValueBox> boxes = valStmt.getUnit().get().getUseAndDefBoxes();
+		Value value = position < 0 ? null : boxes.get(position).getValue();
+		return new CallSiteWithExtractedValue(cs, new ExtractedValue(valStmt, value));
+	}
+
+	/**
+	 * @return the position of the value among the values of the statement, or -1 for no value.
+	 */
+	private int valuePosition(Stmt stmt, Value value) throws UnsupportedFindingException {
+		if (value == null)
+			return -1;
+		List<ValueBox> boxes = stmt.getUseAndDefBoxes();
+		for (int i = 0; i < boxes.size(); i++) {
+			if (boxes.get(i).getValue() == value)
+				return i;
+		}
+		for (int i = 0; i < boxes.size(); i++) {
+			if (boxes.get(i).getValue().equals(value))
+				return i;
+		}
+		throw new UnsupportedFindingException("Value " + value + " not in " + stmt);
+	}
+
+	private void writeConstraint(DataOutputStream out, CryptSLRule rule, ISLConstraint cons)
+			throws IOException, UnsupportedFindingException {
+		List<ISLConstraint> ruleConstraints = constraints.get(rule);
+		int index = -1;
+		if (ruleConstraints != null) {
+			for (int i = 0; i < ruleConstraints.size() && index < 0; i++) {
+				if (ruleConstraints.get(i) == cons)
+					index = i;
+			}
+			if (index < 0)
+				index = ruleConstraints.indexOf(cons);
+		}
+		if (index < 0)
+			throw new UnsupportedFindingException("Constraint " + cons + " not in rule " + rule.getClassName());
+		out.writeInt(index);
+	}
+
+	private ISLConstraint readConstraint(DataInputStream in, CryptSLRule rule) throws IOException, UnsupportedFindingException {
+		List<ISLConstraint> ruleConstraints = constraints.get(rule);
+		int index = in.readInt();
+		if (index < 0 || index >= ruleConstraints.size())
+			throw new UnsupportedFindingException("No constraint " + index + " in rule " + rule.getClassName());
+		return ruleConstraints.get(index);
+	}
+
+	private void writeMethods(DataOutputStream out, Collection<SootMethod> methods) throws IOException {
+		out.writeInt(methods.size());
+		for (SootMethod m : methods) {
+			out.writeUTF(m.getSignature());
+		}
+	}
+
+	private Set<SootMethod> readMethods(DataInputStream in) throws IOException, UnsupportedFindingException {
+		Set<SootMethod> methods = Sets.newHashSet();
+		int count = in.readInt();
+		for (int i = 0; i < count; i++) {
+			methods.add(readMethod(in.readUTF()));
+		}
+		return methods;
+	}
+
+	private SootMethod readMethod(String signature) throws UnsupportedFindingException {
+		SootMethod method = Scene.v().grabMethod(signature);
+		if (method == null)
+			throw new UnsupportedFindingException("No method " + signature);
+		return method;
+	}
+
+	private Map<Unit, Integer> unitIndices(SootMethod method) throws UnsupportedFindingException {
+		Map<Unit, Integer> indices = unitIndices.get(method);
+		if (indices == null) {
+			indices = Maps.newHashMap();
+			Unit[] methodUnits = units(method);
+			for (int i = 0; i < methodUnits.length; i++) {
+				indices.put(methodUnits[i], i);
+			}
+			unitIndices.put(method, indices);
+		}
+		return indices;
+	}
+
+	private Unit[] units(SootMethod method) throws UnsupportedFindingException {
+		Unit[] methodUnits = units.get(method);
+		if (methodUnits == null) {
+			if (!method.hasActiveBody())
+				throw new UnsupportedFindingException("No body for " + method);
+			methodUnits = method.getActiveBody().getUnits().toArray(new Unit[0]);
+			units.put(method, methodUnits);
+		}
+		return methodUnits;
+	}
+
+	private static void flatten(ISLConstraint cons, List<ISLConstraint> flattened) {
+		flattened.add(cons);
+		if (cons instanceof CryptSLConstraint) {
+			flatten(((CryptSLConstraint) cons).getLeft(), flattened);
+			flatten(((CryptSLConstraint) cons).getRight(), flattened);
+		} else if (cons instanceof CryptSLComparisonConstraint) {
+			flatten(((CryptSLComparisonConstraint) cons).getLeft(), flattened);
+			flatten(((CryptSLComparisonConstraint) cons).getRight(), flattened);
+		} else if (cons instanceof CryptSLPredicate && ((CryptSLPredicate) cons).getConstraint() != null) {
+			flatten(((CryptSLPredicate) cons).getConstraint(), flattened);
+		}
+	}
+}
@@ -0,0 +1,581 @@
+package crypto.incremental;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import com.google.common.collect.ArrayListMultimap;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Multimap;
+import com.google.common.collect.Sets;
+import com.google.common.hash.Hashing;
+
+import boomerang.jimple.Statement;
+import boomerang.jimple.Val;
+import boomerang.results.ForwardBoomerangResults;
+import crypto.analysis.AnalysisSeedWithEnsuredPredicate;
+import crypto.analysis.AnalysisSeedWithSpecification;
+import crypto.analysis.ClassSpecification;
+import crypto.analysis.CryptoScanner;
+import crypto.analysis.IAnalysisSeed;
+import crypto.analysis.SeedKeys;
+import crypto.analysis.ICrySLResultsListener;
+import crypto.analysis.errors.AbstractError;
+import crypto.analysis.errors.ErrorWithObjectAllocation;
+import crypto.analysis.errors.PredicateContradictionError;
+import crypto.extractparameter.CallSiteWithParamIndex;
+import crypto.extractparameter.ExtractedValue;
+import crypto.incremental.FindingCodec.UnsupportedFindingException;
+import crypto.interfaces.ISLConstraint;
+import crypto.rules.CryptSLRule;
+import soot.Scene;
+import soot.SootMethod;
+import soot.Unit;
+import soot.jimple.toolkits.callgraph.Edge;
+import sync.pds.solver.nodes.Node;
+import typestate.TransitionFunction;
+
+/**
+ * Reuses the results of seeds from a previous analysis of the same program. Seeds exchange predicates and create
+ * each other, so results are stored per component: the seeds connected by one seed creating or accessing another.
+ * For each component, the state file holds its seeds, its errors, the versions of the rules involved and a hash of the
+ * Jimple body and the call graph edges of every method the typestate and parameter analyses of its seeds touched.
+ *
+ * A component is reused if the same initial seeds are discovered again and neither the rules nor the touched methods
+ * changed. Its initial seeds are registered with the scanner but not analyzed, and its findings are replayed through
+ * the {@link crypto.analysis.CrySLResultsReporter} at the end of the analysis. Once any analyzed seed accesses a seed
+ * of a reused component, for example to hand over a predicate, the whole component is analyzed again.
+ */
+public class IncrementalScan implements ICrySLResultsListener {
+
+	private static final int MAGIC = 0xC5EED5;
+	private static final int FORMAT_VERSION = 3;
+	private static final String MISSING = "missing";
+	private static final String NO_BODY = "no-body";
+
+	private final CryptoScanner cryptoScanner;
+	private final File stateFile;
+	private final FindingCodec codec;
+	private final Map<String, String> ruleVersions = Maps.newHashMap();
+	private final String ruleSetVersion;
+	private final Map<String, String> bodyHashes = Maps.newHashMap();
+	private final ThreadLocal<IAnalysisSeed> currentSeed = new ThreadLocal<>();
+
+	private final List<Component> reusedComponents = Lists.newArrayList();
+	private final Map<String, Component> reusedSeeds = Maps.newHashMap();
+
+	private final Map<IAnalysisSeed, String> seedKeys = Maps.newIdentityHashMap();
+	private final Map<String, IAnalysisSeed> analyzedSeeds = Maps.newLinkedHashMap();
+	private final Map<String, String> componentParent = Maps.newHashMap();
+	private final Set<String> initialSeeds = Sets.newHashSet();
+	private final Multimap<String, AbstractError> errors = ArrayListMultimap.create();
+	private final Set<String> secureSeeds = Sets.newHashSet();
+	private final Set<String> incompleteSeeds = Sets.newHashSet();
+	private boolean contradictionFound;
+	private boolean replaying;
+
+	public IncrementalScan(CryptoScanner cryptoScanner, File stateFile) {
+		this.cryptoScanner = cryptoScanner;
+		this.stateFile = stateFile;
+		List<CryptSLRule> rules = Lists.newArrayList();
+		List<String> ruleNames = Lists.newArrayList();
+		for (ClassSpecification spec : cryptoScanner.getClassSpecifictions()) {
+			CryptSLRule rule = spec.getRule();
+			rules.add(rule);
+			ruleNames.add(rule.getClassName());
+			ruleVersions.put(rule.getClassName(), hash(rule.toString()));
+		}
+		Collections.sort(ruleNames);
+		this.ruleSetVersion = hash(ruleNames.toString());
+		this.codec = new FindingCodec(rules);
+	}
+
+	/**
+	 * Loads the state of the previous analysis and decides which of its components are reused.
+	 *
+	 * @param seeds
+	 *            the initial seeds discovered in this analysis.
+	 * @return the initial seeds of reused components. These must be registered with the scanner, but not analyzed.
+	 */
+	public synchronized Collection<AnalysisSeedWithSpecification> start(Collection<AnalysisSeedWithSpecification> seeds) {
+		Map<String, IAnalysisSeed> seedsByKey = Maps.newHashMap();
+		for (AnalysisSeedWithSpecification seed : seeds) {
+			String key = key(seed);
+			initialSeeds.add(key);
+			seedsByKey.put(key, seed);
+		}
+		List<Component> previous = load();
+		List<AnalysisSeedWithSpecification> parked = Lists.newArrayList();
+		Set<String> initialSeedsOfReused = Sets.newHashSet();
+		for (Component component : previous) {
+			if (component.reuse(seedsByKey)) {
+				reusedComponents.add(component);
+				for (CachedSeed seed : component.seeds) {
+					reusedSeeds.put(seed.key, component);
+					if (seed.initial)
+						initialSeedsOfReused.add(seed.key);
+				}
+			}
+		}
+		// Seeds that are initial now, but were created by another seed of a reused component before, are analyzed and
+		// thus require the component to be analyzed as well.
+		for (String key : initialSeeds) {
+			Component component = reusedSeeds.get(key);
+			if (component != null && !initialSeedsOfReused.contains(key))
+				discard(component);
+		}
+		for (Component component : reusedComponents) {
+			for (IAnalysisSeed seed : component.parkedSeeds) {
+				parked.add((AnalysisSeedWithSpecification) seed);
+			}
+		}
+		System.out.println("Reusing the results of " + parked.size() + " of " + seeds.size() + " analysis seeds from "
+				+ stateFile);
+		return parked;
+	}
+
+	/**
+	 * Records that the seed analyzed on the current thread created or accessed the given seed.
+	 *
+	 * @return the seeds not analyzed so far that have to be analyzed, because the given seed belongs to a reused
+	 *         component.
+	 */
+	public synchronized Collection<IAnalysisSeed> seedAccessed(IAnalysisSeed seed) {
+		String key = key(seed);
+		IAnalysisSeed current = currentSeed.get();
+		if (current != null)
+			union(key(current), key);
+		Component component = reusedSeeds.get(key);
+		if (component == null)
+			return Collections.emptyList();
+		discard(component);
+		return component.parkedSeeds;
+	}
+
+	/**
+	 * Attributes the errors reported on the current thread to the given seed, until {@link #exit()} is called.
+	 */
+	public void enter(IAnalysisSeed seed) {
+		currentSeed.set(seed);
+	}
+
+	public void exit() {
+		currentSeed.remove();
+	}
+
+	/**
+	 * Replays the findings of the reused components and stores the state for the next analysis.
+	 *
+	 * @param timedOutSeeds
+	 *            the seeds whose analysis timed out. The results of their components are not stored.
+	 */
+	public void finish(Collection<IAnalysisSeed> timedOutSeeds) {
+		synchronized (this) {
+			replaying = true;
+		}
+		try {
+			for (Component component : reusedComponents) {
+				component.replay();
+			}
+		} finally {
+			synchronized (this) {
+				replaying = false;
+			}
+		}
+		synchronized (this) {
+			for (IAnalysisSeed seed : timedOutSeeds)
+				incompleteSeeds.add(key(seed));
+			store();
+		}
+	}
+
+	private void discard(Component component) {
+		if (!reusedComponents.remove(component))
+			return;
+		for (CachedSeed seed : component.seeds)
+			reusedSeeds.remove(seed.key);
+	}
+
+	@Override
+	public synchronized void reportError(AbstractError error) {
+		if (replaying)
+			return;
+		if (error instanceof PredicateContradictionError) {
+			contradictionFound = true;
+			return;
+		}
+		IAnalysisSeed seed = error instanceof ErrorWithObjectAllocation
+				? ((ErrorWithObjectAllocation) error).getObjectLocation()
+				: currentSeed.get();
+		// Errors found independent of seeds, e.g. calls to forbidden methods, are always computed again.
+		if (seed != null)
+			errors.put(key(seed), error);
+	}
+
+	@Override
+	public synchronized void discoveredSeed(IAnalysisSeed seed) {
+		if (replaying)
+			return;
+		String key = key(seed);
+		analyzedSeeds.put(key, seed);
+		find(key);
+	}
+
+	@Override
+	public synchronized void onSecureObjectFound(IAnalysisSeed seed) {
+		if (!replaying)
+			secureSeeds.add(key(seed));
+	}
+
+	@Override
+	public synchronized void onSeedSkipped(IAnalysisSeed seed) {
+		incompleteSeeds.add(key(seed));
+	}
+
+	@Override
+	public void checkedConstraints(AnalysisSeedWithSpecification seed, Collection<ISLConstraint> relConstraints) {
+	}
+
+	@Override
+	public void onSeedTimeout(Node<Statement, Val> seed) {
+	}
+
+	@Override
+	public void onSeedRecovered(IAnalysisSeed seed, int analysisTimeoutMS) {
+	}
+
+	@Override
+	public void onSeedFinished(IAnalysisSeed seed, ForwardBoomerangResults<TransitionFunction> analysisResults) {
+	}
+
+	@Override
+	public void collectedValues(AnalysisSeedWithSpecification seed,
+			Multimap<CallSiteWithParamIndex, ExtractedValue> collectedValues) {
+	}
+
+	private String key(IAnalysisSeed seed) {
+		String key = seedKeys.get(seed);
+		if (key == null) {
+			key = SeedKeys.seedKey(seed);
+			seedKeys.put(seed, key);
+		}
+		return key;
+	}
+
+	private String find(String key) {
+		String parent = componentParent.get(key);
+		if (parent == null) {
+			componentParent.put(key, key);
+			return key;
+		}
+		if (parent.equals(key))
+			return key;
+		String root = find(parent);
+		componentParent.put(key, root);
+		return root;
+	}
+
+	private void union(String key, String other) {
+		String root = find(key);
+		String otherRoot = find(other);
+		if (!root.equals(otherRoot))
+			componentParent.put(otherRoot, root);
+	}
+
+	private String bodyHash(String signature) {
+		String hash = bodyHashes.get(signature);
+		if (hash != null)
+			return hash;
+		SootMethod method = Scene.v().grabMethod(signature);
+		if (method == null) {
+			hash = MISSING;
+		} else if (!method.isConcrete()) {
+			hash = NO_BODY;
+		} else {
+			try {
+				hash = hash(method.retrieveActiveBody().toString() + calleeSignatures(method));
+			} catch (RuntimeException e) {
+				hash = NO_BODY;
+			}
+		}
+		bodyHashes.put(signature, hash);
+		return hash;
+	}
+
+	/**
+	 * @return the targets of the call graph edges out of the method, per calling statement. A call dispatched to a
+	 *         different method, e.g. because a subtype of the receiver added or removed an override, changes the
+	 *         result even though the body of the method did not change.
+	 */
+	private static String calleeSignatures(SootMethod method) {
+		Map<Unit, Integer> unitIndex = Maps.newHashMap();
+		for (Unit u : method.getActiveBody().getUnits()) {
+			unitIndex.put(u, unitIndex.size());
+		}
+		List<String> callees = Lists.newArrayList();
+		Iterator<Edge> edges = Scene.v().getCallGraph().edgesOutOf(method);
+		while (edges.hasNext()) {
+			Edge e = edges.next();
+			Integer index = e.srcUnit() == null ? null : unitIndex.get(e.srcUnit());
+			callees.add(index + ":" + e.kind() + ":" + e.tgt().getSignature());
+		}
+		Collections.sort(callees);
+		return callees.toString();
+	}
+
+	private static String hash(String s) {
+		return Hashing.sha256().hashString(s, StandardCharsets.UTF_8).toString();
+	}
+
+	private List<Component> load() {
+		List<Component> components = Lists.newArrayList();
+		if (!stateFile.exists())
+			return components;
+		try (DataInputStream in = new DataInputStream(
+				new BufferedInputStream(new GZIPInputStream(new FileInputStream(stateFile))))) {
+			if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION)
+				return components;
+			boolean contradiction = in.readBoolean();
+			String previousRuleSetVersion = in.readUTF();
+			int count = in.readInt();
+			for (int i = 0; i < count; i++) {
+				components.add(new Component().read(in));
+			}
+			// Contradicting predicates are checked over all seeds at once and cannot be attributed to components.
+			if (contradiction || !previousRuleSetVersion.equals(ruleSetVersion))
+				components.clear();
+		} catch (IOException | RuntimeException e) {
+			System.err.println("Failed to load the incremental analysis state " + stateFile + ": " + e.getMessage());
+			components.clear();
+		}
+		return components;
+	}
+
+	private void store() {
+		Multimap<String, String> components = ArrayListMultimap.create();
+		for (String key : componentParent.keySet()) {
+			components.put(find(key), key);
+		}
+		List<Component> stored = Lists.newArrayList(reusedComponents);
+		for (String root : components.keySet()) {
+			Component component = createComponent(components.get(root));
+			if (component != null)
+				stored.add(component);
+		}
+		stateFile.getAbsoluteFile().getParentFile().mkdirs();
+		File tmpFile = new File(stateFile.getPath() + ".tmp");
+		try (DataOutputStream out = new DataOutputStream(
+				new BufferedOutputStream(new GZIPOutputStream(new FileOutputStream(tmpFile))))) {
+			out.writeInt(MAGIC);
+			out.writeInt(FORMAT_VERSION);
+			out.writeBoolean(contradictionFound);
+			out.writeUTF(ruleSetVersion);
+			out.writeInt(stored.size());
+			for (Component component : stored) {
+				component.write(out);
+			}
+		} catch (IOException e) {
+			System.err.println("Failed to write the incremental analysis state " + stateFile + ": " + e.getMessage());
+			tmpFile.delete();
+			return;
+		}
+		if (!tmpFile.renameTo(stateFile)) {
+			stateFile.delete();
+			if (!tmpFile.renameTo(stateFile))
+				tmpFile.delete();
+		}
+	}
+
+	/**
+	 * @return the component of the analyzed seeds with the given keys, or null if its results cannot be reused.
+	 */
+	private Component createComponent(Collection<String> keys) {
+		Component component = new Component();
+		Set<SootMethod> touchedMethods = Sets.newHashSet();
+		Set<String> rules = Sets.newHashSet();
+		try {
+			for (String key : keys) {
+				IAnalysisSeed seed = analyzedSeeds.get(key);
+				if (seed == null || incompleteSeeds.contains(key))
+					return null;
+				String rule = seed instanceof AnalysisSeedWithSpecification
+						? ((AnalysisSeedWithSpecification) seed).getSpec().getRule().getClassName()
+						: "";
+				if (!rule.isEmpty())
+					rules.add(rule);
+				component.seeds.add(new CachedSeed(key, rule, initialSeeds.contains(key), secureSeeds.contains(key),
+						codec.encodeSeed(seed)));
+				touchedMethods.addAll(seed.getTouchedMethods());
+				for (AbstractError error : errors.get(key)) {
+					if (error.getRule() != null)
+						rules.add(error.getRule().getClassName());
+					component.encodedErrors.add(codec.encodeError(error));
+				}
+			}
+		} catch (UnsupportedFindingException e) {
+			return null;
+		}
+		for (String rule : rules) {
+			component.ruleVersions.put(rule, ruleVersions.get(rule));
+		}
+		for (SootMethod method : touchedMethods) {
+			component.bodyHashes.put(method.getSignature(), bodyHash(method.getSignature()));
+		}
+		return component;
+	}
+
+	private static class CachedSeed {
+		private final String key;
+		private final String rule;
+		private final boolean initial;
+		private final boolean secure;
+		private final byte[] encoded;
+
+		private CachedSeed(String key, String rule, boolean initial, boolean secure, byte[] encoded) {
+			this.key = key;
+			this.rule = rule;
+			this.initial = initial;
+			this.secure = secure;
+			this.encoded = encoded;
+		}
+	}
+
+	private class Component {
+		private final List<CachedSeed> seeds = Lists.newArrayList();
+		private final Map<String, String> ruleVersions = Maps.newHashMap();
+		private final Map<String, String> bodyHashes = Maps.newHashMap();
+		private final List<byte[]> encodedErrors = Lists.newArrayList();
+		private final List<IAnalysisSeed> parkedSeeds = Lists.newArrayList();
+		private final Map<String, IAnalysisSeed> decodedSeeds = Maps.newHashMap();
+		private final List<AbstractError> decodedErrors = Lists.newArrayList();
+
+		/**
+		 * Decides whether the component can be reused and, if so, creates its seeds and errors for this analysis.
+		 */
+		private boolean reuse(Map<String, IAnalysisSeed> initialSeedsByKey) {
+			for (Map.Entry<String, String> e : ruleVersions.entrySet()) {
+				if (!e.getValue().equals(IncrementalScan.this.ruleVersions.get(e.getKey())))
+					return false;
+			}
+			for (Map.Entry<String, String> e : bodyHashes.entrySet()) {
+				if (!e.getValue().equals(bodyHash(e.getKey())))
+					return false;
+			}
+			try {
+				for (CachedSeed seed : seeds) {
+					IAnalysisSeed decoded;
+					if (seed.initial) {
+						decoded = initialSeedsByKey.get(seed.key);
+						if (decoded == null)
+							return false;
+						parkedSeeds.add(decoded);
+					} else {
+						decoded = createSeed(seed);
+					}
+					decodedSeeds.put(seed.key, decoded);
+				}
+				for (byte[] error : encodedErrors) {
+					decodedErrors.add(codec.decodeError(error, decodedSeeds));
+				}
+			} catch (UnsupportedFindingException | RuntimeException e) {
+				return false;
+			}
+			return true;
+		}
+
+		private IAnalysisSeed createSeed(CachedSeed seed) throws UnsupportedFindingException {
+			Node<Statement, Val> node = codec.decodeSeed(seed.encoded);
+			if (seed.rule.isEmpty())
+				return new AnalysisSeedWithEnsuredPredicate(cryptoScanner, node);
+			for (ClassSpecification spec : cryptoScanner.getClassSpecifictions()) {
+				if (spec.getRule().getClassName().equals(seed.rule))
+					return new AnalysisSeedWithSpecification(cryptoScanner, node.stmt(), node.fact(), spec);
+			}
+			throw new UnsupportedFindingException("Unknown rule " + seed.rule);
+		}
+
+		private void replay() {
+			for (CachedSeed seed : seeds) {
+				IAnalysisSeed decoded = decodedSeeds.get(seed.key);
+				cryptoScanner.getAnalysisListener().discoveredSeed(decoded);
+				if (seed.secure)
+					cryptoScanner.getAnalysisListener().onSecureObjectFound(decoded);
+			}
+			for (AbstractError error : decodedErrors) {
+				cryptoScanner.getAnalysisListener().reportError(error);
+			}
+		}
+
+		private void write(DataOutputStream out) throws IOException {
+			out.writeInt(seeds.size());
+			for (CachedSeed seed : seeds) {
+				out.writeUTF(seed.key);
+				out.writeUTF(seed.rule);
+				out.writeBoolean(seed.initial);
+				out.writeBoolean(seed.secure);
+				writeBytes(out, seed.encoded);
+			}
+			writeMap(out, ruleVersions);
+			writeMap(out, bodyHashes);
+			out.writeInt(encodedErrors.size());
+			for (byte[] error : encodedErrors) {
+				writeBytes(out, error);
+			}
+		}
+
+		private Component read(DataInputStream in) throws IOException {
+			int seedCount = in.readInt();
+			for (int i = 0; i < seedCount; i++) {
+				seeds.add(new CachedSeed(in.readUTF(), in.readUTF(), in.readBoolean(), in.readBoolean(), readBytes(in)));
+			}
+			readMap(in, ruleVersions);
+			readMap(in, bodyHashes);
+			int errorCount = in.readInt();
+			for (int i = 0; i < errorCount; i++) {
+				encodedErrors.add(readBytes(in));
+			}
+			return this;
+		}
+	}
+
+	private static void writeBytes(DataOutputStream out, byte[] bytes) throws IOException {
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+	private static byte[] readBytes(DataInputStream in) throws IOException {
+		byte[] bytes = new byte[in.readInt()];
+		in.readFully(bytes);
+		return bytes;
+	}
+
+	private static void writeMap(DataOutputStream out, Map<String, String> map) throws IOException {
+		out.writeInt(map.size());
+		for (Map.Entry<String, String> e : map.entrySet()) {
+			out.writeUTF(e.getKey());
+			out.writeUTF(e.getValue());
+		}
+	}
+
+	private static void readMap(DataInputStream in, Map<String, String> map) throws IOException {
+		int count = in.readInt();
+		for (int i = 0; i < count; i++) {
+			map.put(in.readUTF(), in.readUTF());
+		}
+	}
+}
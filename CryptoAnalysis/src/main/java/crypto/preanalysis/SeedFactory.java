@@ -1,41 +1,144 @@
 package crypto.preanalysis;
 
+import java.util.ArrayDeque;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Deque;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
-import com.beust.jcommander.internal.Sets;
+import com.google.common.collect.HashMultimap;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Multimap;
+import com.google.common.collect.Sets;
 
-import boomerang.Query;
 import boomerang.WeightedForwardQuery;
+import crypto.rules.CryptSLForbiddenMethod;
 import crypto.rules.CryptSLRule;
+import crypto.typestate.CryptSLMethodToSootMethod;
 import crypto.typestate.FiniteStateMachineToTypestateChangeFunction;
 import crypto.typestate.SootBasedStateMachineGraph;
+import soot.SootClass;
 import soot.SootMethod;
 import soot.Unit;
+import soot.jimple.InvokeExpr;
+import soot.jimple.Stmt;
 import typestate.TransitionFunction;
 
+/**
+ * Finds the methods containing seeds of each rule during the pre-analysis. Methods and classes are recorded by their
+ * signature and name, so the result remains valid after Soot is reset for the main analysis. Seeds may be generated
+ * concurrently, the result is read once the pre-analysis finished.
+ *
+ * The classes calling each class are recorded as well, so the callers of the classes with seeds remain entry points of
+ * the main analysis. They may create the objects passed to the seeds or call the methods containing them.
+ */
 public class SeedFactory {
 
-	private List<FiniteStateMachineToTypestateChangeFunction> idealAnalysisDefs = Lists.newLinkedList();
-	private Set<Query> seeds = Sets.newHashSet();
+	private Map<String, FiniteStateMachineToTypestateChangeFunction> idealAnalysisDefs = Maps.newLinkedHashMap();
+	private Set<SootMethod> forbiddenMethods = Sets.newHashSet();
+	private Multimap<String, String> methodsWithSeeds = HashMultimap.create();
+	private Set<String> classesWithSeeds = Sets.newHashSet();
+	private Set<String> classesCallingForbiddenMethods = Sets.newHashSet();
+	private Multimap<String, String> callingClasses = HashMultimap.create();
+	private Multimap<String, String> applicationSuperTypes = HashMultimap.create();
+	private Set<String> visitedClasses = Sets.newHashSet();
 
 	public SeedFactory(List<CryptSLRule> rules) {
 		for(CryptSLRule rule : rules){
-			idealAnalysisDefs.add(new FiniteStateMachineToTypestateChangeFunction(new SootBasedStateMachineGraph(rule.getUsagePattern())));
+			SootBasedStateMachineGraph fsm = new SootBasedStateMachineGraph(rule.getUsagePattern());
+			// Rules whose seeding methods are not part of the program cannot have any seeds.
+			if (!fsm.initialTransitonLabel().isEmpty())
+				idealAnalysisDefs.put(rule.getClassName(), new FiniteStateMachineToTypestateChangeFunction(fsm));
+			for (CryptSLForbiddenMethod forbiddenMethod : rule.getForbiddenMethods()) {
+				if (!forbiddenMethod.getSilent())
+					forbiddenMethods.addAll(CryptSLMethodToSootMethod.v().convert(forbiddenMethod.getMethod()));
+			}
 		}
 	}
 
 	public void generate(SootMethod method, Unit unit) {
-		for(FiniteStateMachineToTypestateChangeFunction defs : idealAnalysisDefs){
-			Collection<WeightedForwardQuery<TransitionFunction>> found = defs.generateSeed(method, unit, Collections.emptyList());
-			seeds.addAll(found);
+		classFound(method.getDeclaringClass());
+		for (Map.Entry<String, FiniteStateMachineToTypestateChangeFunction> defs : idealAnalysisDefs.entrySet()) {
+			Collection<WeightedForwardQuery<TransitionFunction>> found = defs.getValue().generateSeed(method, unit, Collections.emptyList());
+			if (!found.isEmpty())
+				seedFound(defs.getKey(), method);
 		}
+		if (unit instanceof Stmt && ((Stmt) unit).containsInvokeExpr()) {
+			InvokeExpr invokeExpr = ((Stmt) unit).getInvokeExpr();
+			String callee = invokeExpr.getMethodRef().declaringClass().getName();
+			if (!callee.equals(method.getDeclaringClass().getName()))
+				callFound(callee, method);
+			if (forbiddenMethods.contains(invokeExpr.getMethod()))
+				forbiddenMethodCalled(method);
+		}
+	}
+
+	private synchronized void classFound(SootClass sootClass) {
+		if (!visitedClasses.add(sootClass.getName()))
+			return;
+		List<SootClass> superTypes = Lists.newArrayList(sootClass.getInterfaces());
+		if (sootClass.hasSuperclass())
+			superTypes.add(sootClass.getSuperclass());
+		for (SootClass superType : superTypes) {
+			if (superType.isApplicationClass())
+				applicationSuperTypes.put(sootClass.getName(), superType.getName());
+		}
+	}
+
+	private synchronized void callFound(String calleeClassName, SootMethod caller) {
+		callingClasses.put(calleeClassName, caller.getDeclaringClass().getName());
+	}
+
+	private synchronized void seedFound(String ruleClassName, SootMethod method) {
+		methodsWithSeeds.put(ruleClassName, method.getSignature());
+		classesWithSeeds.add(method.getDeclaringClass().getName());
+	}
+
+	private synchronized void forbiddenMethodCalled(SootMethod method) {
+		classesCallingForbiddenMethods.add(method.getDeclaringClass().getName());
 	}
-	
+
 	public boolean hasSeeds(){
-		return !seeds.isEmpty();
+		return !methodsWithSeeds.isEmpty();
+	}
+
+	/**
+	 * @return whether any seed of the rule with the given class name was found.
+	 */
+	public boolean hasSeeds(String ruleClassName) {
+		return methodsWithSeeds.containsKey(ruleClassName);
+	}
+
+	/**
+	 * @return whether the method with the given signature contains seeds of the rule with the given class name.
+	 */
+	public boolean hasSeeds(String ruleClassName, String methodSignature) {
+		return methodsWithSeeds.containsEntry(ruleClassName, methodSignature);
+	}
+
+	/**
+	 * @return the names of the application classes that contain seeds of any rule or call a forbidden method, and of
+	 *         the classes calling them, directly or through other classes. Calls through an application super type of
+	 *         a class count as calls of the class. These are the classes the main analysis has to start from.
+	 */
+	public Set<String> getRelevantClasses() {
+		Set<String> classes = Sets.newHashSet(classesWithSeeds);
+		classes.addAll(classesCallingForbiddenMethods);
+		Deque<String> worklist = new ArrayDeque<String>(classes);
+		while (!worklist.isEmpty()) {
+			String className = worklist.poll();
+			List<String> callees = Lists.newArrayList(className);
+			callees.addAll(applicationSuperTypes.get(className));
+			for (String callee : callees) {
+				for (String caller : callingClasses.get(callee)) {
+					if (classes.add(caller))
+						worklist.add(caller);
+				}
+			}
+		}
+		return classes;
 	}
 }
@@ -1,6 +1,7 @@
 package crypto.predicates;
 
 import java.util.AbstractMap.SimpleEntry;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Map.Entry;
@@ -18,7 +19,6 @@ import boomerang.ForwardQuery;
 import boomerang.jimple.AllocVal;
 import boomerang.jimple.Statement;
 import boomerang.jimple.Val;
-import boomerang.results.AbstractBoomerangResults;
 import boomerang.results.BackwardBoomerangResults;
 import crypto.analysis.AnalysisSeedWithSpecification;
 import crypto.analysis.ClassSpecification;
@@ -32,6 +32,7 @@ import crypto.boomerang.CogniCryptBoomerangOptions;
 import crypto.extractparameter.CallSiteWithExtractedValue;
 import crypto.extractparameter.CallSiteWithParamIndex;
 import crypto.extractparameter.ExtractedValue;
+import crypto.incremental.IncrementalScan;
 import crypto.interfaces.ISLConstraint;
 import crypto.rules.CryptSLPredicate;
 import crypto.rules.CryptSLRule;
@@ -44,6 +45,7 @@ import soot.jimple.InvokeExpr;
 import soot.jimple.Stmt;
 import soot.jimple.toolkits.ide.icfg.BiDiInterproceduralCFG;
 import sync.pds.solver.nodes.INode;
+import sync.pds.solver.nodes.Node;
 import wpds.impl.PAutomaton;
 import wpds.impl.Weight.NoWeight;
 
@@ -52,13 +54,14 @@ public class PredicateHandler {
 	private final Table<Statement, Val, Set<EnsuredCryptSLPredicate>> existingPredicates = HashBasedTable.create();
 	private final Table<Statement, IAnalysisSeed, Set<EnsuredCryptSLPredicate>> existingPredicatesObjectBased = HashBasedTable.create();
 	private final Table<Statement, IAnalysisSeed, Set<CryptSLPredicate>> expectedPredicateObjectBased = HashBasedTable.create();
+	private final Map<Node<Statement, Val>, Set<ForwardQuery>> baseAllocationSites = new HashMap<>();
 	private final CryptoScanner cryptoScanner;
 	
 	public PredicateHandler(CryptoScanner cryptoScanner) {
 		this.cryptoScanner = cryptoScanner;
 	}
 
-	public boolean addNewPred(IAnalysisSeed seedObj, Statement statement, Val seed, EnsuredCryptSLPredicate ensPred) {
+	public synchronized boolean addNewPred(IAnalysisSeed seedObj, Statement statement, Val seed, EnsuredCryptSLPredicate ensPred) {
 		Set<EnsuredCryptSLPredicate> set = getExistingPredicates(statement, seed);
 		boolean added = set.add(ensPred);
 		assert existingPredicates.get(statement, seed).contains(ensPred);
@@ -77,7 +80,7 @@ public class PredicateHandler {
 	/**
 	 * @return the existingPredicates
 	 */
-	public Set<EnsuredCryptSLPredicate> getExistingPredicates(Statement stmt, Val seed) {
+	public synchronized Set<EnsuredCryptSLPredicate> getExistingPredicates(Statement stmt, Val seed) {
 		Set<EnsuredCryptSLPredicate> set = existingPredicates.get(stmt, seed);
 		if (set == null) {
 			set = Sets.newHashSet();
@@ -101,38 +104,12 @@ public class PredicateHandler {
 						paramMatch = true;
 				}
 				if (paramMatch) {
+					Set<ForwardQuery> allocs = null;
 					for (final ClassSpecification specification : cryptoScanner.getClassSpecifictions()) {
 						if (specification.getInvolvedMethods().contains(method)) {
-							Boomerang boomerang = new Boomerang(new CogniCryptBoomerangOptions() {
-								@Override
-								public Optional<AllocVal> getAllocationVal(SootMethod m, Stmt stmt, Val fact,
-										BiDiInterproceduralCFG<Unit, SootMethod> icfg) {
-									if(stmt.containsInvokeExpr() && stmt instanceof AssignStmt){
-										AssignStmt as = (AssignStmt) stmt;
-										if(as.getLeftOp().equals(fact.value())){
-											if(icfg.getCalleesOfCallAt(stmt).isEmpty())
-												return Optional.of(new AllocVal(as.getLeftOp(), m, as.getRightOp(), new Statement(as, m)));
-											//TODO replace by check if stmt is a seed of specification
-											if(stmt.toString().contains("getInstance")){
-												return Optional.of(new AllocVal(as.getLeftOp(), m, as.getRightOp(),new Statement(as, m)));
-											}
-										}
-									}
-									return super.getAllocationVal(m, stmt, fact, icfg);
-								}
-							}){
-								@Override
-								public BiDiInterproceduralCFG<Unit, SootMethod> icfg() {
-									return cryptoScanner.icfg();
-								}
-							};
-							Val val = new Val(base, callerMethod);
-							BackwardQuery backwardQuery = new BackwardQuery(statement, val);
-							cryptoScanner.getAnalysisListener().boomerangQueryStarted(seedObj, backwardQuery);
-							BackwardBoomerangResults<NoWeight> res = boomerang.solve(backwardQuery);
-							cryptoScanner.getAnalysisListener().boomerangQueryFinished(seedObj, backwardQuery);
-							Map<ForwardQuery, AbstractBoomerangResults<NoWeight>.Context> allocs = res.getAllocationSites();
-							for (ForwardQuery p : allocs.keySet()) {
+							if (allocs == null)
+								allocs = getAllocationSitesOfBase(seedObj, statement, new Val(base, callerMethod));
+							for (ForwardQuery p : allocs) {
 								AnalysisSeedWithSpecification seedWithSpec = cryptoScanner.getOrCreateSeedWithSpec(new AnalysisSeedWithSpecification(cryptoScanner, p.stmt(),p.var(),specification));
 								seedWithSpec.addEnsuredPredicate(ensPred);
 							}
@@ -144,7 +121,51 @@ public class PredicateHandler {
 		}
 	}
 
-	public void expectPredicate(IAnalysisSeed object, Statement stmt, CryptSLPredicate predToBeEnsured) {
+	/**
+	 * The allocation sites of the base of a call do not depend on the predicate or the specification, so they are
+	 * computed once per statement and base for the whole scan. The allocation sites of a query that timed out are
+	 * incomplete and are not cached, so a later predicate at the same statement solves the query again.
+	 */
+	private Set<ForwardQuery> getAllocationSitesOfBase(IAnalysisSeed seedObj, Statement statement, Val base) {
+		Node<Statement, Val> key = new Node<Statement, Val>(statement, base);
+		Set<ForwardQuery> allocs = baseAllocationSites.get(key);
+		if (allocs != null)
+			return allocs;
+		Boomerang boomerang = new Boomerang(new CogniCryptBoomerangOptions() {
+			@Override
+			public Optional<AllocVal> getAllocationVal(SootMethod m, Stmt stmt, Val fact,
+					BiDiInterproceduralCFG<Unit, SootMethod> icfg) {
+				if(stmt.containsInvokeExpr() && stmt instanceof AssignStmt){
+					AssignStmt as = (AssignStmt) stmt;
+					if(as.getLeftOp().equals(fact.value())){
+						if(icfg.getCalleesOfCallAt(stmt).isEmpty())
+							return Optional.of(new AllocVal(as.getLeftOp(), m, as.getRightOp(), new Statement(as, m)));
+						//TODO replace by check if stmt is a seed of specification
+						// Any getInstance method, including getInstanceStrong, also of classes without a rule.
+						if(stmt.getInvokeExpr().getMethod().getName().startsWith("getInstance")){
+							return Optional.of(new AllocVal(as.getLeftOp(), m, as.getRightOp(),new Statement(as, m)));
+						}
+					}
+				}
+				return super.getAllocationVal(m, stmt, fact, icfg);
+			}
+		}){
+			@Override
+			public BiDiInterproceduralCFG<Unit, SootMethod> icfg() {
+				return cryptoScanner.icfg();
+			}
+		};
+		BackwardQuery backwardQuery = new BackwardQuery(statement, base);
+		cryptoScanner.getAnalysisListener().boomerangQueryStarted(seedObj, backwardQuery);
+		BackwardBoomerangResults<NoWeight> res = boomerang.solve(backwardQuery);
+		cryptoScanner.getAnalysisListener().boomerangQueryFinished(seedObj, backwardQuery);
+		allocs = new HashSet<>(res.getAllocationSites().keySet());
+		if (!res.isTimedout())
+			baseAllocationSites.put(key, allocs);
+		return allocs;
+	}
+
+	public synchronized void expectPredicate(IAnalysisSeed object, Statement stmt, CryptSLPredicate predToBeEnsured) {
 		for (Unit succ : cryptoScanner.icfg().getSuccsOf(stmt.getUnit().get())) {
 			Set<CryptSLPredicate> set = expectedPredicateObjectBased.get(succ, object);
 			if (set == null)
@@ -155,15 +176,17 @@ public class PredicateHandler {
 	}
 
 
-	public void checkPredicates() {
+	public synchronized void checkPredicates() {
 		checkMissingRequiredPredicates();
 		checkForContradictions();
 		cryptoScanner.getAnalysisListener().ensuredPredicates(this.existingPredicates, expectedPredicateObjectBased, computeMissingPredicates());
 	}
 	private void checkMissingRequiredPredicates() {
+		IncrementalScan incrementalScan = cryptoScanner.getIncrementalScan();
 		for (AnalysisSeedWithSpecification seed : cryptoScanner.getAnalysisSeeds()) {
 			Set<RequiredCryptSLPredicate> missingPredicates = seed.getMissingPredicates();
-			
+			if (incrementalScan != null)
+				incrementalScan.enter(seed);
 			for(RequiredCryptSLPredicate pred : missingPredicates){
 				CryptSLRule rule = seed.getSpec().getRule();
 				if (!rule.getPredicates().contains(pred.getPred())){
@@ -174,6 +197,8 @@ public class PredicateHandler {
 					}
 				}
 			}
+			if (incrementalScan != null)
+				incrementalScan.exit();
 		}	
 	}
 
@@ -1,8 +1,10 @@
 package crypto.reporting;
 
+import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.util.Collection;
 import java.util.List;
@@ -54,17 +56,39 @@ import typestate.TransitionFunction;
 public class CSVReporter extends CrySLAnalysisListener {
 
 	private static final String CSV_SEPARATOR = ";";
+	public static final String SKIPPED_SEEDS = "SkippedSeeds";
 	private Set<AbstractError> errors = Sets.newHashSet();
 	private int seeds;
+	private int skippedSeeds;
+	private int timedOutSeeds;
+	private int recoveredSeeds;
+	private int parameterQueryCacheHits;
+	private int parameterQueryCacheMisses;
+	private Map<CryptSLRule, Integer> skippedSeedsPerRule = Maps.newHashMap();
 	private List<String> headers = Lists.newArrayList();
 	private Map<String,String> headersToValues = Maps.newHashMap();
 	private List<CryptSLRule> rules;
 	private Set<SootMethod> dataflowReachableMethods = Sets.newHashSet();
 	private Stopwatch analysisTime = Stopwatch.createUnstarted();
 	private String csvReportFileName;
-	private enum Headers{
+	/**
+	 * The fixed columns of the report. The appended columns follow the columns counting the errors per rule, so the
+	 * columns of earlier reports keep their position.
+	 */
+	public enum Headers{
 		SoftwareID,SeedObjectCount,CallGraphTime_ms,CryptoAnalysisTime_ms,CallGraphReachableMethods,
-		CallGraphReachableMethods_ActiveBodies,DataflowVisitedMethod
+		CallGraphReachableMethods_ActiveBodies,DataflowVisitedMethod,PartialResult(true),TimedOutSeeds(true),
+		RecoveredSeeds(true),ParameterQueryCacheHits(true),ParameterQueryCacheMisses(true);
+
+		private final boolean appended;
+
+		private Headers() {
+			this(false);
+		}
+
+		private Headers(boolean appended) {
+			this.appended = appended;
+		}
 	}
 
 	public CSVReporter(String csvReportFileName, String softwareId,  List<CryptSLRule> rules, long callGraphConstructionTime) {
@@ -82,26 +106,46 @@ public class CSVReporter extends CrySLAnalysisListener {
 			}
 		}
 		int callgraphReachableMethods = visited.size();
-		for(Headers h : Headers.values()){
-			headers.add(h.toString());
+		List<String> ruleClassNames = Lists.newArrayList();
+		for(CryptSLRule r : rules){
+			ruleClassNames.add(r.getClassName());
 		}
+		headers.addAll(createHeaders(ruleClassNames));
 		put(Headers.SoftwareID,softwareId);
 		put(Headers.CallGraphTime_ms,callGraphConstructionTime);
 		put(Headers.CallGraphReachableMethods,callgraphReachableMethods);
 		put(Headers.CallGraphReachableMethods_ActiveBodies,callgraphReachableMethodsWithActiveBodies);
-		addDynamicHeader(ConstraintError.class.getSimpleName());
-		addDynamicHeader(NeverTypeOfError.class.getSimpleName());
-		addDynamicHeader(TypestateError.class.getSimpleName());
-		addDynamicHeader(RequiredPredicateError.class.getSimpleName());
-		addDynamicHeader(IncompleteOperationError.class.getSimpleName());
-		addDynamicHeader(ImpreciseValueExtractionError.class.getSimpleName());
-		addDynamicHeader(ForbiddenMethodError.class.getSimpleName());
+	}
+
+	/**
+	 * @return the columns of the report for the given rules. Next to the fixed {@link Headers}, the errors and skipped
+	 *         seeds are counted in total and per rule.
+	 */
+	public static List<String> createHeaders(List<String> ruleClassNames) {
+		List<String> headers = Lists.newArrayList();
+		for(Headers h : Headers.values()){
+			if (!h.appended)
+				headers.add(h.toString());
+		}
+		addDynamicHeader(headers, ConstraintError.class.getSimpleName(), ruleClassNames);
+		addDynamicHeader(headers, NeverTypeOfError.class.getSimpleName(), ruleClassNames);
+		addDynamicHeader(headers, TypestateError.class.getSimpleName(), ruleClassNames);
+		addDynamicHeader(headers, RequiredPredicateError.class.getSimpleName(), ruleClassNames);
+		addDynamicHeader(headers, IncompleteOperationError.class.getSimpleName(), ruleClassNames);
+		addDynamicHeader(headers, ImpreciseValueExtractionError.class.getSimpleName(), ruleClassNames);
+		addDynamicHeader(headers, ForbiddenMethodError.class.getSimpleName(), ruleClassNames);
+		for(Headers h : Headers.values()){
+			if (h.appended)
+				headers.add(h.toString());
+		}
+		addDynamicHeader(headers, SKIPPED_SEEDS, ruleClassNames);
+		return headers;
 	}
 	
-	private void addDynamicHeader(String name) {
+	private static void addDynamicHeader(List<String> headers, String name, List<String> ruleClassNames) {
 		headers.add(name+"_sum");
-		for(CryptSLRule r : rules){
-			headers.add(name+"_"+r.getClassName());
+		for(String r : ruleClassNames){
+			headers.add(name+"_"+r);
 		}
 	}
 
@@ -116,6 +160,15 @@ public class CSVReporter extends CrySLAnalysisListener {
 		put(Headers.DataflowVisitedMethod, dataflowReachableMethods.size());
 		put(Headers.CryptoAnalysisTime_ms, analysisTime.elapsed(TimeUnit.MILLISECONDS));
 		put(Headers.SeedObjectCount, seeds);
+		put(Headers.PartialResult, skippedSeeds > 0);
+		put(Headers.TimedOutSeeds, timedOutSeeds);
+		put(Headers.RecoveredSeeds, recoveredSeeds);
+		put(Headers.ParameterQueryCacheHits, parameterQueryCacheHits);
+		put(Headers.ParameterQueryCacheMisses, parameterQueryCacheMisses);
+		put(SKIPPED_SEEDS + "_sum", skippedSeeds);
+		for (Entry<CryptSLRule, Integer> e : skippedSeedsPerRule.entrySet()) {
+			put(SKIPPED_SEEDS + "_" + e.getKey().getClassName(), e.getValue());
+		}
 		
 		Table<Class, CryptSLRule, Integer> errorTable = HashBasedTable.create(); 
 		for(AbstractError err : errors){
@@ -146,11 +199,17 @@ public class CSVReporter extends CrySLAnalysisListener {
 			put(c.getKey().getSimpleName() + "_sum", c.getValue());
 		}
 		
-		writeToFile();
+		appendRow(csvReportFileName, headers, headersToValues);
 	}
 
-	private void writeToFile() {
+	/**
+	 * Appends a row with the given values to the report file. The header line is written if the file does not exist
+	 * yet. If the file was written with other columns, e.g. by an earlier version or for other rules, the row is
+	 * appended to the first file named like the report with a number that has the same columns or does not exist yet.
+	 */
+	public static void appendRow(String csvReportFileName, List<String> headers, Map<String, String> headersToValues) {
 		try {
+			String headerLine = Joiner.on(CSV_SEPARATOR).join(headers);
 			File reportFile = new File(csvReportFileName).getAbsoluteFile();
 			if (!reportFile.getParentFile().exists()) {
 				try {
@@ -159,10 +218,15 @@ public class CSVReporter extends CrySLAnalysisListener {
 					throw new RuntimeException("Was not able to create directories for IDEViz output!");
 				}
 			}
+			for (int i = 1; reportFile.exists() && !headerLine.equals(readHeaderLine(reportFile)); i++) {
+				reportFile = numberedFile(new File(csvReportFileName).getAbsoluteFile(), i);
+			}
+			if (!reportFile.getPath().equals(new File(csvReportFileName).getAbsolutePath()))
+				System.out.println("The columns of " + csvReportFileName + " differ, appending to " + reportFile);
 			boolean fileExisted = reportFile.exists();
 			FileWriter writer = new FileWriter(reportFile, true);
 			if (!fileExisted) {
-				writer.write(Joiner.on(CSV_SEPARATOR).join(headers) + "\n");
+				writer.write(headerLine + "\n");
 			}
 			List<String> line = Lists.newArrayList();
 			for(String h : headers){
@@ -179,6 +243,23 @@ public class CSVReporter extends CrySLAnalysisListener {
 		}
 	}
 
+	private static String readHeaderLine(File reportFile) throws IOException {
+		try (BufferedReader reader = Files.newBufferedReader(reportFile.toPath(), StandardCharsets.UTF_8)) {
+			return reader.readLine();
+		}
+	}
+
+	/**
+	 * @return the file with the number inserted before the extension, e.g. report-1.csv for report.csv.
+	 */
+	private static File numberedFile(File file, int number) {
+		String name = file.getName();
+		int extension = name.lastIndexOf('.');
+		String numbered = extension < 0 ? name + "-" + number
+				: name.substring(0, extension) + "-" + number + name.substring(extension);
+		return new File(file.getParentFile(), numbered);
+	}
+
 	private void put(String key, Object val) {
 		if (!headers.contains(key)) {
 			System.err.println("Did not create a header to this value " + key);
@@ -225,6 +306,14 @@ public class CSVReporter extends CrySLAnalysisListener {
 		
 	}
 
+	@Override
+	public void parameterQueryCacheLookup(Query seed, BackwardQuery q, boolean cacheHit) {
+		if (cacheHit)
+			parameterQueryCacheHits++;
+		else
+			parameterQueryCacheMisses++;
+	}
+
 	@Override
 	public void reportError(AbstractError error) {
 		errors.add(error);
@@ -244,7 +333,22 @@ public class CSVReporter extends CrySLAnalysisListener {
 
 	@Override
 	public void onSeedTimeout(Node<Statement, Val> seed) {
-		
+		timedOutSeeds++;
+	}
+
+	@Override
+	public void onSeedRecovered(IAnalysisSeed seed, int analysisTimeoutMS) {
+		recoveredSeeds++;
+	}
+
+	@Override
+	public void onSeedSkipped(IAnalysisSeed seed) {
+		skippedSeeds++;
+		if (seed instanceof AnalysisSeedWithSpecification) {
+			CryptSLRule rule = ((AnalysisSeedWithSpecification) seed).getSpec().getRule();
+			Integer count = skippedSeedsPerRule.get(rule);
+			skippedSeedsPerRule.put(rule, count == null ? 1 : count + 1);
+		}
 	}
 
 	@Override
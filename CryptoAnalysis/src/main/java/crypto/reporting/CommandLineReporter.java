@@ -6,12 +6,17 @@ import java.io.FileWriter;
 import java.io.IOException;
 import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
 
+import com.google.common.collect.Maps;
+
+import crypto.analysis.AnalysisSeedWithSpecification;
 import crypto.analysis.IAnalysisSeed;
 import crypto.analysis.errors.AbstractError;
 import crypto.analysis.errors.ErrorWithObjectAllocation;
@@ -26,6 +31,8 @@ public class CommandLineReporter extends ErrorMarkerListener {
 	private File outputFolder;
 	private List<CryptSLRule> rules;
 	private Collection<IAnalysisSeed> objects = new HashSet<>();
+	private Map<String, Integer> skippedObjects = Maps.newTreeMap();
+	private Map<IAnalysisSeed, Integer> recoveredObjects = Maps.newLinkedHashMap();
 
 	public CommandLineReporter(String string, List<CryptSLRule> rules) {
 		this.outputFolder = (string != null ? new File(string) : null);
@@ -36,16 +43,29 @@ public class CommandLineReporter extends ErrorMarkerListener {
 	public void discoveredSeed(IAnalysisSeed object) {
 		this.objects.add(object);
 	}
+	@Override
+	public void onSeedSkipped(IAnalysisSeed object) {
+		String rule = object instanceof AnalysisSeedWithSpecification
+				? ((AnalysisSeedWithSpecification) object).getSpec().getRule().getClassName()
+				: "Objects without rule";
+		Integer count = skippedObjects.get(rule);
+		skippedObjects.put(rule, count == null ? 1 : count + 1);
+	}
+
+	@Override
+	public void onSeedRecovered(IAnalysisSeed object, int analysisTimeoutMS) {
+		recoveredObjects.put(object, analysisTimeoutMS);
+	}
+
 	@Override
 	public void afterAnalysis() {
 		String s = "";
 
-		s += "Ruleset: \n";
+		List<String> ruleClassNames = new ArrayList<>();
 		for (CryptSLRule r : this.rules) {
-			s += String.format("\t%s\n", r.getClassName());
+			ruleClassNames.add(r.getClassName());
 		}
-
-		s += "\n";
+		s += formatRuleset(ruleClassNames);
 
 		s += "Analyzed Objects: \n";
 		for (IAnalysisSeed r : this.objects) {
@@ -60,35 +80,33 @@ public class CommandLineReporter extends ErrorMarkerListener {
 		
 		
 		s += "\n";
+		if (!recoveredObjects.isEmpty()) {
+			s += "Objects Analyzed after a Timeout: \n";
+			for (Entry<IAnalysisSeed, Integer> e : recoveredObjects.entrySet()) {
+				s += String.format("\tObject #%s recovered with a timeout of %s ms\n", e.getKey().getObjectId(), e.getValue());
+			}
+			s += "\n";
+		}
 		for (SootClass c : this.errorMarkers.rowKeySet()) {
-			s += String.format("Findings in Java Class: %s\n", c.getName());
+			s += formatClassHeader(c.getName());
 			for (Entry<SootMethod, Set<AbstractError>> e : this.errorMarkers.row(c).entrySet()) {
-				s += String.format("\n\t in Method: %s\n", e.getKey().getSubSignature());
+				s += formatMethodHeader(e.getKey().getSubSignature());
 				for (AbstractError marker : e.getValue()) {
-					s += String.format("\t\t%s violating CrySL rule for %s", marker.getClass().getSimpleName() ,marker.getRule().getClassName());
+					String object = null;
 					if(marker instanceof ErrorWithObjectAllocation) {
-						 s += String.format(" (on Object #%s)\n", ((ErrorWithObjectAllocation) marker).getObjectLocation().getObjectId());
-					} else {
-						 s += "\n";
+						object = "#" + ((ErrorWithObjectAllocation) marker).getObjectLocation().getObjectId();
 					}
-					s += String.format("\t\t\t%s\n", marker.toErrorMarkerString());
-					s += String.format("\t\t\tat statement: %s\n\n", marker.getErrorLocation().getUnit().get());
+					s += formatFinding(marker.getClass().getSimpleName(), marker.getRule().getClassName(), object,
+							marker.toErrorMarkerString(), marker.getErrorLocation().getUnit().get().toString());
 				}
 			}
 			s += "\n";
 		}
-		s += "======================= CogniCrypt Summary ==========================\n";
-		s += String.format("\tNumber of CrySL rules: %s\n", rules.size());
-		s += String.format("\tNumber of Objects Analyzed: %s\n", this.objects.size());
-		if(this.errorMarkers.rowKeySet().isEmpty()){
-			s += "No violation of any of the rules found.";
-		} else{
-			s += "\n\tCogniCrypt found the following violations. For details see description above.\n";
-			for(Entry<Class, Integer> e : errorMarkerCount.entrySet()){
-				s += String.format("\t%s: %s\n", e.getKey().getSimpleName(),e.getValue());
-			}
+		Map<String, Integer> violations = Maps.newLinkedHashMap();
+		for(Entry<Class, Integer> e : errorMarkerCount.entrySet()){
+			violations.put(e.getKey().getSimpleName(), e.getValue());
 		}
-		s += "=====================================================================";
+		s += formatSummary(rules.size(), this.objects.size(), "", skippedObjects, violations);
 
 		System.out.println(s);
 		if (outputFolder != null) {
@@ -109,4 +127,78 @@ public class CommandLineReporter extends ErrorMarkerListener {
 			}
 		}
 	}
+
+	/**
+	 * @return the list of rules that starts the report.
+	 */
+	public static String formatRuleset(Collection<String> ruleClassNames) {
+		String s = "Ruleset: \n";
+		for (String r : ruleClassNames) {
+			s += String.format("\t%s\n", r);
+		}
+		s += "\n";
+		return s;
+	}
+
+	public static String formatClassHeader(String className) {
+		return String.format("Findings in Java Class: %s\n", className);
+	}
+
+	public static String formatMethodHeader(String methodSubSignature) {
+		return String.format("\n\t in Method: %s\n", methodSubSignature);
+	}
+
+	/**
+	 * @param object
+	 *            the object the error was found on, or null if the error does not belong to an object.
+	 */
+	public static String formatFinding(String errorType, String rule, String object, String message, String statement) {
+		String s = String.format("\t\t%s violating CrySL rule for %s", errorType, rule);
+		if (object != null) {
+			s += String.format(" (on Object %s)\n", object);
+		} else {
+			s += "\n";
+		}
+		s += String.format("\t\t\t%s\n", message);
+		s += String.format("\t\t\tat statement: %s\n\n", statement);
+		return s;
+	}
+
+	/**
+	 * @param details
+	 *            further lines following the number of analyzed objects, or an empty string.
+	 * @param skippedObjects
+	 *            the number of objects not analyzed in time, per rule.
+	 * @param violations
+	 *            the number of errors, per error type.
+	 * @return the summary that ends the report.
+	 */
+	public static String formatSummary(int ruleCount, int objectCount, String details, Map<String, Integer> skippedObjects,
+			Map<String, Integer> violations) {
+		String s = "======================= CogniCrypt Summary ==========================\n";
+		s += String.format("\tNumber of CrySL rules: %s\n", ruleCount);
+		s += String.format("\tNumber of Objects Analyzed: %s\n", objectCount);
+		s += details;
+		int skippedObjectCount = 0;
+		for (int count : skippedObjects.values()) {
+			skippedObjectCount += count;
+		}
+		if (skippedObjectCount > 0) {
+			s += String.format("\n\tPARTIAL RESULT: The analysis time expired before %s objects were analyzed.\n", skippedObjectCount);
+			for (Entry<String, Integer> e : skippedObjects.entrySet()) {
+				s += String.format("\t%s: %s not analyzed\n", e.getKey(), e.getValue());
+			}
+			s += "\n";
+		}
+		if(violations.isEmpty()){
+			s += "No violation of any of the rules found.";
+		} else{
+			s += "\n\tCogniCrypt found the following violations. For details see description above.\n";
+			for(Entry<String, Integer> e : violations.entrySet()){
+				s += String.format("\t%s: %s\n", e.getKey(), e.getValue());
+			}
+		}
+		s += "=====================================================================";
+		return s;
+	}
 }
@@ -1,8 +1,10 @@
 package crypto.rules;
 
+import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map.Entry;
+import java.util.Set;
 
 import crypto.interfaces.ISLConstraint;
 
@@ -114,6 +116,22 @@ public class CryptSLRule implements java.io.Serializable {
 		return requires;
 	}
 	
+	/**
+	 * Merges the equivalent states of the usage pattern, which the typestate analysis of every object of the rule
+	 * otherwise tracks separately. The states a conditional predicate is ensured in stay distinguishable.
+	 */
+	public void minimizeUsagePattern() {
+		List<Object> preds = new LinkedList<Object>(constraints);
+		if (predicates != null)
+			preds.addAll(predicates);
+		Set<StateNode> conditionalStates = new HashSet<StateNode>();
+		for (Object pred : preds) {
+			if (pred instanceof CryptSLCondPredicate && ((CryptSLCondPredicate) pred).getConditionalMethods() != null)
+				conditionalStates.addAll(((CryptSLCondPredicate) pred).getConditionalMethods());
+		}
+		usagePattern.minimize(conditionalStates);
+	}
+
 	public String toString() {
 		StringBuilder outputSB = new StringBuilder();
 		
@@ -1,10 +1,15 @@
 package crypto.rules;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import crypto.interfaces.FiniteStateMachine;
@@ -109,5 +114,104 @@ public final class StateMachineGraph implements FiniteStateMachine<StateNode>, j
 		edges.add(0, new TransitionEdge(mergedMethods, intialState, initialTrans.to()));
 		return this;
 	}
-	
+
+	/**
+	 * Merges the states that cannot be distinguished by any sequence of calls, and the transitions between the same
+	 * states. The states are partitioned by whether they are accepting, and the partition is refined until all states of
+	 * a block have transitions with the same methods into the same blocks. The graph may be nondeterministic, so the
+	 * merged states are bisimilar rather than only accepting the same sequences.
+	 *
+	 * The source state of the initial transition, which starts the usage pattern, and the initial transition itself are
+	 * kept as they are.
+	 *
+	 * @param distinguished
+	 *            the states that are not merged with any other state, e.g. the states a conditional predicate is ensured
+	 *            in.
+	 */
+	public StateMachineGraph minimize(Collection<StateNode> distinguished) {
+		TransitionEdge initialTrans = getInitialTransition();
+		Map<StateNode, List<TransitionEdge>> outgoing = new HashMap<>();
+		for (TransitionEdge t : edges) {
+			if (!nodes.contains(t.from()) || !nodes.contains(t.to()))
+				return this;
+			List<TransitionEdge> out = outgoing.get(t.from());
+			if (out == null) {
+				out = new ArrayList<>();
+				outgoing.put(t.from(), out);
+			}
+			out.add(t);
+		}
+		Map<StateNode, Integer> block = new HashMap<>();
+		Map<List<Object>, Integer> blockIds = new HashMap<>();
+		for (StateNode n : nodes) {
+			List<Object> key = distinguished.contains(n) || n.equals(initialTrans.from()) ? Arrays.<Object>asList(n)
+					: Arrays.<Object>asList(n.getAccepting(), n.getInit());
+			block.put(n, blockId(blockIds, key));
+		}
+		int blockCount;
+		do {
+			blockCount = blockIds.size();
+			Map<StateNode, Integer> refined = new HashMap<>();
+			blockIds.clear();
+			for (StateNode n : nodes) {
+				Set<List<Object>> signature = new HashSet<>();
+				if (outgoing.containsKey(n)) {
+					for (TransitionEdge t : outgoing.get(n)) {
+						for (CryptSLMethod m : t.getLabel())
+							signature.add(Arrays.<Object>asList(m, block.get(t.to())));
+					}
+				}
+				refined.put(n, blockId(blockIds, Arrays.<Object>asList(block.get(n), signature)));
+			}
+			block = refined;
+		} while (blockIds.size() != blockCount);
+
+		Map<Integer, StateNode> representatives = new HashMap<>();
+		for (StateNode n : nodes) {
+			StateNode rep = representatives.get(block.get(n));
+			if (rep == null || compareNames(n, rep) < 0)
+				representatives.put(block.get(n), n);
+		}
+		Map<List<StateNode>, Set<CryptSLMethod>> labels = new LinkedHashMap<>();
+		for (TransitionEdge t : edges) {
+			if (t == initialTrans)
+				continue;
+			List<StateNode> fromTo = Arrays.asList(representatives.get(block.get(t.from())),
+					representatives.get(block.get(t.to())));
+			Set<CryptSLMethod> label = labels.get(fromTo);
+			if (label == null) {
+				label = new LinkedHashSet<>();
+				labels.put(fromTo, label);
+			}
+			label.addAll(t.getLabel());
+		}
+		edges.clear();
+		edges.add(new TransitionEdge(initialTrans.getLabel(), initialTrans.from(),
+				representatives.get(block.get(initialTrans.to()))));
+		for (Map.Entry<List<StateNode>, Set<CryptSLMethod>> e : labels.entrySet()) {
+			TransitionEdge merged = new TransitionEdge(new ArrayList<>(e.getValue()), e.getKey().get(0), e.getKey().get(1));
+			if (!edges.contains(merged))
+				edges.add(merged);
+		}
+		nodes.retainAll(representatives.values());
+		return this;
+	}
+
+	private static int blockId(Map<List<Object>, Integer> blockIds, List<Object> key) {
+		Integer id = blockIds.get(key);
+		if (id == null) {
+			id = blockIds.size();
+			blockIds.put(key, id);
+		}
+		return id;
+	}
+
+	/**
+	 * Orders the states by their names, numbers first, so the state with the lowest number represents its block.
+	 */
+	private static int compareNames(StateNode a, StateNode b) {
+		if (a.getName().length() != b.getName().length())
+			return a.getName().length() - b.getName().length();
+		return a.getName().compareTo(b.getName());
+	}
 }
@@ -0,0 +1,113 @@
+package crypto.scheduling;
+
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+import com.google.common.collect.Maps;
+
+import crypto.analysis.IAnalysisSeed;
+
+/**
+ * Orders the seeds by the cost estimated by a {@link SeedCostModel}. The static cost of a seed is estimated once, when
+ * the seed is scheduled, but the factor of its rule is applied when the next seed is chosen. Timings of finished seeds
+ * thus re-rank all waiting seeds, including the initial ones. Seeds of equal cost are executed in the order they are
+ * discovered.
+ *
+ * All seeds of a rule share the same factor, so the seeds are kept in one queue per rule, ordered by their static cost.
+ * The next seed is the best of the heads of these queues.
+ */
+public class CostBasedSeedScheduler implements SeedScheduler {
+
+	private final SeedCostModel costModel;
+	private final boolean cheapestFirst;
+	private final Map<String, PriorityQueue<ScheduledSeed>> worklists = Maps.newLinkedHashMap();
+	private final Comparator<ScheduledSeed> byStaticCost;
+	private long scheduledSeeds;
+	private int size;
+
+	/**
+	 * @param cheapestFirst
+	 *            if true, cheap seeds are executed first. This maximizes the number of analyzed objects when the
+	 *            analysis time is bounded. Otherwise, the most expensive seeds are executed first, which balances
+	 *            the load when seeds are analyzed by multiple threads.
+	 */
+	public CostBasedSeedScheduler(SeedCostModel costModel, boolean cheapestFirst) {
+		this.costModel = costModel;
+		this.cheapestFirst = cheapestFirst;
+		this.byStaticCost = new Comparator<ScheduledSeed>() {
+			@Override
+			public int compare(ScheduledSeed o1, ScheduledSeed o2) {
+				return CostBasedSeedScheduler.this.compare(o1.cost, o1.order, o2.cost, o2.order);
+			}
+		};
+	}
+
+	private int compare(double cost1, long order1, double cost2, long order2) {
+		int byCost = Double.compare(cost1, cost2);
+		if (byCost != 0) {
+			return cheapestFirst ? byCost : -byCost;
+		}
+		return Long.compare(order1, order2);
+	}
+
+	@Override
+	public void add(IAnalysisSeed seed) {
+		String rule = SeedCostModel.ruleOf(seed);
+		PriorityQueue<ScheduledSeed> worklist = worklists.get(rule);
+		if (worklist == null) {
+			worklist = new PriorityQueue<>(byStaticCost);
+			worklists.put(rule, worklist);
+		}
+		worklist.add(new ScheduledSeed(seed, costModel.staticCost(seed), scheduledSeeds++));
+		size++;
+	}
+
+	@Override
+	public IAnalysisSeed poll() {
+		PriorityQueue<ScheduledSeed> best = null;
+		double bestCost = 0;
+		for (Map.Entry<String, PriorityQueue<ScheduledSeed>> e : worklists.entrySet()) {
+			ScheduledSeed head = e.getValue().peek();
+			if (head == null)
+				continue;
+			double cost = head.cost * costModel.ruleFactor(e.getKey());
+			if (best == null || compare(cost, head.order, bestCost, best.peek().order) < 0) {
+				best = e.getValue();
+				bestCost = cost;
+			}
+		}
+		if (best == null)
+			return null;
+		size--;
+		return best.poll().seed;
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	@Override
+	public void seedFinished(IAnalysisSeed seed, Duration analysisTime) {
+		costModel.recordAnalysisTime(seed, analysisTime);
+	}
+
+	private static class ScheduledSeed {
+		private final IAnalysisSeed seed;
+		private final double cost;
+		private final long order;
+
+		private ScheduledSeed(IAnalysisSeed seed, double cost, long order) {
+			this.seed = seed;
+			this.cost = cost;
+			this.order = order;
+		}
+	}
+}
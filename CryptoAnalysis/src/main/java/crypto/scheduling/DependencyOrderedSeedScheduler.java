@@ -0,0 +1,77 @@
+package crypto.scheduling;
+
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.PriorityQueue;
+
+import crypto.analysis.AnalysisSeedWithSpecification;
+import crypto.analysis.IAnalysisSeed;
+
+/**
+ * Executes the seeds in the topological order of the {@link PredicateDependencyGraph}, such that the seeds ensuring
+ * a predicate are analyzed before the seeds requiring it. This way, most predicates are known when a seed is analyzed
+ * and need not be propagated to it afterwards. Seeds without a specification are executed first, as they only
+ * propagate predicates ensured by other seeds.
+ */
+public class DependencyOrderedSeedScheduler implements SeedScheduler {
+
+	private final PredicateDependencyGraph dependencyGraph;
+	private final PriorityQueue<ScheduledSeed> worklist = new PriorityQueue<>(new Comparator<ScheduledSeed>() {
+		@Override
+		public int compare(ScheduledSeed o1, ScheduledSeed o2) {
+			int byRank = Integer.compare(o1.rank, o2.rank);
+			if (byRank != 0)
+				return byRank;
+			return Long.compare(o1.order, o2.order);
+		}
+	});
+	private long scheduledSeeds;
+
+	public DependencyOrderedSeedScheduler(PredicateDependencyGraph dependencyGraph) {
+		this.dependencyGraph = dependencyGraph;
+	}
+
+	@Override
+	public void add(IAnalysisSeed seed) {
+		worklist.add(new ScheduledSeed(seed, rankOf(seed), scheduledSeeds++));
+	}
+
+	private int rankOf(IAnalysisSeed seed) {
+		if (seed instanceof AnalysisSeedWithSpecification) {
+			return dependencyGraph.getRank(((AnalysisSeedWithSpecification) seed).getSpec().getRule().getClassName()) + 1;
+		}
+		return 0;
+	}
+
+	@Override
+	public IAnalysisSeed poll() {
+		ScheduledSeed next = worklist.poll();
+		return next == null ? null : next.seed;
+	}
+
+	@Override
+	public int size() {
+		return worklist.size();
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return worklist.isEmpty();
+	}
+
+	@Override
+	public void seedFinished(IAnalysisSeed seed, Duration analysisTime) {
+	}
+
+	private static class ScheduledSeed {
+		private final IAnalysisSeed seed;
+		private final int rank;
+		private final long order;
+
+		private ScheduledSeed(IAnalysisSeed seed, int rank, long order) {
+			this.seed = seed;
+			this.rank = rank;
+			this.order = order;
+		}
+	}
+}
@@ -0,0 +1,135 @@
+package crypto.scheduling;
+
+import java.util.Collection;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.google.common.collect.HashMultimap;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Multimap;
+import com.google.common.collect.Sets;
+
+import crypto.interfaces.ISLConstraint;
+import crypto.rules.CryptSLConstraint;
+import crypto.rules.CryptSLPredicate;
+import crypto.rules.CryptSLRule;
+
+/**
+ * The dependencies between rules induced by their predicates: a rule depends on every rule that ensures a predicate
+ * it requires. Each rule is assigned a rank such that a rule has a higher rank than all rules it depends on. Rules
+ * that depend on each other, e.g. KeyPair and KeyPairGenerator, share the same rank.
+ */
+public class PredicateDependencyGraph {
+
+	private final Multimap<String, String> dependencies = HashMultimap.create();
+	private final Map<String, Integer> ranks = Maps.newHashMap();
+
+	public PredicateDependencyGraph(Collection<CryptSLRule> rules) {
+		Multimap<String, String> producers = HashMultimap.create();
+		for (CryptSLRule rule : rules) {
+			for (CryptSLPredicate pred : rule.getPredicates()) {
+				producers.put(pred.getPredName(), rule.getClassName());
+			}
+		}
+		for (CryptSLRule rule : rules) {
+			for (CryptSLPredicate required : requiredPredicates(rule)) {
+				for (String producer : producers.get(required.getPredName())) {
+					if (!producer.equals(rule.getClassName()))
+						dependencies.put(rule.getClassName(), producer);
+				}
+			}
+		}
+		computeRanks(rules);
+	}
+
+	/**
+	 * @return the rank of the rule, rules with a lower rank should be analyzed first.
+	 */
+	public int getRank(String ruleClassName) {
+		Integer rank = ranks.get(ruleClassName);
+		return rank == null ? 0 : rank;
+	}
+
+	/**
+	 * @return the class names of the rules ensuring a predicate the given rule requires.
+	 */
+	public Collection<String> getDependencies(String ruleClassName) {
+		return dependencies.get(ruleClassName);
+	}
+
+	private static List<CryptSLPredicate> requiredPredicates(CryptSLRule rule) {
+		List<CryptSLPredicate> required = Lists.newArrayList();
+		for (ISLConstraint cons : rule.getConstraints()) {
+			collectPredicates(cons, required);
+		}
+		return required;
+	}
+
+	private static void collectPredicates(ISLConstraint cons, List<CryptSLPredicate> required) {
+		if (cons instanceof CryptSLPredicate) {
+			CryptSLPredicate pred = (CryptSLPredicate) cons;
+			if (!pred.isNegated())
+				required.add(pred);
+		} else if (cons instanceof CryptSLConstraint) {
+			collectPredicates(((CryptSLConstraint) cons).getLeft(), required);
+			collectPredicates(((CryptSLConstraint) cons).getRight(), required);
+		}
+	}
+
+	/**
+	 * Computes the strongly connected components with Tarjan's algorithm. The components are found in reverse
+	 * topological order, i.e. every component is found after the components it depends on, so the rank of a component
+	 * is one more than the highest rank among its dependencies.
+	 */
+	private void computeRanks(Collection<CryptSLRule> rules) {
+		Tarjan tarjan = new Tarjan();
+		for (CryptSLRule rule : rules) {
+			if (!tarjan.index.containsKey(rule.getClassName()))
+				tarjan.visit(rule.getClassName());
+		}
+	}
+
+	private class Tarjan {
+		private final Map<String, Integer> index = Maps.newHashMap();
+		private final Map<String, Integer> lowLink = Maps.newHashMap();
+		private final Deque<String> stack = Lists.newLinkedList();
+		private final Set<String> onStack = Sets.newHashSet();
+
+		private void visit(String rule) {
+			index.put(rule, index.size());
+			lowLink.put(rule, index.get(rule));
+			stack.push(rule);
+			onStack.add(rule);
+			for (String dependency : dependencies.get(rule)) {
+				if (!index.containsKey(dependency)) {
+					visit(dependency);
+					lowLink.put(rule, Math.min(lowLink.get(rule), lowLink.get(dependency)));
+				} else if (onStack.contains(dependency)) {
+					lowLink.put(rule, Math.min(lowLink.get(rule), index.get(dependency)));
+				}
+			}
+			if (!lowLink.get(rule).equals(index.get(rule)))
+				return;
+			Set<String> component = Sets.newHashSet();
+			String member;
+			do {
+				member = stack.pop();
+				onStack.remove(member);
+				component.add(member);
+			} while (!member.equals(rule));
+			int rank = 0;
+			for (String componentMember : component) {
+				for (String dependency : dependencies.get(componentMember)) {
+					if (!component.contains(dependency))
+						rank = Math.max(rank, ranks.get(dependency) + 1);
+				}
+			}
+			for (String componentMember : component) {
+				ranks.put(componentMember, rank);
+			}
+		}
+	}
+}
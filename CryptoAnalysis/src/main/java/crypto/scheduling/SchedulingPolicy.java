@@ -0,0 +1,70 @@
+package crypto.scheduling;
+
+import java.util.List;
+
+import com.google.common.collect.Lists;
+
+import crypto.analysis.ClassSpecification;
+import crypto.analysis.CryptoScanner;
+import crypto.rules.CryptSLRule;
+
+/**
+ * The orders in which the {@link crypto.analysis.CryptoScanner} can execute the analysis seeds.
+ */
+public enum SchedulingPolicy {
+	/**
+	 * Executes the seeds in the order they are discovered.
+	 */
+	FIFO("fifo"),
+	/**
+	 * Executes the seeds with the lowest estimated cost first.
+	 */
+	CHEAPEST_FIRST("cheapest-first"),
+	/**
+	 * Executes the seeds with the highest estimated cost first.
+	 */
+	EXPENSIVE_FIRST("expensive-first"),
+	/**
+	 * Executes the seeds of rules ensuring predicates before the seeds of rules requiring them.
+	 */
+	DEPENDENCY_ORDER("dependency");
+
+	private final String optionName;
+
+	private SchedulingPolicy(String optionName) {
+		this.optionName = optionName;
+	}
+
+	public String getOptionName() {
+		return optionName;
+	}
+
+	public SeedScheduler createScheduler(CryptoScanner scanner) {
+		switch (this) {
+		case CHEAPEST_FIRST:
+			return new CostBasedSeedScheduler(new SeedCostModel(scanner.icfg()), true);
+		case EXPENSIVE_FIRST:
+			return new CostBasedSeedScheduler(new SeedCostModel(scanner.icfg()), false);
+		case DEPENDENCY_ORDER:
+			List<CryptSLRule> rules = Lists.newArrayList();
+			for (ClassSpecification spec : scanner.getClassSpecifictions()) {
+				rules.add(spec.getRule());
+			}
+			return new DependencyOrderedSeedScheduler(new PredicateDependencyGraph(rules));
+		default:
+			return new FIFOSeedScheduler();
+		}
+	}
+
+	/**
+	 * @return the policy with the given option name, or null if there is none.
+	 */
+	public static SchedulingPolicy fromOptionName(String optionName) {
+		for (SchedulingPolicy policy : values()) {
+			if (policy.optionName.equalsIgnoreCase(optionName)) {
+				return policy;
+			}
+		}
+		return null;
+	}
+}
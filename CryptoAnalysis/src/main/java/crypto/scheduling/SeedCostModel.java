@@ -0,0 +1,103 @@
+package crypto.scheduling;
+
+import java.time.Duration;
+import java.util.Map;
+
+import com.google.common.collect.Maps;
+
+import crypto.analysis.AnalysisSeedWithSpecification;
+import crypto.analysis.IAnalysisSeed;
+import soot.SootMethod;
+import soot.Unit;
+import soot.jimple.toolkits.ide.icfg.BiDiInterproceduralCFG;
+
+/**
+ * Estimates how expensive the analysis of a seed is. The estimate grows with the size of the method the object is
+ * allocated in and the number of methods called from it, as the typestate and pointer analyses propagate through these
+ * methods. This static estimate is scaled by the average time the seeds of the same rule took so far in this run, so
+ * the estimate of a seed changes whenever another seed of any rule finishes.
+ */
+public class SeedCostModel {
+
+	private static final int CALLEE_WEIGHT = 10;
+	private static final String NO_RULE = "";
+
+	private final BiDiInterproceduralCFG<Unit, SootMethod> icfg;
+	private final Map<SootMethod, Integer> methodCosts = Maps.newHashMap();
+	private final Map<String, RuleTime> ruleTimes = Maps.newHashMap();
+	private long totalTimeMs;
+	private int totalSeeds;
+
+	public SeedCostModel(BiDiInterproceduralCFG<Unit, SootMethod> icfg) {
+		this.icfg = icfg;
+	}
+
+	/**
+	 * @return the part of the estimate that does not depend on the analysis times recorded so far.
+	 */
+	public double staticCost(IAnalysisSeed seed) {
+		return methodCost(seed.getMethod());
+	}
+
+	public void recordAnalysisTime(IAnalysisSeed seed, Duration analysisTime) {
+		String rule = ruleOf(seed);
+		RuleTime time = ruleTimes.get(rule);
+		if (time == null) {
+			time = new RuleTime();
+			ruleTimes.put(rule, time);
+		}
+		time.totalTimeMs += analysisTime.toMillis();
+		time.seeds++;
+		totalTimeMs += analysisTime.toMillis();
+		totalSeeds++;
+	}
+
+	private int methodCost(SootMethod method) {
+		Integer cost = methodCosts.get(method);
+		if (cost == null) {
+			cost = computeMethodCost(method);
+			methodCosts.put(method, cost);
+		}
+		return cost;
+	}
+
+	private int computeMethodCost(SootMethod method) {
+		if (!method.hasActiveBody()) {
+			return 1;
+		}
+		int cost = method.getActiveBody().getUnits().size();
+		for (Unit callSite : icfg.getCallsFromWithin(method)) {
+			cost += CALLEE_WEIGHT * icfg.getCalleesOfCallAt(callSite).size();
+		}
+		return Math.max(cost, 1);
+	}
+
+	/**
+	 * @return the ratio between the average analysis time of the rule's seeds and the average analysis time of all
+	 *         seeds, or 1 if no seed of the rule has been analyzed yet.
+	 */
+	public double ruleFactor(String rule) {
+		RuleTime time = ruleTimes.get(rule);
+		if (time == null || totalTimeMs == 0) {
+			return 1;
+		}
+		double ruleAverage = (double) time.totalTimeMs / time.seeds;
+		double average = (double) totalTimeMs / totalSeeds;
+		return Math.max(ruleAverage / average, 0.01);
+	}
+
+	/**
+	 * @return the class name of the seed's rule, or an empty name for seeds without a rule.
+	 */
+	public static String ruleOf(IAnalysisSeed seed) {
+		if (seed instanceof AnalysisSeedWithSpecification) {
+			return ((AnalysisSeedWithSpecification) seed).getSpec().getRule().getClassName();
+		}
+		return NO_RULE;
+	}
+
+	private static class RuleTime {
+		private long totalTimeMs;
+		private int seeds;
+	}
+}
@@ -0,0 +1,28 @@
+package crypto.scheduling;
+
+import java.time.Duration;
+
+import crypto.analysis.IAnalysisSeed;
+
+/**
+ * Decides in which order the {@link crypto.analysis.CryptoScanner} executes the analysis seeds. Implementations are
+ * not required to be thread-safe, the scanner synchronizes all accesses.
+ */
+public interface SeedScheduler {
+
+	void add(IAnalysisSeed seed);
+
+	/**
+	 * @return the next seed to execute, or null if no seed is scheduled.
+	 */
+	IAnalysisSeed poll();
+
+	int size();
+
+	boolean isEmpty();
+
+	/**
+	 * Called after a seed polled from this scheduler has been executed.
+	 */
+	void seedFinished(IAnalysisSeed seed, Duration analysisTime);
+}
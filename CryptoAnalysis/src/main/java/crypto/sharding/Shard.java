@@ -0,0 +1,60 @@
+package crypto.sharding;
+
+import crypto.analysis.AnalysisSeedWithSpecification;
+import crypto.analysis.SeedKeys;
+
+/**
+ * One of several processes analyzing the same program. Every process constructs the call graph, but only analyzes the
+ * initial seeds whose stable key, see {@link SeedKeys}, hashes to its shard. The partial results of all shards are
+ * combined by the {@link ShardResultMerger}.
+ */
+public class Shard {
+
+	private final int index;
+	private final int count;
+
+	/**
+	 * @param index
+	 *            the number of this shard, from 1 to count.
+	 */
+	public Shard(int index, int count) {
+		if (count < 1 || index < 1 || index > count)
+			throw new IllegalArgumentException("Expected a shard between 1 and " + count + ", but was " + index);
+		this.index = index;
+		this.count = count;
+	}
+
+	/**
+	 * Parses a shard of the form {@code i/N}, e.g. {@code 2/4} for the second of four shards.
+	 */
+	public static Shard parse(String value) {
+		String[] parts = value.split("/");
+		if (parts.length != 2)
+			throw new IllegalArgumentException("Expected a shard of the form i/N, but was " + value);
+		try {
+			return new Shard(Integer.parseInt(parts[0].trim()), Integer.parseInt(parts[1].trim()));
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException("Expected a shard of the form i/N, but was " + value);
+		}
+	}
+
+	/**
+	 * @return whether the initial seed is analyzed by this shard.
+	 */
+	public boolean contains(AnalysisSeedWithSpecification seed) {
+		return Math.floorMod(SeedKeys.seedKey(seed).hashCode(), count) == index - 1;
+	}
+
+	public int getIndex() {
+		return index;
+	}
+
+	public int getCount() {
+		return count;
+	}
+
+	@Override
+	public String toString() {
+		return index + "/" + count;
+	}
+}
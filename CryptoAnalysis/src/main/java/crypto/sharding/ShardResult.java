@@ -0,0 +1,242 @@
+package crypto.sharding;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+
+/**
+ * The partial result of a {@link Shard}. Errors are stored by the strings the reports print, so the results can be
+ * merged without loading the program. In addition, the ensured predicates and the locations of missing required
+ * predicates are stored by their statements, so the merge can re-check the required predicates against the predicates
+ * ensured in other shards.
+ */
+class ShardResult {
+
+	private static final int MAGIC = 0xC5A4D;
+	private static final int FORMAT_VERSION = 2;
+
+	int shardIndex;
+	int shardCount;
+	String softwareIdentifier = "";
+	long callGraphMillis;
+	long analysisMillis;
+	final List<String> rules = Lists.newArrayList();
+	final Set<String> seeds = Sets.newLinkedHashSet();
+	/**
+	 * The keys of the values at the statements of the seeds whose analysis timed out, and of those whose analysis
+	 * succeeded when it was retried. Seeds created while analyzing other seeds may be analyzed by several shards.
+	 */
+	final Set<String> timedOutSeeds = Sets.newLinkedHashSet();
+	final Set<String> recoveredSeeds = Sets.newLinkedHashSet();
+	/**
+	 * The keys of the seeds that were not analyzed because the analysis time expired, mapped to the class name of their
+	 * rule, or an empty string for seeds without a rule.
+	 */
+	final Map<String, String> skippedSeeds = Maps.newLinkedHashMap();
+	final Set<Finding> findings = Sets.newLinkedHashSet();
+	final Set<EnsuredPredicate> ensuredPredicates = Sets.newHashSet();
+
+	/**
+	 * An error as reported by the shard.
+	 */
+	static class Finding {
+		final String errorType;
+		final String rule;
+		final String className;
+		final String methodSubSignature;
+		/**
+		 * The key of the seed the error was reported for, or an empty string.
+		 */
+		final String object;
+		final String message;
+		final String statement;
+		/**
+		 * For errors of missing required predicates, the key of the statement requiring the predicate, the predicate
+		 * and the value it is required for. Empty strings for all other errors.
+		 */
+		final String location;
+		final String predicate;
+		final String fact;
+
+		Finding(String errorType, String rule, String className, String methodSubSignature, String object,
+				String message, String statement, String location, String predicate, String fact) {
+			this.errorType = errorType;
+			this.rule = rule;
+			this.className = className;
+			this.methodSubSignature = methodSubSignature;
+			this.object = object;
+			this.message = message;
+			this.statement = statement;
+			this.location = location;
+			this.predicate = predicate;
+			this.fact = fact;
+		}
+
+		boolean isMissingPredicate() {
+			return !predicate.isEmpty();
+		}
+
+		private List<String> fields() {
+			return Arrays.asList(errorType, rule, className, methodSubSignature, object, message, statement, location,
+					predicate, fact);
+		}
+
+		@Override
+		public int hashCode() {
+			return fields().hashCode();
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			return obj instanceof Finding && fields().equals(((Finding) obj).fields());
+		}
+	}
+
+	/**
+	 * A predicate ensured on a value at a statement.
+	 */
+	static class EnsuredPredicate {
+		final String location;
+		final String fact;
+		final String predicate;
+
+		EnsuredPredicate(String location, String fact, String predicate) {
+			this.location = location;
+			this.fact = fact;
+			this.predicate = predicate;
+		}
+
+		@Override
+		public int hashCode() {
+			return Arrays.asList(location, fact, predicate).hashCode();
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof EnsuredPredicate))
+				return false;
+			EnsuredPredicate other = (EnsuredPredicate) obj;
+			return location.equals(other.location) && fact.equals(other.fact) && predicate.equals(other.predicate);
+		}
+	}
+
+	/**
+	 * Writes the result to a temporary file first, so a concurrent merge never reads a partially written result.
+	 */
+	void write(File file) {
+		File parent = file.getAbsoluteFile().getParentFile();
+		parent.mkdirs();
+		try {
+			File tmp = File.createTempFile(file.getName(), ".tmp", parent);
+			try (DataOutputStream out = new DataOutputStream(
+					new BufferedOutputStream(new GZIPOutputStream(new FileOutputStream(tmp))))) {
+				out.writeInt(MAGIC);
+				out.writeInt(FORMAT_VERSION);
+				out.writeInt(shardIndex);
+				out.writeInt(shardCount);
+				out.writeUTF(softwareIdentifier);
+				out.writeLong(callGraphMillis);
+				out.writeLong(analysisMillis);
+				out.writeInt(rules.size());
+				for (String rule : rules)
+					out.writeUTF(rule);
+				out.writeInt(seeds.size());
+				for (String seed : seeds)
+					out.writeUTF(seed);
+				out.writeInt(timedOutSeeds.size());
+				for (String seed : timedOutSeeds)
+					out.writeUTF(seed);
+				out.writeInt(recoveredSeeds.size());
+				for (String seed : recoveredSeeds)
+					out.writeUTF(seed);
+				out.writeInt(skippedSeeds.size());
+				for (Map.Entry<String, String> e : skippedSeeds.entrySet()) {
+					out.writeUTF(e.getKey());
+					out.writeUTF(e.getValue());
+				}
+				out.writeInt(findings.size());
+				for (Finding finding : findings) {
+					for (String field : finding.fields())
+						writeString(out, field);
+				}
+				out.writeInt(ensuredPredicates.size());
+				for (EnsuredPredicate pred : ensuredPredicates) {
+					out.writeUTF(pred.location);
+					out.writeUTF(pred.fact);
+					out.writeUTF(pred.predicate);
+				}
+			}
+			Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		} catch (IOException e) {
+			throw new RuntimeException("Failed to write the shard result " + file, e);
+		}
+	}
+
+	static ShardResult read(File file) {
+		ShardResult result = new ShardResult();
+		try (DataInputStream in = new DataInputStream(
+				new BufferedInputStream(new GZIPInputStream(new FileInputStream(file))))) {
+			if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION)
+				throw new IOException("Not a shard result of this version");
+			result.shardIndex = in.readInt();
+			result.shardCount = in.readInt();
+			result.softwareIdentifier = in.readUTF();
+			result.callGraphMillis = in.readLong();
+			result.analysisMillis = in.readLong();
+			for (int i = in.readInt(); i > 0; i--)
+				result.rules.add(in.readUTF());
+			for (int i = in.readInt(); i > 0; i--)
+				result.seeds.add(in.readUTF());
+			for (int i = in.readInt(); i > 0; i--)
+				result.timedOutSeeds.add(in.readUTF());
+			for (int i = in.readInt(); i > 0; i--)
+				result.recoveredSeeds.add(in.readUTF());
+			for (int i = in.readInt(); i > 0; i--)
+				result.skippedSeeds.put(in.readUTF(), in.readUTF());
+			for (int i = in.readInt(); i > 0; i--) {
+				result.findings.add(new Finding(readString(in), readString(in), readString(in), readString(in),
+						readString(in), readString(in), readString(in), readString(in), readString(in),
+						readString(in)));
+			}
+			for (int i = in.readInt(); i > 0; i--)
+				result.ensuredPredicates.add(new EnsuredPredicate(in.readUTF(), in.readUTF(), in.readUTF()));
+		} catch (IOException e) {
+			throw new RuntimeException("Failed to read the shard result " + file, e);
+		}
+		return result;
+	}
+
+	/**
+	 * Messages may contain string constants of the program, which can exceed the length limit of
+	 * {@link DataOutputStream#writeUTF(String)}.
+	 */
+	private static void writeString(DataOutputStream out, String s) throws IOException {
+		byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+	private static String readString(DataInputStream in) throws IOException {
+		byte[] bytes = new byte[in.readInt()];
+		in.readFully(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+}
@@ -0,0 +1,213 @@
+package crypto.sharding;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.DefaultParser;
+import org.apache.commons.cli.Option;
+import org.apache.commons.cli.Options;
+import org.apache.commons.cli.ParseException;
+
+import com.google.common.collect.HashMultimap;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Multimap;
+import com.google.common.collect.Sets;
+
+import crypto.reporting.CSVReporter;
+import crypto.reporting.CSVReporter.Headers;
+import crypto.reporting.CommandLineReporter;
+import crypto.sharding.ShardResult.EnsuredPredicate;
+import crypto.sharding.ShardResult.Finding;
+
+/**
+ * Combines the results of all shards of an analysis into the report of a single analysis.
+ *
+ * Usage: {@code ShardResultMerger [--reportDir <dir>] [--csvReportFile <file>] <shard results>}.
+ *
+ * A shard reports a missing required predicate if the seed ensuring it was analyzed in another shard only. Such errors
+ * are dropped if another shard ensured the predicate on the same value at the statement requiring it. In that shard,
+ * the requiring object received the predicate and was analyzed as well, so it reported the error itself if the
+ * predicate's parameters did not match.
+ */
+public class ShardResultMerger {
+
+	private final List<String> rules = Lists.newArrayList();
+	private final Set<String> seeds = Sets.newHashSet();
+	private final Set<String> timedOutSeeds = Sets.newHashSet();
+	private final Set<String> recoveredSeeds = Sets.newHashSet();
+	private final Map<String, String> skippedSeeds = Maps.newHashMap();
+	private final Set<Finding> findings = Sets.newLinkedHashSet();
+	private String softwareIdentifier = "";
+	private long callGraphMillis;
+	private long analysisMillis;
+	private int resolvedPredicateErrors;
+
+	public static void main(String... args) throws ParseException {
+		Options options = new Options();
+		options.addOption(Option.builder().longOpt("reportDir").hasArg().desc("A folder for the merged CogniCrypt report.").build());
+		options.addOption(Option.builder().longOpt("csvReportFile").hasArg().desc("Appends a summary of the merged findings to a CSV file.").build());
+		CommandLine commandLine = new DefaultParser().parse(options, args);
+		if (commandLine.getArgs().length == 0)
+			throw new ParseException("Usage: ShardResultMerger [--reportDir <dir>] [--csvReportFile <file>] <shard results>");
+		List<ShardResult> results = Lists.newArrayList();
+		for (String file : commandLine.getArgs())
+			results.add(ShardResult.read(new File(file)));
+		ShardResultMerger merger = new ShardResultMerger();
+		merger.merge(results);
+		String report = merger.createReport();
+		System.out.println(report);
+		if (commandLine.hasOption("reportDir")) {
+			File reportDir = new File(commandLine.getOptionValue("reportDir"));
+			reportDir.mkdirs();
+			try (FileWriter writer = new FileWriter(new File(reportDir, "CogniCrypt-Report.txt"))) {
+				writer.write(report);
+			} catch (IOException e) {
+				throw new RuntimeException("Could not write to file " + reportDir);
+			}
+		}
+		if (commandLine.hasOption("csvReportFile"))
+			merger.appendCSVRow(commandLine.getOptionValue("csvReportFile"));
+	}
+
+	/**
+	 * Merges the results of all shards of one analysis.
+	 */
+	void merge(List<ShardResult> results) throws ParseException {
+		checkComplete(results);
+		Multimap<EnsuredPredicate, Integer> ensuringShards = HashMultimap.create();
+		for (ShardResult result : results) {
+			for (EnsuredPredicate pred : result.ensuredPredicates)
+				ensuringShards.put(pred, result.shardIndex);
+		}
+		rules.addAll(results.get(0).rules);
+		softwareIdentifier = results.get(0).softwareIdentifier;
+		for (ShardResult result : results) {
+			seeds.addAll(result.seeds);
+			skippedSeeds.putAll(result.skippedSeeds);
+			callGraphMillis = Math.max(callGraphMillis, result.callGraphMillis);
+			analysisMillis = Math.max(analysisMillis, result.analysisMillis);
+			timedOutSeeds.addAll(result.timedOutSeeds);
+			recoveredSeeds.addAll(result.recoveredSeeds);
+			for (Finding finding : result.findings) {
+				if (finding.isMissingPredicate() && isEnsuredInOtherShard(finding, result.shardIndex, ensuringShards))
+					resolvedPredicateErrors++;
+				else
+					findings.add(finding);
+			}
+		}
+		// A seed skipped in one shard may have been analyzed in another one.
+		skippedSeeds.keySet().removeAll(seeds);
+	}
+
+	private static boolean isEnsuredInOtherShard(Finding finding, int shardIndex,
+			Multimap<EnsuredPredicate, Integer> ensuringShards) {
+		for (int shard : ensuringShards.get(new EnsuredPredicate(finding.location, finding.fact, finding.predicate))) {
+			if (shard != shardIndex)
+				return true;
+		}
+		return false;
+	}
+
+	private static void checkComplete(List<ShardResult> results) throws ParseException {
+		int shardCount = results.get(0).shardCount;
+		Set<Integer> missing = Sets.newTreeSet();
+		for (int i = 1; i <= shardCount; i++)
+			missing.add(i);
+		for (ShardResult result : results) {
+			if (result.shardCount != shardCount || !result.rules.equals(results.get(0).rules))
+				throw new ParseException("The shard results belong to different analyses");
+			if (!missing.remove(result.shardIndex))
+				throw new ParseException("The result of shard " + result.shardIndex + "/" + shardCount + " is given twice");
+		}
+		if (!missing.isEmpty())
+			throw new ParseException("Missing the results of the shards " + missing + " of " + shardCount);
+	}
+
+	/**
+	 * @return a report in the format of the {@link crypto.reporting.CommandLineReporter}.
+	 */
+	public String createReport() {
+		StringBuilder s = new StringBuilder();
+		s.append(CommandLineReporter.formatRuleset(rules));
+		Map<String, Map<String, List<Finding>>> findingsPerClass = Maps.newTreeMap();
+		for (Finding finding : findings) {
+			Map<String, List<Finding>> findingsPerMethod = findingsPerClass.get(finding.className);
+			if (findingsPerMethod == null) {
+				findingsPerMethod = Maps.newTreeMap();
+				findingsPerClass.put(finding.className, findingsPerMethod);
+			}
+			List<Finding> methodFindings = findingsPerMethod.get(finding.methodSubSignature);
+			if (methodFindings == null) {
+				methodFindings = Lists.newArrayList();
+				findingsPerMethod.put(finding.methodSubSignature, methodFindings);
+			}
+			methodFindings.add(finding);
+		}
+		for (Entry<String, Map<String, List<Finding>>> c : findingsPerClass.entrySet()) {
+			s.append(CommandLineReporter.formatClassHeader(c.getKey()));
+			for (Entry<String, List<Finding>> m : c.getValue().entrySet()) {
+				s.append(CommandLineReporter.formatMethodHeader(m.getKey()));
+				for (Finding finding : m.getValue())
+					s.append(CommandLineReporter.formatFinding(finding.errorType, finding.rule,
+							finding.object.isEmpty() ? null : finding.object, finding.message, finding.statement));
+			}
+			s.append("\n");
+		}
+		String details = "";
+		if (resolvedPredicateErrors > 0)
+			details = String.format("\tMissing predicates ensured by other shards: %s\n", resolvedPredicateErrors);
+		Map<String, Integer> skippedPerRule = Maps.newTreeMap();
+		for (Entry<String, Integer> e : countPerRule(skippedSeeds).entrySet())
+			skippedPerRule.put(e.getKey().isEmpty() ? "Objects without rule" : e.getKey(), e.getValue());
+		Map<String, Integer> errorCount = Maps.newTreeMap();
+		for (Finding finding : findings)
+			increment(errorCount, finding.errorType);
+		s.append(CommandLineReporter.formatSummary(rules.size(), seeds.size(), details, skippedPerRule, errorCount));
+		return s.toString();
+	}
+
+	/**
+	 * Appends a row in the format of the {@link CSVReporter}. The reachable and visited methods are not part of the
+	 * shard results and remain empty.
+	 */
+	public void appendCSVRow(String csvReportFile) {
+		Map<String, String> values = Maps.newHashMap();
+		values.put(Headers.SoftwareID.toString(), softwareIdentifier);
+		values.put(Headers.SeedObjectCount.toString(), Integer.toString(seeds.size()));
+		values.put(Headers.CallGraphTime_ms.toString(), Long.toString(callGraphMillis));
+		values.put(Headers.CryptoAnalysisTime_ms.toString(), Long.toString(analysisMillis));
+		values.put(Headers.PartialResult.toString(), Boolean.toString(!skippedSeeds.isEmpty()));
+		values.put(Headers.TimedOutSeeds.toString(), Integer.toString(timedOutSeeds.size()));
+		values.put(Headers.RecoveredSeeds.toString(), Integer.toString(recoveredSeeds.size()));
+		values.put(CSVReporter.SKIPPED_SEEDS + "_sum", Integer.toString(skippedSeeds.size()));
+		for (Entry<String, Integer> e : countPerRule(skippedSeeds).entrySet())
+			values.put(CSVReporter.SKIPPED_SEEDS + "_" + e.getKey(), e.getValue().toString());
+		Map<String, Integer> errorCount = Maps.newHashMap();
+		for (Finding finding : findings) {
+			increment(errorCount, finding.errorType + "_sum");
+			increment(errorCount, finding.errorType + "_" + finding.rule);
+		}
+		for (Entry<String, Integer> e : errorCount.entrySet())
+			values.put(e.getKey(), e.getValue().toString());
+		CSVReporter.appendRow(csvReportFile, CSVReporter.createHeaders(rules), values);
+	}
+
+	private static Map<String, Integer> countPerRule(Map<String, String> seedsToRules) {
+		Map<String, Integer> count = Maps.newTreeMap();
+		for (String rule : seedsToRules.values())
+			increment(count, rule);
+		return count;
+	}
+
+	private static void increment(Map<String, Integer> count, String key) {
+		Integer c = count.get(key);
+		count.put(key, c == null ? 1 : c + 1);
+	}
+}
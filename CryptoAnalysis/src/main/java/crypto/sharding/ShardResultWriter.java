@@ -0,0 +1,176 @@
+package crypto.sharding;
+
+import java.io.File;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.base.Stopwatch;
+import com.google.common.collect.Multimap;
+import com.google.common.collect.Table;
+import com.google.common.collect.Table.Cell;
+
+import boomerang.BackwardQuery;
+import boomerang.Query;
+import boomerang.jimple.Statement;
+import boomerang.jimple.Val;
+import boomerang.results.ForwardBoomerangResults;
+import crypto.analysis.AnalysisSeedWithSpecification;
+import crypto.analysis.CrySLAnalysisListener;
+import crypto.analysis.EnsuredCryptSLPredicate;
+import crypto.analysis.IAnalysisSeed;
+import crypto.analysis.SeedKeys;
+import crypto.analysis.errors.AbstractError;
+import crypto.analysis.errors.ErrorWithObjectAllocation;
+import crypto.analysis.errors.RequiredPredicateError;
+import crypto.extractparameter.CallSiteWithParamIndex;
+import crypto.extractparameter.ExtractedValue;
+import crypto.interfaces.ISLConstraint;
+import crypto.rules.CryptSLPredicate;
+import crypto.rules.CryptSLRule;
+import soot.SootMethod;
+import sync.pds.solver.nodes.Node;
+import typestate.TransitionFunction;
+
+/**
+ * Writes the {@link ShardResult} of a shard after the analysis.
+ */
+public class ShardResultWriter extends CrySLAnalysisListener {
+
+	private final File resultFile;
+	private final ShardResult result = new ShardResult();
+	private final Stopwatch analysisTime = Stopwatch.createUnstarted();
+
+	public ShardResultWriter(File resultFile, Shard shard, String softwareIdentifier, List<CryptSLRule> rules,
+			long callGraphConstructionTime) {
+		this.resultFile = resultFile;
+		result.shardIndex = shard.getIndex();
+		result.shardCount = shard.getCount();
+		result.softwareIdentifier = softwareIdentifier == null ? "" : softwareIdentifier;
+		result.callGraphMillis = callGraphConstructionTime;
+		for (CryptSLRule rule : rules)
+			result.rules.add(rule.getClassName());
+	}
+
+	@Override
+	public void beforeAnalysis() {
+		analysisTime.start();
+	}
+
+	@Override
+	public void afterAnalysis() {
+		analysisTime.stop();
+		result.analysisMillis = analysisTime.elapsed(TimeUnit.MILLISECONDS);
+		result.write(resultFile);
+		System.out.println("Wrote the result of shard " + result.shardIndex + "/" + result.shardCount + " to "
+				+ resultFile);
+	}
+
+	@Override
+	public void reportError(AbstractError error) {
+		Statement errorLocation = error.getErrorLocation();
+		SootMethod method = errorLocation.getMethod();
+		String object = "";
+		if (error instanceof ErrorWithObjectAllocation)
+			object = SeedKeys.seedKey(((ErrorWithObjectAllocation) error).getObjectLocation());
+		String location = "";
+		String predicate = "";
+		String fact = "";
+		if (error instanceof RequiredPredicateError) {
+			RequiredPredicateError predicateError = (RequiredPredicateError) error;
+			location = SeedKeys.statementKey(errorLocation);
+			predicate = predicateError.getContradictedPredicate().getPredName();
+			Val value = predicateError.getExtractedValues().getCallSite().fact();
+			fact = value == null || value.value() == null ? "" : value.value().toString();
+		}
+		result.findings.add(new ShardResult.Finding(error.getClass().getSimpleName(),
+				error.getRule() == null ? "" : error.getRule().getClassName(), method.getDeclaringClass().getName(),
+				method.getSubSignature(), object, error.toErrorMarkerString(), errorLocation.getUnit().get().toString(),
+				location, predicate, fact));
+	}
+
+	@Override
+	public void ensuredPredicates(Table<Statement, Val, Set<EnsuredCryptSLPredicate>> existingPredicates,
+			Table<Statement, IAnalysisSeed, Set<CryptSLPredicate>> expectedPredicates,
+			Table<Statement, IAnalysisSeed, Set<CryptSLPredicate>> missingPredicates) {
+		for (Cell<Statement, Val, Set<EnsuredCryptSLPredicate>> c : existingPredicates.cellSet()) {
+			if (c.getColumnKey().value() == null || !c.getRowKey().getUnit().isPresent())
+				continue;
+			String location = SeedKeys.statementKey(c.getRowKey());
+			String fact = c.getColumnKey().value().toString();
+			for (EnsuredCryptSLPredicate pred : c.getValue())
+				result.ensuredPredicates.add(
+						new ShardResult.EnsuredPredicate(location, fact, pred.getPredicate().getPredName()));
+		}
+	}
+
+	@Override
+	public void discoveredSeed(IAnalysisSeed curr) {
+		result.seeds.add(SeedKeys.seedKey(curr));
+	}
+
+	@Override
+	public void onSeedTimeout(Node<Statement, Val> seed) {
+		result.timedOutSeeds.add(SeedKeys.valueKey(seed.stmt(), seed.fact()));
+	}
+
+	@Override
+	public void onSeedRecovered(IAnalysisSeed seed, int analysisTimeoutMS) {
+		result.recoveredSeeds.add(SeedKeys.valueKey(seed.stmt(), seed.var()));
+	}
+
+	@Override
+	public void onSeedSkipped(IAnalysisSeed seed) {
+		String rule = seed instanceof AnalysisSeedWithSpecification
+				? ((AnalysisSeedWithSpecification) seed).getSpec().getRule().getClassName()
+				: "";
+		result.skippedSeeds.put(SeedKeys.seedKey(seed), rule);
+	}
+
+	@Override
+	public void beforeConstraintCheck(AnalysisSeedWithSpecification analysisSeedWithSpecification) {
+	}
+
+	@Override
+	public void afterConstraintCheck(AnalysisSeedWithSpecification analysisSeedWithSpecification) {
+	}
+
+	@Override
+	public void beforePredicateCheck(AnalysisSeedWithSpecification analysisSeedWithSpecification) {
+	}
+
+	@Override
+	public void afterPredicateCheck(AnalysisSeedWithSpecification analysisSeedWithSpecification) {
+	}
+
+	@Override
+	public void seedStarted(IAnalysisSeed analysisSeedWithSpecification) {
+	}
+
+	@Override
+	public void boomerangQueryStarted(Query seed, BackwardQuery q) {
+	}
+
+	@Override
+	public void boomerangQueryFinished(Query seed, BackwardQuery q) {
+	}
+
+	@Override
+	public void checkedConstraints(AnalysisSeedWithSpecification analysisSeedWithSpecification,
+			Collection<ISLConstraint> relConstraints) {
+	}
+
+	@Override
+	public void onSeedFinished(IAnalysisSeed seed, ForwardBoomerangResults<TransitionFunction> analysisResults) {
+	}
+
+	@Override
+	public void collectedValues(AnalysisSeedWithSpecification seed,
+			Multimap<CallSiteWithParamIndex, ExtractedValue> collectedValues) {
+	}
+
+	@Override
+	public void onSecureObjectFound(IAnalysisSeed analysisObject) {
+	}
+}
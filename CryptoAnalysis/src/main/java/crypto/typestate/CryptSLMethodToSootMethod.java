@@ -35,11 +35,11 @@ public class CryptSLMethodToSootMethod {
 	};
 	private Multimap<SootMethod, CryptSLMethod> sootMethodToDescriptor = HashMultimap.create();
 
-	public Collection<CryptSLMethod> convert(SootMethod m) {
+	public synchronized Collection<CryptSLMethod> convert(SootMethod m) {
 		return sootMethodToDescriptor.get(m);
 	}
 
-	public Collection<SootMethod> convert(CryptSLMethod label) {
+	public synchronized Collection<SootMethod> convert(CryptSLMethod label) {
 		return descriptorToSootMethod.getOrCreate(label);
 	}
 
@@ -86,7 +86,7 @@ public class CryptSLMethodToSootMethod {
 		return desc.substring(desc.lastIndexOf(".") + 1);
 	}
 
-	public Collection<SootMethod> convert(List<CryptSLMethod> list) {
+	public synchronized Collection<SootMethod> convert(List<CryptSLMethod> list) {
 		Set<SootMethod> res = Sets.newHashSet();
 		for (CryptSLMethod l : list)
 			res.addAll(convert(l));
@@ -103,13 +103,13 @@ public class CryptSLMethodToSootMethod {
 		return label.substring(0, label.lastIndexOf("."));
 	}
 
-	public static CryptSLMethodToSootMethod v() {
+	public static synchronized CryptSLMethodToSootMethod v() {
 		if (instance == null)
 			instance = new CryptSLMethodToSootMethod();
 		return instance;
 	}
 
-	public static void reset() {
+	public static synchronized void reset() {
 		instance = null;
 	}
 }
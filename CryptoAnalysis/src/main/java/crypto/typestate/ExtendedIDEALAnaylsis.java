@@ -32,14 +32,19 @@ import soot.util.queue.QueueReader;
 import sync.pds.solver.WeightFunctions;
 import typestate.TransitionFunction;
 
+/**
+ * The typestate analysis of the objects of a rule. One instance is shared by all objects of the rule and may run
+ * several of them concurrently: the transitions of the rule's state machine are built into the weight functions only
+ * once, and every run creates its own solver.
+ */
 public abstract class ExtendedIDEALAnaylsis {
 
 	private FiniteStateMachineToTypestateChangeFunction changeFunction;
-	private final IDEALAnalysis<TransitionFunction> analysis;
-	private ForwardBoomerangResults<TransitionFunction> results;
+	private final IDEALAnalysisDefinition<TransitionFunction> analysisDefinition;
+	private final ThreadLocal<ForwardQuery> runningQuery = new ThreadLocal<>();
 	
 	public ExtendedIDEALAnaylsis(){
-		analysis = new IDEALAnalysis<TransitionFunction>(new IDEALAnalysisDefinition<TransitionFunction>() {
+		analysisDefinition = new IDEALAnalysisDefinition<TransitionFunction>() {
 			@Override
 			public Collection<WeightedForwardQuery<TransitionFunction>> generate(SootMethod method, Unit stmt, Collection<SootMethod> calledMethod) {
 				return getOrCreateTypestateChangeFunction().generateSeed(method, stmt, calledMethod);
@@ -66,12 +71,12 @@ public abstract class ExtendedIDEALAnaylsis {
 			}
 			@Override
 			public BoomerangOptions boomerangOptions() {
-				return new CogniCryptBoomerangOptions();
+				return new CogniCryptBoomerangOptions(analysisTimeoutMS());
 			}
-		});
+		};
 	}
 
-	private FiniteStateMachineToTypestateChangeFunction getOrCreateTypestateChangeFunction() {
+	public synchronized FiniteStateMachineToTypestateChangeFunction getOrCreateTypestateChangeFunction() {
 		if (this.changeFunction == null)
 			this.changeFunction = new FiniteStateMachineToTypestateChangeFunction(getStateMachine());
 		return this.changeFunction;
@@ -79,21 +84,44 @@ public abstract class ExtendedIDEALAnaylsis {
 
 	public abstract SootBasedStateMachineGraph getStateMachine();
 
-	public void run(ForwardQuery query) {
+	/**
+	 * @return the results of the typestate analysis of the query, or null if its analysis timed out.
+	 */
+	public ForwardBoomerangResults<TransitionFunction> run(ForwardQuery query) {
 		CrySLResultsReporter reports = analysisListener();
+		runningQuery.set(query);
 		try {
-			results = analysis.run(query);
+			return new IDEALAnalysis<TransitionFunction>(analysisDefinition).run(query);
 		} catch (IDEALSeedTimeout e){
 //			System.err.println(e);
 //			solver = (IDEALSeedSolver<TransitionFunction>) e.getSolver();
 			if (reports != null && query instanceof IAnalysisSeed) {
 				reports.onSeedTimeout(((IAnalysisSeed)query).asNode());
 			}
+			return null;
+		} finally {
+			runningQuery.remove();
 		}
 	}
 
+	/**
+	 * @return the query the current thread is running, or null outside of {@link #run(ForwardQuery)}.
+	 */
+	protected ForwardQuery runningQuery() {
+		return runningQuery.get();
+	}
 
 	protected abstract BiDiInterproceduralCFG<Unit, SootMethod> icfg();
+
+	/**
+	 * @return the time after which the analysis of the running seed is aborted.
+	 */
+	protected int analysisTimeoutMS() {
+		ForwardQuery query = runningQuery();
+		if (query instanceof IAnalysisSeed)
+			return ((IAnalysisSeed) query).getAnalysisTimeoutMS();
+		return CogniCryptBoomerangOptions.DEFAULT_ANALYSIS_TIMEOUT_MS;
+	}
 	protected abstract Debugger<TransitionFunction> debugger(IDEALSeedSolver<TransitionFunction> solver);
 
 	public void log(String string) {
@@ -123,30 +151,30 @@ public abstract class ExtendedIDEALAnaylsis {
         if (!method.hasActiveBody())
             return seeds;
         for (Unit u : method.getActiveBody().getUnits()) {
-            Collection<SootMethod> calledMethods = (icfg().isCallStmt(u) ? icfg().getCalleesOfCallAt(u)
-                    : new HashSet<SootMethod>());
-            seeds.addAll( getOrCreateTypestateChangeFunction().generateSeed(method, u, calledMethods));
+            seeds.addAll(computeSeeds(method, u));
         }
         return seeds;
     }
 
+    public Collection<WeightedForwardQuery<TransitionFunction>> computeSeeds(SootMethod method, Unit u) {
+        Collection<SootMethod> calledMethods = (icfg().isCallStmt(u) ? icfg().getCalleesOfCallAt(u)
+                : new HashSet<SootMethod>());
+        return getOrCreateTypestateChangeFunction().generateSeed(method, u, calledMethods);
+    }
+
 
 	public Map<WeightedForwardQuery<TransitionFunction>, ForwardBoomerangResults<TransitionFunction>> run() {
 		Map<WeightedForwardQuery<TransitionFunction>, ForwardBoomerangResults<TransitionFunction>> seedToSolver = Maps.newHashMap();
 		for (Query s : computeInitialSeeds()) {
 			if(s instanceof WeightedForwardQuery){
 				WeightedForwardQuery<TransitionFunction> seed = (WeightedForwardQuery<TransitionFunction>) s;
-				run((WeightedForwardQuery<TransitionFunction>)seed);
-				if(getResults() != null){
-					seedToSolver.put(seed, getResults());
+				ForwardBoomerangResults<TransitionFunction> results = run(seed);
+				if(results != null){
+					seedToSolver.put(seed, results);
 				}
 			}
 		}
 		return seedToSolver;
 	}
 
-	public ForwardBoomerangResults<TransitionFunction> getResults() {
-		return results;
-	}
-
-}
\ No newline at end of file
+}
@@ -9,6 +9,7 @@ import com.google.common.collect.Sets;
 import boomerang.WeightedForwardQuery;
 import boomerang.jimple.AllocVal;
 import boomerang.jimple.Statement;
+import boomerang.jimple.Val;
 import crypto.analysis.CryptoScanner;
 import soot.RefType;
 import soot.SootMethod;
@@ -18,6 +19,7 @@ import soot.jimple.InstanceInvokeExpr;
 import soot.jimple.InvokeExpr;
 import soot.jimple.NewExpr;
 import soot.jimple.Stmt;
+import sync.pds.solver.nodes.Node;
 import typestate.TransitionFunction;
 import typestate.finiteautomata.MatcherTransition;
 import typestate.finiteautomata.State;
@@ -54,6 +56,25 @@ public class FiniteStateMachineToTypestateChangeFunction extends TypeStateMachin
 	}
 
 
+	/**
+	 * @return the type whose allocations are seeds, or null if the seeds are not created by a constructor.
+	 */
+	public RefType getAnalyzedType() {
+		return fsm.seedIsConstructor() ? analyzedType : null;
+	}
+
+	/**
+	 * @return the methods whose calls create a seed other than by a constructor.
+	 */
+	public Collection<SootMethod> getSeedingMethods() {
+		Set<SootMethod> seedingMethods = Sets.newHashSet();
+		for (SootMethod m : fsm.initialTransitonLabel()) {
+			if (!m.isConstructor())
+				seedingMethods.add(m);
+		}
+		return seedingMethods;
+	}
+
 	@Override
 	public Collection<WeightedForwardQuery<TransitionFunction>> generateSeed(SootMethod method, Unit unit, Collection<SootMethod> optional) {
 		Set<WeightedForwardQuery<TransitionFunction>> out = new HashSet<>();
@@ -95,6 +116,18 @@ public class FiniteStateMachineToTypestateChangeFunction extends TypeStateMachin
 	}
 
 
+	/**
+	 * Looks up the transitions matching the called method in the {@link TransitionTable} of the state machine
+	 * instead of scanning all transitions.
+	 */
+	@Override
+	public TransitionFunction callToReturn(Node<Statement, Val> curr, Node<Statement, Val> succ, InvokeExpr invokeExpr) {
+		if (!(invokeExpr instanceof InstanceInvokeExpr)
+				|| !((InstanceInvokeExpr) invokeExpr).getBase().equals(succ.fact().value()))
+			return getOne();
+		return fsm.getTransitionTable().getWeight(invokeExpr.getMethod(), succ.stmt());
+	}
+
 	@Override
 	protected State initialState() {
 		throw new RuntimeException("Should never be called!");
@@ -1,21 +1,49 @@
 package crypto.typestate;
 
+import java.util.AbstractMap.SimpleEntry;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map.Entry;
+
+import com.google.common.collect.LinkedHashMultimap;
+import com.google.common.collect.Multimap;
 
 import crypto.rules.CryptSLMethod;
+import soot.SootMethod;
 import typestate.finiteautomata.MatcherTransition;
 import typestate.finiteautomata.State;
 
 public class LabeledMatcherTransition extends MatcherTransition {
 
 	private final List<CryptSLMethod> label;
+	private final Multimap<SootMethod, Entry<String, Integer>> parameterQueries = LinkedHashMultimap.create();
 
 	public LabeledMatcherTransition(State from, List<CryptSLMethod> label, Parameter param, State to, Type type) {
 		super(from, CryptSLMethodToSootMethod.v().convert(label), param, to, type);
 		this.label = label;
+		for (CryptSLMethod descriptor : label) {
+			for (SootMethod method : CryptSLMethodToSootMethod.v().convert(descriptor)) {
+				int index = 0;
+				for (Entry<String, String> parameter : descriptor.getParameters()) {
+					if (!parameter.getKey().equals("_")
+							&& method.getParameterType(index).toString().equals(parameter.getValue())) {
+						parameterQueries.put(method, new SimpleEntry<String, Integer>(parameter.getKey(), index));
+					}
+					index++;
+				}
+			}
+		}
 	}
 	
 	public List<CryptSLMethod> label(){
 		return label;
 	}
+
+	/**
+	 * @return the variable names of the rule and the indices of the parameters of a call to the method whose values
+	 *         are extracted. The parameter types are compared to the rule once per transition instead of at every call.
+	 */
+	public Collection<Entry<String, Integer>> getParameterQueries(SootMethod method) {
+		return parameterQueries.get(method);
+	}
 }
@@ -26,6 +26,8 @@ import typestate.finiteautomata.State;
 public class SootBasedStateMachineGraph {
 
 	private Set<MatcherTransition> transition = new HashSet<>();
+	private Multimap<SootMethod, MatcherTransition> transitionsByMethod = HashMultimap.create();
+	private final TransitionTable transitionTable;
 	private final WrappedState initialState;
 	private Collection<SootMethod> edgeLabelMethods = Sets.newHashSet();
 	
@@ -45,8 +47,9 @@ public class SootBasedStateMachineGraph {
 			WrappedState to = wrappedState(t.to());
 			LabeledMatcherTransition trans = new LabeledMatcherTransition(from, t.getLabel(),
 					Parameter.This, to, Type.OnCallToReturn);
-			this.addTransition(trans);
-			outTransitions.putAll(from, convert(t.getLabel()));
+			Collection<SootMethod> label = convert(t.getLabel());
+			this.addTransition(trans, label);
+			outTransitions.putAll(from, label);
 			if(stateMachineGraph.getInitialTransition().equals(t))
 				this.initialTransiton = trans;
 		}
@@ -60,7 +63,7 @@ public class SootBasedStateMachineGraph {
 			}
 		}
 		if(!label.isEmpty()){
-			this.addTransition(new MatcherTransition(initialState, label, Parameter.This, initialState, Type.OnCallToReturn));
+			this.addTransition(new MatcherTransition(initialState, label, Parameter.This, initialState, Type.OnCallToReturn), label);
 			this.outTransitions.putAll(initialState, label);
 			seedIsConstructor = true;
 		}
@@ -71,9 +74,10 @@ public class SootBasedStateMachineGraph {
 			Collection<SootMethod> expected =  this.outTransitions.get(wrapped);
 			if(expected != null){
 				remaining.removeAll(expected);
-				this.addTransition(new MatcherTransition(wrapped, remaining, Parameter.This, new ErrorStateNode(expected), Type.OnCallToReturn));
+				this.addTransition(new MatcherTransition(wrapped, remaining, Parameter.This, new ErrorStateNode(expected), Type.OnCallToReturn), remaining);
 			}
 		}
+		this.transitionTable = new TransitionTable(transitionsByMethod);
 	}
 
 	
@@ -87,8 +91,17 @@ public class SootBasedStateMachineGraph {
 	public Collection<SootMethod> getEdgesOutOf(State n){
 		return outTransitions.get(n);
 	}
-	public void addTransition(MatcherTransition trans) {
+	private void addTransition(MatcherTransition trans, Collection<SootMethod> methods) {
 		transition.add(trans);
+		for (SootMethod m : methods)
+			transitionsByMethod.put(m, trans);
+	}
+
+	/**
+	 * @return the transitions of this state machine indexed by the called method, and then by the source state.
+	 */
+	public TransitionTable getTransitionTable() {
+		return transitionTable;
 	}
 
 	private Collection<SootMethod> convert(List<CryptSLMethod> label) {
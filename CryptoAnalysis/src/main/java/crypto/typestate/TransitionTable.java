@@ -0,0 +1,113 @@
+package crypto.typestate;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Multimap;
+import com.google.common.collect.Sets;
+
+import boomerang.jimple.Statement;
+import soot.SootMethod;
+import typestate.TransitionFunction;
+import typestate.finiteautomata.ITransition;
+import typestate.finiteautomata.MatcherTransition;
+import typestate.finiteautomata.State;
+
+/**
+ * The transitions of a state machine compiled into tables indexed by the called method. Matching a call otherwise
+ * scans all transitions of the state machine, including the error transitions of every state, whose labels contain
+ * almost all methods of the rule.
+ *
+ * The source states of the transitions are numbered densely, so the transition of a call in a state is looked up in an
+ * array per method. The weight of a call does not depend on the state the object is in, it holds the transitions of
+ * the method from all states, and is computed once per statement.
+ */
+public class TransitionTable {
+
+	private final Map<State, Integer> stateIds = Maps.newHashMap();
+	private final List<State> states = Lists.newArrayList();
+	private final Map<SootMethod, Set<ITransition>> transitionsByMethod = Maps.newHashMap();
+	private final Map<SootMethod, MatcherTransition[]> transitionsByMethodAndState = Maps.newHashMap();
+	private final ConcurrentMap<Statement, TransitionFunction> weights = Maps.newConcurrentMap();
+
+	public TransitionTable(Multimap<SootMethod, ? extends MatcherTransition> transitions) {
+		for (MatcherTransition t : transitions.values()) {
+			if (!stateIds.containsKey(t.from())) {
+				stateIds.put(t.from(), states.size());
+				states.add(t.from());
+			}
+		}
+		for (SootMethod m : transitions.keySet()) {
+			Set<ITransition> matching = Sets.newHashSet();
+			MatcherTransition[] byState = new MatcherTransition[states.size()];
+			for (MatcherTransition t : transitions.get(m)) {
+				matching.add(t);
+				byState[stateIds.get(t.from())] = t;
+			}
+			transitionsByMethod.put(m, Collections.unmodifiableSet(matching));
+			transitionsByMethodAndState.put(m, byState);
+		}
+	}
+
+	/**
+	 * @return the transitions whose label contains the method, from any state.
+	 */
+	public Set<ITransition> getTransitions(SootMethod method) {
+		Set<ITransition> transitions = transitionsByMethod.get(method);
+		return transitions != null ? transitions : Collections.<ITransition>emptySet();
+	}
+
+	/**
+	 * @return the transition taken by a call to the method in the state, or null if no transition matches.
+	 */
+	public MatcherTransition getTransition(SootMethod method, State from) {
+		MatcherTransition[] byState = transitionsByMethodAndState.get(method);
+		Integer id = stateIds.get(from);
+		if (byState == null || id == null)
+			return null;
+		return byState[id];
+	}
+
+	/**
+	 * @return the state reached by a call to the method in the state, or null if no transition matches.
+	 */
+	public State getTarget(SootMethod method, State from) {
+		MatcherTransition t = getTransition(method, from);
+		return t != null ? t.to() : null;
+	}
+
+	/**
+	 * @return the number of the state, or -1 if no transition starts in the state.
+	 */
+	public int getStateId(State state) {
+		Integer id = stateIds.get(state);
+		return id != null ? id : -1;
+	}
+
+	public int getStateCount() {
+		return states.size();
+	}
+
+	/**
+	 * @return the weight of a call to the method at the statement, or {@link TransitionFunction#one()} if no transition
+	 *         matches the method.
+	 */
+	public TransitionFunction getWeight(SootMethod method, Statement stmt) {
+		Set<ITransition> transitions = transitionsByMethod.get(method);
+		if (transitions == null)
+			return TransitionFunction.one();
+		TransitionFunction weight = weights.get(stmt);
+		if (weight == null) {
+			weight = new TransitionFunction(transitions, Collections.singleton(stmt));
+			TransitionFunction previous = weights.putIfAbsent(stmt, weight);
+			if (previous != null)
+				weight = previous;
+		}
+		return weight;
+	}
+}
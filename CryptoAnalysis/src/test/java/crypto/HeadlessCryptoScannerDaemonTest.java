@@ -0,0 +1,82 @@
+package crypto;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.commons.cli.ParseException;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class HeadlessCryptoScannerDaemonTest {
+
+	@Test
+	public void parsesArguments() {
+		Assert.assertEquals(Arrays.asList("--rulesDir", "rules", "--applicationCp", "app.jar"),
+				HeadlessCryptoScannerDaemon
+						.parseArguments("[\"--rulesDir\", \"rules\", \"--applicationCp\", \"app.jar\"]"));
+		Assert.assertEquals(Arrays.asList("a", ""), HeadlessCryptoScannerDaemon.parseArguments(" [ \"a\" ,\"\" ] "));
+	}
+
+	@Test
+	public void parsesEmptyArray() {
+		Assert.assertEquals(Collections.emptyList(), HeadlessCryptoScannerDaemon.parseArguments("[]"));
+		Assert.assertEquals(Collections.emptyList(), HeadlessCryptoScannerDaemon.parseArguments(" [ \t] "));
+	}
+
+	@Test
+	public void parsesEscapes() {
+		Assert.assertEquals(Arrays.asList("C:\\app \"1\"/x", "a\nb\tc\rd\be\ff"),
+				HeadlessCryptoScannerDaemon.parseArguments("[\"C:\\\\app \\\"1\\\"\\/x\", \"a\\nb\\tc\\rd\\be\\ff\"]"));
+	}
+
+	@Test
+	public void parsesUnicodeEscapes() {
+		Assert.assertEquals(Arrays.asList("\u00e4/\u20ac", "A"),
+				HeadlessCryptoScannerDaemon.parseArguments("[\"\\u00E4/\\u20ac\", \"\\u0041\"]"));
+	}
+
+	@Test
+	public void rejectsMalformedArguments() {
+		List<String> malformed = Arrays.asList("", "\"a\"", "[", "[\"a\"", "[\"a", "[\"a\",]", "[\"a\" \"b\"]",
+				"[1]", "[\"a\"] x", "[\"\\u00\"]", "[\"\\u00g1\"]", "[\"\\u-001\"]", "[\"a\\");
+		for (String json : malformed) {
+			try {
+				HeadlessCryptoScannerDaemon.parseArguments(json);
+				Assert.fail("Accepted " + json);
+			} catch (IllegalArgumentException e) {
+				Assert.assertNotNull(e.getMessage());
+			}
+		}
+	}
+
+	@Test
+	public void reportsFailedScansAndContinues() {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		HeadlessCryptoScannerDaemon daemon = new HeadlessCryptoScannerDaemon(new PrintStream(out, true)) {
+			@Override
+			protected void scan(List<String> args) throws ParseException {
+				if (args.contains("overflow"))
+					throw new StackOverflowError();
+				if (args.contains("unknown"))
+					throw new ParseException("Unrecognized option: unknown");
+			}
+		};
+		daemon.handle("[\"overflow\"]");
+		daemon.handle("[\"unknown\"]");
+		daemon.handle("not json");
+		daemon.handle("[]");
+
+		String[] responses = new String(out.toByteArray(), StandardCharsets.UTF_8).split("\\r?\\n");
+		Assert.assertEquals(4, responses.length);
+		Assert.assertTrue(responses[0],
+				responses[0].startsWith("{\"request\": 1, \"status\": \"error\", \"message\": \"java.lang.StackOverflowError\""));
+		Assert.assertTrue(responses[1],
+				responses[1].startsWith("{\"request\": 2, \"status\": \"error\", \"message\": \"Unrecognized option: unknown\""));
+		Assert.assertTrue(responses[2], responses[2].startsWith("{\"request\": 3, \"status\": \"error\""));
+		Assert.assertTrue(responses[3], responses[3].startsWith("{\"request\": 4, \"status\": \"ok\""));
+	}
+}
@@ -0,0 +1,61 @@
+package crypto.analysis;
+
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.google.common.collect.ConcurrentHashMultiset;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Multiset;
+
+import soot.SootMethod;
+import soot.Type;
+import soot.VoidType;
+
+/**
+ * Visits more methods than a single task covers, sequentially and with several threads.
+ */
+public class ReachableMethodVisitorTest {
+
+	private final List<SootMethod> methods = Lists.newArrayList();
+
+	public ReachableMethodVisitorTest() {
+		for (int i = 0; i < 1000; i++) {
+			methods.add(new SootMethod("m" + i, Collections.<Type>emptyList(), VoidType.v()));
+		}
+	}
+
+	@Test
+	public void parallelResultsEqualSequentialResults() {
+		ReachableMethodVisitor<String> visitor = new ReachableMethodVisitor<String>() {
+			@Override
+			protected String visit(SootMethod method) {
+				// Methods without a result are skipped.
+				return method.getName().endsWith("3") ? null : method.getName();
+			}
+		};
+		List<String> sequential = visitor.visit(methods, 1);
+		Assert.assertEquals(900, sequential.size());
+		Assert.assertEquals("m0", sequential.get(0));
+		Assert.assertEquals("m999", sequential.get(sequential.size() - 1));
+		for (int threads = 2; threads <= 8; threads *= 2) {
+			Assert.assertEquals(sequential, visitor.visit(methods, threads));
+		}
+	}
+
+	@Test
+	public void parallelVisitsEveryMethodOnce() {
+		final Multiset<SootMethod> visited = ConcurrentHashMultiset.create();
+		new ReachableMethodVisitor<Void>() {
+			@Override
+			protected Void visit(SootMethod method) {
+				visited.add(method);
+				return null;
+			}
+		}.visit(methods, 4);
+		Assert.assertEquals(methods.size(), visited.size());
+		Assert.assertEquals(methods.size(), visited.elementSet().size());
+	}
+}
@@ -0,0 +1,94 @@
+package crypto.incremental;
+
+import java.io.File;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+import boomerang.jimple.Statement;
+import boomerang.jimple.Val;
+import crypto.HeadlessCryptoScanner;
+import crypto.analysis.CrySLAnalysisListener;
+import crypto.analysis.IAnalysisSeed;
+import crypto.analysis.SeedKeys;
+import crypto.analysis.errors.AbstractError;
+import crypto.incremental.FindingCodec.UnsupportedFindingException;
+import crypto.reporting.ErrorMarkerListener;
+import crypto.rules.CryptSLRule;
+import sync.pds.solver.nodes.Node;
+import test.IDEALCrossingTestingFramework;
+
+/**
+ * Encodes the seeds and errors of an analysis of the demo examples and decodes them again in the same Scene.
+ */
+public class FindingCodecTest {
+
+	@Test
+	public void roundTrip() throws UnsupportedFindingException {
+		final String sootClassPath = new File("../CryptoAnalysisTargets/CogniCryptDemoExample/bin").getAbsolutePath();
+		final List<CryptSLRule> rules = Lists.newArrayList();
+		final List<IAnalysisSeed> seeds = Lists.newArrayList();
+		final List<AbstractError> errors = Lists.newArrayList();
+		HeadlessCryptoScanner scanner = new HeadlessCryptoScanner() {
+			@Override
+			protected String getRulesDirectory() {
+				return new File(IDEALCrossingTestingFramework.RESOURCE_PATH).getAbsolutePath();
+			}
+
+			@Override
+			protected String sootClassPath() {
+				return sootClassPath;
+			}
+
+			@Override
+			protected String applicationClassPath() {
+				return sootClassPath;
+			}
+
+			@Override
+			protected List<CryptSLRule> getRules() {
+				List<CryptSLRule> read = super.getRules();
+				rules.clear();
+				rules.addAll(read);
+				return read;
+			}
+
+			@Override
+			protected CrySLAnalysisListener getAdditionalListener() {
+				return new ErrorMarkerListener() {
+					@Override
+					public void discoveredSeed(IAnalysisSeed seed) {
+						seeds.add(seed);
+					}
+
+					@Override
+					public void reportError(AbstractError error) {
+						errors.add(error);
+					}
+				};
+			}
+		};
+		scanner.exec();
+
+		FindingCodec codec = new FindingCodec(rules);
+		Map<String, IAnalysisSeed> seedsByKey = Maps.newHashMap();
+		for (IAnalysisSeed seed : seeds) {
+			seedsByKey.put(SeedKeys.seedKey(seed), seed);
+			Assert.assertEquals(new Node<Statement, Val>(seed.stmt(), seed.var()),
+					codec.decodeSeed(codec.encodeSeed(seed)));
+		}
+		Assert.assertFalse(errors.isEmpty());
+		for (AbstractError error : errors) {
+			AbstractError decoded = codec.decodeError(codec.encodeError(error), seedsByKey);
+			Assert.assertEquals(error.getClass(), decoded.getClass());
+			Assert.assertEquals(error.getErrorLocation(), decoded.getErrorLocation());
+			Assert.assertEquals(error.getRule(), decoded.getRule());
+			Assert.assertEquals(error.toErrorMarkerString(), decoded.toErrorMarkerString());
+		}
+	}
+}
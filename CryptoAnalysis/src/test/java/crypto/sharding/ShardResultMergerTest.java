@@ -0,0 +1,138 @@
+package crypto.sharding;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.cli.ParseException;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.google.common.collect.Maps;
+
+import crypto.reporting.CSVReporter.Headers;
+import crypto.sharding.ShardResult.EnsuredPredicate;
+import crypto.sharding.ShardResult.Finding;
+
+public class ShardResultMergerTest {
+
+	private static final String CIPHER = "javax.crypto.Cipher";
+	private static final String LOCATION = "<Main: void main(java.lang.String[])>:4";
+
+	@Rule
+	public TemporaryFolder tmp = new TemporaryFolder();
+
+	@Test
+	public void countsSeedsOfSeveralShardsOnce() throws ParseException, IOException {
+		ShardResult first = shard(1, 2);
+		first.seeds.addAll(Arrays.asList("a", "b"));
+		first.timedOutSeeds.add("b");
+		first.recoveredSeeds.add("b");
+		first.skippedSeeds.put("c", CIPHER);
+		ShardResult second = shard(2, 2);
+		// Seed b was created while analyzing seeds of both shards.
+		second.seeds.addAll(Arrays.asList("b", "c"));
+		second.timedOutSeeds.add("b");
+		second.recoveredSeeds.add("b");
+		second.skippedSeeds.put("d", CIPHER);
+
+		ShardResultMerger merger = new ShardResultMerger();
+		merger.merge(Arrays.asList(first, second));
+
+		Map<String, String> row = csvRow(merger);
+		Assert.assertEquals("3", row.get(Headers.SeedObjectCount.toString()));
+		Assert.assertEquals("1", row.get(Headers.TimedOutSeeds.toString()));
+		Assert.assertEquals("1", row.get(Headers.RecoveredSeeds.toString()));
+		// Seed c was skipped in the first shard, but analyzed in the second one.
+		Assert.assertEquals("true", row.get(Headers.PartialResult.toString()));
+		Assert.assertTrue(merger.createReport().contains("The analysis time expired before 1 objects were analyzed"));
+	}
+
+	@Test
+	public void dropsPredicatesEnsuredInOtherShard() throws ParseException {
+		ShardResult first = shard(1, 2);
+		first.findings.add(missingPredicate("randomized"));
+		first.findings.add(missingPredicate("generatedKey"));
+		ShardResult second = shard(2, 2);
+		second.ensuredPredicates.add(new EnsuredPredicate(LOCATION, "r1", "randomized"));
+
+		ShardResultMerger merger = new ShardResultMerger();
+		merger.merge(Arrays.asList(first, second));
+
+		String report = merger.createReport();
+		Assert.assertTrue(report.contains("Missing predicates ensured by other shards: 1"));
+		Assert.assertTrue(report.contains("RequiredPredicateError: 1"));
+		Assert.assertTrue(report.contains("generatedKey"));
+	}
+
+	@Test
+	public void keepsPredicatesEnsuredInSameShard() throws ParseException {
+		// The shard analyzed both objects, so the error was reported although the predicate was ensured.
+		ShardResult first = shard(1, 2);
+		first.findings.add(missingPredicate("randomized"));
+		first.ensuredPredicates.add(new EnsuredPredicate(LOCATION, "r1", "randomized"));
+
+		ShardResultMerger merger = new ShardResultMerger();
+		merger.merge(Arrays.asList(first, shard(2, 2)));
+
+		String report = merger.createReport();
+		Assert.assertFalse(report.contains("Missing predicates ensured by other shards"));
+		Assert.assertTrue(report.contains("RequiredPredicateError: 1"));
+	}
+
+	@Test(expected = ParseException.class)
+	public void rejectsMissingShard() throws ParseException {
+		new ShardResultMerger().merge(Arrays.asList(shard(1, 3), shard(3, 3)));
+	}
+
+	@Test(expected = ParseException.class)
+	public void rejectsShardGivenTwice() throws ParseException {
+		new ShardResultMerger().merge(Arrays.asList(shard(1, 2), shard(1, 2), shard(2, 2)));
+	}
+
+	@Test(expected = ParseException.class)
+	public void rejectsShardsOfDifferentRules() throws ParseException {
+		ShardResult second = shard(2, 2);
+		second.rules.add("javax.crypto.KeyGenerator");
+		new ShardResultMerger().merge(Arrays.asList(shard(1, 2), second));
+	}
+
+	@Test(expected = ParseException.class)
+	public void rejectsShardsOfDifferentCounts() throws ParseException {
+		new ShardResultMerger().merge(Arrays.asList(shard(1, 2), shard(2, 3)));
+	}
+
+	private static ShardResult shard(int index, int count) {
+		ShardResult result = new ShardResult();
+		result.shardIndex = index;
+		result.shardCount = count;
+		result.rules.add(CIPHER);
+		return result;
+	}
+
+	private static Finding missingPredicate(String predicate) {
+		return new Finding("RequiredPredicateError", CIPHER, "Main", "void main(java.lang.String[])", "",
+				"Third parameter was not properly " + predicate,
+				"virtualinvoke r0.<javax.crypto.Cipher: void init(int,java.security.Key,java.security.SecureRandom)>(1, r2, r1)",
+				LOCATION, predicate, "r1");
+	}
+
+	private Map<String, String> csvRow(ShardResultMerger merger) throws IOException {
+		File csv = new File(tmp.getRoot(), "report.csv");
+		merger.appendCSVRow(csv.getAbsolutePath());
+		List<String> lines = Files.readAllLines(csv.toPath(), StandardCharsets.UTF_8);
+		Assert.assertEquals(2, lines.size());
+		String[] headers = lines.get(0).split(";", -1);
+		String[] values = lines.get(1).split(";", -1);
+		Map<String, String> row = Maps.newHashMap();
+		for (int i = 0; i < headers.length; i++)
+			row.put(headers[i], values[i]);
+		return row;
+	}
+}
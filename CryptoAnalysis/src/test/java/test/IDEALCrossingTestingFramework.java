@@ -72,7 +72,9 @@ public abstract class IDEALCrossingTestingFramework extends AbstractTestingFrame
 	}
 
 	protected CryptSLRule getRule() {
-		return CryptSLRuleReader.readFromFile(new File(RESOURCE_PATH + getCryptSLFile()));
+		CryptSLRule rule = CryptSLRuleReader.readFromFile(new File(RESOURCE_PATH + getCryptSLFile()));
+		rule.minimizeUsagePattern();
+		return rule;
 	}
 
 	@Override
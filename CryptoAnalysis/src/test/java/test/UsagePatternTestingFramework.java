@@ -363,7 +363,9 @@ public abstract class UsagePatternTestingFramework extends AbstractTestingFramew
 		File[] listFiles = new File(IDEALCrossingTestingFramework.RESOURCE_PATH).listFiles();
 		for (File file : listFiles) {
 			if (file.getName().endsWith(".cryptslbin")) {
-				rules.add(CryptSLRuleReader.readFromFile(file));
+				CryptSLRule rule = CryptSLRuleReader.readFromFile(file);
+				rule.minimizeUsagePattern();
+				rules.add(rule);
 			}
 		}
 		return rules;
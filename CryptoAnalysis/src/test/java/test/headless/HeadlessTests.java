@@ -1,13 +1,31 @@
 package test.headless;
 
 import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Duration;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.List;
 import java.util.Set;
 
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+
+import org.junit.Assert;
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
 import com.google.common.collect.HashBasedTable;
+import com.google.common.collect.Lists;
 import com.google.common.collect.Multimap;
 import com.google.common.collect.Table;
 import com.google.common.collect.Table.Cell;
@@ -29,6 +47,7 @@ import crypto.analysis.errors.IncompleteOperationError;
 import crypto.analysis.errors.NeverTypeOfError;
 import crypto.analysis.errors.RequiredPredicateError;
 import crypto.analysis.errors.TypestateError;
+import crypto.boomerang.CogniCryptBoomerangOptions;
 import crypto.extractparameter.CallSiteWithParamIndex;
 import crypto.extractparameter.ExtractedValue;
 import crypto.interfaces.ISLConstraint;
@@ -42,26 +61,129 @@ public class HeadlessTests {
 	private static boolean VISUALIZATION = false;
 	private CrySLAnalysisListener errorCountingAnalysisListener;
 	private Table<String, Class<?>, Integer> errorMarkerCountPerErrorTypeAndMethod = HashBasedTable.create();
+	private List<IAnalysisSeed> finishedSeeds = Lists.newArrayList();
+	private String incrementalStateFile;
+	private boolean preAnalysis;
+	private Duration maxAnalysisTime;
+	private List<IAnalysisSeed> skippedSeeds = Lists.newArrayList();
+	private int seedTimeoutMS = CogniCryptBoomerangOptions.DEFAULT_ANALYSIS_TIMEOUT_MS;
+	private int timeoutRetries;
+	private List<IAnalysisSeed> recoveredSeeds = Lists.newArrayList();
+	private int analysisThreads = 1;
+	private String changedMethodsFile;
+
+	@Rule
+	public TemporaryFolder tmp = new TemporaryFolder();
 
 	@Test
 	public void cogniCryptDemoExamples() {
 		String sootClassPath = new File("../CryptoAnalysisTargets/CogniCryptDemoExample/bin").getAbsolutePath();
 		HeadlessCryptoScanner scanner = createAnalysisFor(sootClassPath, sootClassPath);
 
-		setErrorsCount("<example.ConstraintErrorExample: void main(java.lang.String[])>", ConstraintError.class, 1);
+		expectDemoErrors();
 
-		setErrorsCount("<example.PredicateMissingExample: void main(java.lang.String[])>", RequiredPredicateError.class, 1);
-		setErrorsCount("<example.PredicateMissingExample: void main(java.lang.String[])>", ConstraintError.class, 1);
+		scanner.exec();
+		assertErrors();
+	}
 
+	@Test
+	public void incrementalScanOfUnchangedProgram() {
+		String sootClassPath = new File("../CryptoAnalysisTargets/CogniCryptDemoExample/bin").getAbsolutePath();
+		incrementalStateFile = new File(tmp.getRoot(), "incremental.bin").getAbsolutePath();
 
-		setErrorsCount("<example.TypestateErrorExample: void main(java.lang.String[])>", TypestateError.class, 1);
+		expectDemoErrors();
+		createAnalysisFor(sootClassPath, sootClassPath).exec();
+		assertErrors();
+		int analyzedSeeds = finishedSeeds.size();
 
-		setErrorsCount("<example.IncompleOperationErrorExample: void main(java.lang.String[])>", IncompleteOperationError.class, 2);
+		errorMarkerCountPerErrorTypeAndMethod.clear();
+		finishedSeeds.clear();
+		expectDemoErrors();
+		createAnalysisFor(sootClassPath, sootClassPath).exec();
+		assertErrors();
+		Assert.assertTrue("The second scan analyzed " + finishedSeeds.size() + " of " + analyzedSeeds + " seeds again",
+				finishedSeeds.size() < analyzedSeeds);
+	}
+
+	@Test
+	public void incrementalScanOfChangedMethod() throws IOException {
+		File demo = new File("../CryptoAnalysisTargets/CogniCryptDemoExample/bin");
+		File bin = tmp.newFolder("bin");
+		copyDirectory(demo.toPath(), bin.toPath());
+		String sootClassPath = bin.getAbsolutePath();
+		incrementalStateFile = new File(tmp.getRoot(), "incremental.bin").getAbsolutePath();
+		String changedMethod = "<example.ConstraintErrorExample: void main(java.lang.String[])>";
+
+		expectDemoErrors();
+		createAnalysisFor(sootClassPath, sootClassPath).exec();
+		assertErrors();
+
+		// The same class with a transformation that satisfies the constraints of the Cipher rule.
+		File source = new File(tmp.newFolder("src"), "ConstraintErrorExample.java");
+		Files.write(source.toPath(), Arrays.asList("package example;", "public class ConstraintErrorExample {",
+				"	public static void main(String... args) throws Exception {",
+				"		javax.crypto.Cipher instance = javax.crypto.Cipher.getInstance(\"AES/CBC/PKCS5Padding\");", "	}",
+				"}"), StandardCharsets.UTF_8);
+		JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+		Assert.assertEquals(0, compiler.run(null, null, null, "-source", "1.8", "-target", "1.8", "-d",
+				bin.getAbsolutePath(), source.getAbsolutePath()));
+
+		errorMarkerCountPerErrorTypeAndMethod.clear();
+		finishedSeeds.clear();
+		expectDemoErrors();
+		errorMarkerCountPerErrorTypeAndMethod.put(changedMethod, ConstraintError.class, 0);
+		createAnalysisFor(sootClassPath, sootClassPath).exec();
+		assertErrors();
+		boolean reanalyzed = false;
+		for (IAnalysisSeed seed : finishedSeeds) {
+			if (seed.getMethod().getSignature().equals(changedMethod))
+				reanalyzed = true;
+		}
+		Assert.assertTrue("The seeds of the changed method were not analyzed again", reanalyzed);
+	}
+
+	@Test
+	public void changeImpactSkipsUnaffectedMethods() throws IOException {
+		String sootClassPath = new File("../CryptoAnalysisTargets/CogniCryptDemoExample/bin").getAbsolutePath();
+		String changedMethod = "<example.ConstraintErrorExample: void main(java.lang.String[])>";
+		File changedMethods = tmp.newFile("changed.txt");
+		Files.write(changedMethods.toPath(), Arrays.asList("# Changed by the test", changedMethod),
+				StandardCharsets.UTF_8);
+		changedMethodsFile = changedMethods.getAbsolutePath();
+
+		// The other examples neither call nor are called by the changed method, so their errors are not reported.
+		setErrorsCount(changedMethod, ConstraintError.class, 1);
+		createAnalysisFor(sootClassPath, sootClassPath).exec();
+		assertErrors();
+		Assert.assertFalse(finishedSeeds.isEmpty());
+		for (IAnalysisSeed seed : finishedSeeds)
+			Assert.assertEquals(changedMethod, seed.getMethod().getSignature());
+	}
+
+	@Test
+	public void expiredAnalysisTimeSkipsSeeds() {
+		String sootClassPath = new File("../CryptoAnalysisTargets/CogniCryptDemoExample/bin").getAbsolutePath();
+		// The budget includes the call graph construction, so it expires before any seed is analyzed.
+		maxAnalysisTime = Duration.ofMillis(1);
+		createAnalysisFor(sootClassPath, sootClassPath).exec();
+
+		Assert.assertFalse(skippedSeeds.isEmpty());
+		Assert.assertTrue(finishedSeeds.isEmpty());
+	}
+
+	@Test
+	public void retriedSeedsRecover() {
+		String sootClassPath = new File("../CryptoAnalysisTargets/CogniCryptDemoExample/bin").getAbsolutePath();
+		// Seeds time out at first and succeed once the timeout escalated to 1 * 4^8 ms.
+		seedTimeoutMS = 1;
+		timeoutRetries = 8;
+		HeadlessCryptoScanner scanner = createAnalysisFor(sootClassPath, sootClassPath);
+
+		expectDemoErrors();
 
-		setErrorsCount("<example.ImpreciseValueExtractionErrorExample: void main(java.lang.String[])>", ImpreciseValueExtractionError.class, 1);
-		
 		scanner.exec();
 		assertErrors();
+		Assert.assertFalse(recoveredSeeds.isEmpty());
 	}
 
 	@Test
@@ -144,6 +266,43 @@ public class HeadlessTests {
 	  assertErrors();
 	}
 	
+	@Test
+	public void preAnalysisKeepsFindings() {
+		// The seeds of these issues depend on objects and values created by callers in other classes.
+		String sootClassPath = new File("../CryptoAnalysisTargets/ReportedIssues/bin").getAbsolutePath();
+		createAnalysisFor(sootClassPath, sootClassPath).exec();
+		Table<String, Class<?>, Integer> found = HashBasedTable.create(errorMarkerCountPerErrorTypeAndMethod);
+		Assert.assertFalse(found.isEmpty());
+
+		errorMarkerCountPerErrorTypeAndMethod.clear();
+		for (Cell<String, Class<?>, Integer> c : found.cellSet()) {
+			setErrorsCount(c.getRowKey(), c.getColumnKey(), -c.getValue());
+		}
+		preAnalysis = true;
+		createAnalysisFor(sootClassPath, sootClassPath).exec();
+		assertErrors();
+	}
+
+	@Test
+	public void parallelDiscoveryKeepsFindings() {
+		// Seeds and forbidden method calls are discovered on the analysis threads.
+		String sootClassPath = new File("../CryptoAnalysisTargets/ReportedIssues/bin").getAbsolutePath();
+		createAnalysisFor(sootClassPath, sootClassPath).exec();
+		Table<String, Class<?>, Integer> found = HashBasedTable.create(errorMarkerCountPerErrorTypeAndMethod);
+		int analyzedSeeds = finishedSeeds.size();
+		Assert.assertFalse(found.isEmpty());
+
+		errorMarkerCountPerErrorTypeAndMethod.clear();
+		finishedSeeds.clear();
+		for (Cell<String, Class<?>, Integer> c : found.cellSet()) {
+			setErrorsCount(c.getRowKey(), c.getColumnKey(), -c.getValue());
+		}
+		analysisThreads = 4;
+		createAnalysisFor(sootClassPath, sootClassPath).exec();
+		assertErrors();
+		Assert.assertEquals(analyzedSeeds, finishedSeeds.size());
+	}
+
 	@Test
 	public void oracleExample() {
 		String sootClassPath = new File("../CryptoAnalysisTargets/OracleExample/bin").getAbsolutePath();
@@ -283,6 +442,41 @@ public class HeadlessTests {
 			protected boolean enableVisualization() {
 				return VISUALIZATION;
 			}
+
+			@Override
+			protected int analysisThreads() {
+				return analysisThreads;
+			}
+
+			@Override
+			protected String getIncrementalStateFile() {
+				return incrementalStateFile;
+			}
+
+			@Override
+			protected String getChangedMethodsFile() {
+				return changedMethodsFile;
+			}
+
+			@Override
+			protected boolean usePreAnalysis() {
+				return preAnalysis;
+			}
+
+			@Override
+			protected Duration maxAnalysisTime() {
+				return maxAnalysisTime;
+			}
+
+			@Override
+			protected int seedTimeoutMS() {
+				return seedTimeoutMS;
+			}
+
+			@Override
+			protected int timeoutRetries() {
+				return timeoutRetries;
+			}
 		};
 		return scanner;
 	}
@@ -309,8 +503,19 @@ public class HeadlessTests {
 			public void onSeedTimeout(Node<Statement, Val> seed) {
 			}
 
+			@Override
+			public void onSeedSkipped(IAnalysisSeed seed) {
+				skippedSeeds.add(seed);
+			}
+
+			@Override
+			public void onSeedRecovered(IAnalysisSeed seed, int analysisTimeoutMS) {
+				recoveredSeeds.add(seed);
+			}
+
 			@Override
 			public void onSeedFinished(IAnalysisSeed seed, ForwardBoomerangResults<TransitionFunction> solver) {
+				finishedSeeds.add(seed);
 			}
 
 			@Override
@@ -380,6 +585,35 @@ public class HeadlessTests {
 		};
 	}
 
+	private void expectDemoErrors() {
+		setErrorsCount("<example.ConstraintErrorExample: void main(java.lang.String[])>", ConstraintError.class, 1);
+
+		setErrorsCount("<example.PredicateMissingExample: void main(java.lang.String[])>", RequiredPredicateError.class, 1);
+		setErrorsCount("<example.PredicateMissingExample: void main(java.lang.String[])>", ConstraintError.class, 1);
+
+		setErrorsCount("<example.TypestateErrorExample: void main(java.lang.String[])>", TypestateError.class, 1);
+
+		setErrorsCount("<example.IncompleOperationErrorExample: void main(java.lang.String[])>", IncompleteOperationError.class, 2);
+
+		setErrorsCount("<example.ImpreciseValueExtractionErrorExample: void main(java.lang.String[])>", ImpreciseValueExtractionError.class, 1);
+	}
+
+	private static void copyDirectory(final Path from, final Path to) throws IOException {
+		Files.walkFileTree(from, new SimpleFileVisitor<Path>() {
+			@Override
+			public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+				Files.createDirectories(to.resolve(from.relativize(dir).toString()));
+				return FileVisitResult.CONTINUE;
+			}
+
+			@Override
+			public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+				Files.copy(file, to.resolve(from.relativize(file).toString()), StandardCopyOption.REPLACE_EXISTING);
+				return FileVisitResult.CONTINUE;
+			}
+		});
+	}
+
 	private void assertErrors() {
 		for (Cell<String, Class<?>, Integer> c : errorMarkerCountPerErrorTypeAndMethod.cellSet()) {
 			if (c.getValue() != 0) {
@@ -0,0 +1,162 @@
+package test.headless;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameter;
+import org.junit.runners.Parameterized.Parameters;
+
+import com.google.common.collect.Lists;
+
+import crypto.HeadlessCryptoScanner;
+import crypto.analysis.CrySLAnalysisListener;
+import crypto.analysis.IAnalysisSeed;
+import crypto.analysis.errors.AbstractError;
+import crypto.reporting.ErrorMarkerListener;
+import crypto.scheduling.SchedulingPolicy;
+import crypto.scheduling.SeedCostModel;
+import test.IDEALCrossingTestingFramework;
+
+/**
+ * Analyzes the demo examples with each scheduling policy and number of threads. Every configuration has to report the
+ * same errors and analyze the same seeds as the sequential analysis in the order of discovery. With one thread, the
+ * seeds also have to be executed in the order of the policy.
+ */
+@RunWith(Parameterized.class)
+public class SchedulingPolicyTest {
+
+	private static final String KEY_GENERATOR = "javax.crypto.KeyGenerator";
+	private static final String CIPHER = "javax.crypto.Cipher";
+	private static final String CHEAPEST_METHOD = "<example.ConstraintErrorExample: void main(java.lang.String[])>";
+
+	private static Scan inOrderOfDiscovery;
+
+	@Parameters(name = "{1} with {0} threads")
+	public static Collection<Object[]> configurations() {
+		return Arrays.asList(new Object[][] { { 1, SchedulingPolicy.FIFO }, { 4, SchedulingPolicy.FIFO },
+				{ 1, SchedulingPolicy.CHEAPEST_FIRST }, { 1, SchedulingPolicy.DEPENDENCY_ORDER },
+				{ 4, SchedulingPolicy.DEPENDENCY_ORDER } });
+	}
+
+	@Parameter(0)
+	public int threads;
+
+	@Parameter(1)
+	public SchedulingPolicy policy;
+
+	@BeforeClass
+	public static void analyzeInOrderOfDiscovery() {
+		inOrderOfDiscovery = scan(1, SchedulingPolicy.FIFO);
+	}
+
+	@Test
+	public void cogniCryptDemoExamples() {
+		Scan scan = scan(threads, policy);
+
+		Assert.assertEquals(inOrderOfDiscovery.errors, scan.errors);
+		Assert.assertEquals(sorted(inOrderOfDiscovery.seeds), sorted(scan.seeds));
+		if (threads > 1)
+			return;
+		switch (policy) {
+		case FIFO:
+			Assert.assertEquals(inOrderOfDiscovery.seeds, scan.seeds);
+			Assert.assertEquals(0, scan.avoidedReplays);
+			break;
+		case CHEAPEST_FIRST:
+			Assert.assertEquals(CHEAPEST_METHOD, scan.methods.get(0));
+			break;
+		case DEPENDENCY_ORDER:
+			Assert.assertTrue("The Cipher seeds were analyzed before all KeyGenerator seeds",
+					scan.rules.lastIndexOf(KEY_GENERATOR) < scan.rules.indexOf(CIPHER));
+			Assert.assertTrue(scan.replays + " predicates were replayed, " + inOrderOfDiscovery.replays
+					+ " in the order of discovery", scan.replays <= inOrderOfDiscovery.replays);
+			break;
+		default:
+			break;
+		}
+	}
+
+	private static Scan scan(final int threads, final SchedulingPolicy policy) {
+		final String sootClassPath = new File("../CryptoAnalysisTargets/CogniCryptDemoExample/bin").getAbsolutePath();
+		final Scan scan = new Scan();
+		HeadlessCryptoScanner scanner = new HeadlessCryptoScanner() {
+			@Override
+			protected String getRulesDirectory() {
+				return new File(IDEALCrossingTestingFramework.RESOURCE_PATH).getAbsolutePath();
+			}
+
+			@Override
+			protected String sootClassPath() {
+				return sootClassPath;
+			}
+
+			@Override
+			protected String applicationClassPath() {
+				return sootClassPath;
+			}
+
+			@Override
+			protected CrySLAnalysisListener getAdditionalListener() {
+				return scan;
+			}
+
+			@Override
+			protected int analysisThreads() {
+				return threads;
+			}
+
+			@Override
+			protected SchedulingPolicy schedulingPolicy() {
+				return policy;
+			}
+		};
+		scanner.exec();
+		Collections.sort(scan.errors);
+		return scan;
+	}
+
+	private static List<String> sorted(List<String> list) {
+		List<String> sorted = Lists.newArrayList(list);
+		Collections.sort(sorted);
+		return sorted;
+	}
+
+	/**
+	 * Records the seeds in the order they are executed, the reported errors and the predicate replays of a scan.
+	 */
+	private static class Scan extends ErrorMarkerListener {
+		private final List<String> seeds = Lists.newArrayList();
+		private final List<String> methods = Lists.newArrayList();
+		private final List<String> rules = Lists.newArrayList();
+		private final List<String> errors = Lists.newArrayList();
+		private int replays;
+		private int avoidedReplays;
+
+		@Override
+		public void discoveredSeed(IAnalysisSeed seed) {
+			seeds.add(seed.getMethod().getSignature() + " " + seed);
+			methods.add(seed.getMethod().getSignature());
+			rules.add(SeedCostModel.ruleOf(seed));
+		}
+
+		@Override
+		public void reportError(AbstractError error) {
+			errors.add(error.getClass().getSimpleName() + " in " + error.getErrorLocation().getMethod().getSignature()
+					+ ": " + error.toErrorMarkerString());
+		}
+
+		@Override
+		public void predicateReplays(int replays, int avoidedReplays) {
+			this.replays = replays;
+			this.avoidedReplays = avoidedReplays;
+		}
+	}
+}
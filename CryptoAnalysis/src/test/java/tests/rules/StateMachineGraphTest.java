@@ -0,0 +1,114 @@
+package tests.rules;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map.Entry;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.google.common.collect.Sets;
+
+import crypto.interfaces.ICryptSLPredicateParameter;
+import crypto.interfaces.ISLConstraint;
+import crypto.rules.CryptSLCondPredicate;
+import crypto.rules.CryptSLForbiddenMethod;
+import crypto.rules.CryptSLMethod;
+import crypto.rules.CryptSLPredicate;
+import crypto.rules.CryptSLRule;
+import crypto.rules.StateMachineGraph;
+import crypto.rules.StateNode;
+import crypto.rules.TransitionEdge;
+
+public class StateMachineGraphTest {
+
+	private final CryptSLMethod init = method("init");
+	private final CryptSLMethod update = method("update");
+
+	private final StateNode s0 = new StateNode("0", true);
+	private final StateNode s1 = new StateNode("1");
+	private final StateNode s2 = new StateNode("2");
+	private final StateNode s3 = new StateNode("3", false, true);
+	private final StateNode s4 = new StateNode("4", false, true);
+
+	@Test
+	public void mergesEquivalentStates() {
+		StateMachineGraph smg = graph(s1, s4);
+		smg.minimize(Collections.<StateNode>emptySet());
+
+		Assert.assertEquals(Sets.newHashSet(s0, s1, s3), smg.getNodes());
+		Assert.assertEquals(2, smg.getEdges().size());
+		assertEdge(smg.getEdges().get(0), s0, s1, init);
+		assertEdge(smg.getEdges().get(1), s1, s3, update);
+	}
+
+	@Test
+	public void keepsAcceptingStatesDistinct() {
+		StateNode notAccepting = new StateNode("4");
+		StateMachineGraph smg = graph(s1, notAccepting);
+		smg.minimize(Collections.<StateNode>emptySet());
+
+		Assert.assertEquals(Sets.newHashSet(s0, s1, s2, s3, notAccepting), smg.getNodes());
+		Assert.assertEquals(4, smg.getEdges().size());
+	}
+
+	@Test
+	public void keepsDistinguishedStatesDistinct() {
+		StateMachineGraph smg = graph(s1, s4);
+		smg.minimize(Collections.singleton(s2));
+
+		Assert.assertEquals(Sets.newHashSet(s0, s1, s2, s3), smg.getNodes());
+		Assert.assertEquals(4, smg.getEdges().size());
+	}
+
+	@Test
+	public void keepsStatesOfConditionalPredicatesDistinct() {
+		StateMachineGraph smg = graph(s1, s4);
+		CryptSLPredicate generated = new CryptSLCondPredicate(null, "generated",
+				Collections.<ICryptSLPredicateParameter>emptyList(), false, Sets.newHashSet(s2));
+		CryptSLRule rule = new CryptSLRule("Test", Collections.<Entry<String, String>>emptyList(),
+				Collections.<CryptSLForbiddenMethod>emptyList(), smg, Collections.<ISLConstraint>emptyList(),
+				Arrays.asList(generated));
+		rule.minimizeUsagePattern();
+
+		Assert.assertTrue(smg.getNodes().contains(s2));
+		Assert.assertEquals(4, smg.getNodes().size());
+	}
+
+	@Test
+	public void keepsInitialTransitionFirst() {
+		StateMachineGraph smg = graph(s2, s4);
+		smg.minimize(Collections.<StateNode>emptySet());
+
+		Assert.assertEquals(3, smg.getNodes().size());
+		assertEdge(smg.getInitialTransition(), s0, s1, init);
+	}
+
+	/**
+	 * Builds 0 -init-> 1 -update-> 3 and 0 -init-> 2 -update-> last, starting with the initial transition into the
+	 * given state.
+	 */
+	private StateMachineGraph graph(StateNode initialTarget, StateNode last) {
+		StateMachineGraph smg = new StateMachineGraph();
+		for (StateNode n : Arrays.asList(s0, s1, s2, s3, last))
+			smg.addNode(n);
+		StateNode otherTarget = initialTarget.equals(s1) ? s2 : s1;
+		smg.addEdge(new TransitionEdge(Arrays.asList(init), s0, initialTarget));
+		smg.addEdge(new TransitionEdge(Arrays.asList(init), s0, otherTarget));
+		smg.addEdge(new TransitionEdge(Arrays.asList(update), s1, s3));
+		smg.addEdge(new TransitionEdge(Arrays.asList(update), s2, last));
+		return smg;
+	}
+
+	private static void assertEdge(TransitionEdge edge, StateNode from, StateNode to, CryptSLMethod... label) {
+		Assert.assertEquals(from, edge.from());
+		Assert.assertEquals(to, edge.to());
+		Assert.assertEquals(Arrays.asList(label), edge.getLabel());
+	}
+
+	private static CryptSLMethod method(String name) {
+		return new CryptSLMethod("Test." + name, Collections.<Entry<String, String>>emptyList(),
+				Collections.<Boolean>emptyList(), null);
+	}
+}
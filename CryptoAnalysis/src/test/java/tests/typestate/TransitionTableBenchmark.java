@@ -0,0 +1,35 @@
+package tests.typestate;
+
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.base.Stopwatch;
+
+/**
+ * Measures the time to compute the weight of a call by scanning all transitions of a state machine and by the lookup
+ * in its {@link crypto.typestate.TransitionTable}. Run it as a Java application, it is not part of the test suite.
+ */
+public class TransitionTableBenchmark {
+
+	private static final int STATES = 20;
+	private static final int METHODS = 60;
+	private static final int CALLS = 200000;
+
+	public static void main(String... args) {
+		TransitionTableTest.StateMachine sm = new TransitionTableTest.StateMachine(STATES, METHODS);
+		Stopwatch scanTime = Stopwatch.createStarted();
+		for (int i = 0; i < CALLS; i++) {
+			int call = i % METHODS;
+			sm.scan.callToReturn(sm.nodes.get(call), sm.nodes.get(call), sm.calls.get(call));
+		}
+		scanTime.stop();
+		Stopwatch tableTime = Stopwatch.createStarted();
+		for (int i = 0; i < CALLS; i++) {
+			int call = i % METHODS;
+			sm.table.getWeight(sm.methods.get(call), sm.nodes.get(call).stmt());
+		}
+		tableTime.stop();
+		System.out.println(String.format("Weight of a call with %s states and %s methods: scan %s ns, table %s ns",
+				STATES, METHODS, scanTime.elapsed(TimeUnit.NANOSECONDS) / CALLS,
+				tableTime.elapsed(TimeUnit.NANOSECONDS) / CALLS));
+	}
+}
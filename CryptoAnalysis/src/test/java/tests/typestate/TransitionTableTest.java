@@ -0,0 +1,152 @@
+package tests.typestate;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.google.common.collect.HashMultimap;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Multimap;
+import com.google.common.collect.Sets;
+
+import boomerang.WeightedForwardQuery;
+import boomerang.jimple.Statement;
+import boomerang.jimple.Val;
+import crypto.rules.StateNode;
+import crypto.typestate.ErrorStateNode;
+import crypto.typestate.TransitionTable;
+import crypto.typestate.WrappedState;
+import soot.G;
+import soot.Local;
+import soot.Scene;
+import soot.SootClass;
+import soot.SootMethod;
+import soot.Type;
+import soot.Unit;
+import soot.VoidType;
+import soot.jimple.InvokeExpr;
+import soot.jimple.Jimple;
+import sync.pds.solver.nodes.Node;
+import typestate.TransitionFunction;
+import typestate.finiteautomata.MatcherTransition;
+import typestate.finiteautomata.MatcherTransition.Parameter;
+import typestate.finiteautomata.State;
+import typestate.finiteautomata.TypeStateMachineWeightFunctions;
+
+/**
+ * Compares the weight of a call computed by scanning all transitions of a state machine to the lookup in its
+ * {@link TransitionTable}. The state machine is shaped like the ones of the rules: a chain of states, each with an
+ * error transition labeled with all methods not expected in the state.
+ */
+public class TransitionTableTest {
+
+	@Test
+	public void weightOfCall() {
+		StateMachine sm = new StateMachine(20, 60);
+		for (int i = 0; i < sm.methods.size(); i++) {
+			Assert.assertEquals(sm.scan.callToReturn(sm.nodes.get(i), sm.nodes.get(i), sm.calls.get(i)).values(),
+					sm.table.getWeight(sm.methods.get(i), sm.nodes.get(i).stmt()).values());
+		}
+	}
+
+	@Test
+	public void weightIsComputedOncePerStatement() {
+		StateMachine sm = new StateMachine(20, 60);
+		Assert.assertSame(sm.table.getWeight(sm.methods.get(0), sm.nodes.get(0).stmt()),
+				sm.table.getWeight(sm.methods.get(0), sm.nodes.get(0).stmt()));
+	}
+
+	@Test
+	public void targetOfCallInState() {
+		StateMachine sm = new StateMachine(20, 60);
+		Assert.assertEquals(20, sm.table.getStateCount());
+		for (MatcherTransition t : sm.transitions.values()) {
+			Assert.assertTrue(sm.table.getStateId(t.from()) >= 0);
+			for (SootMethod m : sm.transitions.keySet()) {
+				if (sm.transitions.get(m).contains(t))
+					Assert.assertEquals(t.to(), sm.table.getTarget(m, t.from()));
+			}
+		}
+		// No transition leaves the error state.
+		MatcherTransition any = sm.transitions.get(sm.methods.get(0)).iterator().next();
+		State error = sm.transitions.get(sm.methods.get(59)).iterator().next().to();
+		Assert.assertEquals(-1, sm.table.getStateId(error));
+		Assert.assertNull(sm.table.getTarget(sm.methods.get(0), error));
+		Assert.assertNull(sm.table.getTarget(sm.caller, any.from()));
+	}
+
+	@Test
+	public void weightOfUnmatchedCall() {
+		StateMachine sm = new StateMachine(20, 60);
+		Assert.assertEquals(TransitionFunction.one(), sm.table.getWeight(sm.caller, sm.nodes.get(0).stmt()));
+		Assert.assertTrue(sm.table.getTransitions(sm.caller).isEmpty());
+	}
+
+	/**
+	 * A state machine over the methods of a synthetic class, with a call of each method.
+	 */
+	static class StateMachine {
+		final TypeStateMachineWeightFunctions scan;
+		final TransitionTable table;
+		final SootMethod caller;
+		final List<SootMethod> methods = Lists.newArrayList();
+		final List<InvokeExpr> calls = Lists.newArrayList();
+		final List<Node<Statement, Val>> nodes = Lists.newArrayList();
+		final Multimap<SootMethod, MatcherTransition> transitions = HashMultimap.create();
+
+		StateMachine(int stateCount, int methodCount) {
+			G.reset();
+			SootClass sootClass = new SootClass("TransitionTableTest");
+			Scene.v().addClass(sootClass);
+			for (int i = 0; i < methodCount; i++) {
+				SootMethod m = new SootMethod("m" + i, Collections.<Type>emptyList(), VoidType.v());
+				sootClass.addMethod(m);
+				methods.add(m);
+			}
+			caller = new SootMethod("caller", Collections.<Type>emptyList(), VoidType.v());
+			sootClass.addMethod(caller);
+
+			scan = new TypeStateMachineWeightFunctions() {
+				@Override
+				public Collection<WeightedForwardQuery<TransitionFunction>> generateSeed(SootMethod method, Unit stmt,
+						Collection<SootMethod> calledMethod) {
+					return Collections.emptySet();
+				}
+
+				@Override
+				protected State initialState() {
+					throw new RuntimeException("Should never be called!");
+				}
+			};
+			for (int i = 0; i < stateCount; i++) {
+				State from = new WrappedState(new StateNode(Integer.toString(i), i == 0, i == stateCount - 1));
+				State to = new WrappedState(new StateNode(Integer.toString(i + 1), false, i + 1 == stateCount - 1));
+				List<SootMethod> expected = methods.subList(i, i + 1);
+				Collection<SootMethod> remaining = Sets.newHashSet(methods);
+				remaining.removeAll(expected);
+				MatcherTransition next = new MatcherTransition(from, expected, Parameter.This, to,
+						MatcherTransition.Type.OnCallToReturn);
+				MatcherTransition error = new MatcherTransition(from, remaining, Parameter.This,
+						new ErrorStateNode(expected), MatcherTransition.Type.OnCallToReturn);
+				scan.addTransition(next);
+				scan.addTransition(error);
+				for (SootMethod m : expected)
+					transitions.put(m, next);
+				for (SootMethod m : remaining)
+					transitions.put(m, error);
+			}
+			table = new TransitionTable(transitions);
+
+			Local base = Jimple.v().newLocal("r0", sootClass.getType());
+			Val fact = new Val(base, caller);
+			for (SootMethod m : methods) {
+				InvokeExpr call = Jimple.v().newVirtualInvokeExpr(base, m.makeRef());
+				calls.add(call);
+				nodes.add(new Node<Statement, Val>(new Statement(Jimple.v().newInvokeStmt(call), caller), fact));
+			}
+		}
+	}
+}